@@ -1,5 +1,6 @@
 package backend.config;
 
+import backend.service.QueryExecutor;
 import org.springframework.web.filter.CorsFilter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -24,6 +25,8 @@ public class CorsConfig {
         config.addAllowedOrigin("*");
         config.addAllowedHeader("*");
         config.addAllowedMethod("*");
+        // read by clients to pass the bookmark of their writes to later reads
+        config.addExposedHeader(QueryExecutor.BOOKMARK_HEADER);
         source.registerCorsConfiguration("/**", config);
         return new CorsFilter(source);
     }
@@ -0,0 +1,40 @@
+package backend.config;
+
+import org.neo4j.driver.AuthTokens;
+import org.neo4j.driver.Config;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.GraphDatabase;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class used for configuring the neo4j driver shared by all endpoints
+ */
+@Configuration
+public class Neo4jConfig {
+
+    /**
+     * creates the application wide neo4j driver with database address, credentials and connection pool settings
+     * from application.properties. The driver is closed by spring on shutdown.
+     *
+     * @param env Environment object for accessing application.properties values
+     * @return pooled driver with metrics enabled
+     */
+    @Bean(destroyMethod = "close")
+    public Driver driver(Environment env) {
+        Config config = Config.builder()
+                .withMaxConnectionPoolSize(env.getProperty("neo4j.pool.max-size", Integer.class, 50))
+                .withConnectionAcquisitionTimeout(env.getProperty("neo4j.pool.acquisition-timeout-ms", Long.class, 60000L), TimeUnit.MILLISECONDS)
+                .withMaxConnectionLifetime(env.getProperty("neo4j.pool.max-lifetime-ms", Long.class, 3600000L), TimeUnit.MILLISECONDS)
+                .withDriverMetrics()
+                .build();
+
+        return GraphDatabase.driver(env.getProperty("neo4j.uri"),
+                AuthTokens.basic(env.getProperty("neo4j.authentication.username"),
+                        env.getProperty("neo4j.authentication.password")),
+                config);
+    }
+}
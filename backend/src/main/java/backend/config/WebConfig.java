@@ -0,0 +1,33 @@
+package backend.config;
+
+import backend.service.ResponseEncoder;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Class used for configuring the encodings of responses
+ */
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    private final ResponseEncoder responseEncoder;
+
+    public WebConfig(ResponseEncoder responseEncoder) {
+        this.responseEncoder = responseEncoder;
+    }
+
+    /**
+     * adds Smile after the default converters, so json stays the default and Smile is only written for requests
+     * with Accept: application/x-jackson-smile
+     *
+     * @param converters converters configured by spring boot
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new MappingJackson2SmileHttpMessageConverter(responseEncoder.mapperFor(ResponseEncoder.SMILE)));
+    }
+}
@@ -0,0 +1,64 @@
+package backend.endpoint;
+
+import backend.service.ChangeFeed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Endpoint for subscribing to changes of the graph
+ */
+@RestController
+@RequestMapping("/changes")
+@Slf4j
+public class ChangeEndpoint {
+
+    private static final String LAST_EVENT_ID = "Last-Event-ID";
+
+    ChangeFeed changeFeed;
+
+    /**
+     * constructor for ChangeEndpoint
+     *
+     * @param changeFeed feed of all nodes and relationships added through the backend
+     */
+    @Autowired
+    public ChangeEndpoint(ChangeFeed changeFeed) {
+        this.changeFeed = changeFeed;
+    }
+
+    /**
+     * subscribe to added nodes and relationships as server-sent events. Every event carries the graph version after
+     * the change as id and is named nodesAdded, relationshipsAdded or reset. On reset the client has to reload the
+     * graph, it is sent for large batches and if changes after since are no longer available.
+     *
+     * @param since       version of the last change the client has seen, usually the id of the last event received
+     * @param lastEventId sent by EventSource when reconnecting, takes precedence over since
+     * @param scenario    only send relationships of this scenario
+     * @return event stream, open until the client disconnects or changes.timeout-ms elapsed
+     */
+    @GetMapping(value = "", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe(@RequestParam(required = false) Long since,
+                                @RequestHeader(value = LAST_EVENT_ID, required = false) String lastEventId,
+                                @RequestParam(required = false) String scenario) {
+        log.info("subscribing to changes since {}", lastEventId != null ? lastEventId : since);
+
+        Long version = since;
+        if (lastEventId != null && !lastEventId.isBlank()) {
+            try {
+                version = Long.parseLong(lastEventId.trim());
+            } catch (NumberFormatException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid Last-Event-ID");
+            }
+        }
+        return changeFeed.subscribe(version, scenario);
+    }
+}
@@ -0,0 +1,112 @@
+package backend.endpoint;
+
+import backend.entity.LineageObject;
+import backend.entity.PathObject;
+import backend.service.LineageReader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Endpoint for data lineage queries over transfers, produces and conditional relationships
+ */
+@RestController
+@RequestMapping("/lineage")
+@Slf4j
+public class LineageEndpoint {
+
+    LineageReader lineageReader;
+
+    /**
+     * constructor for LineageEndpoint
+     *
+     * @param lineageReader answers lineage queries from the in memory lineage index
+     */
+    @Autowired
+    public LineageEndpoint(LineageReader lineageReader) {
+        this.lineageReader = lineageReader;
+    }
+
+    /**
+     * get all nodes the given node passes data to, directly or through other nodes
+     *
+     * @param identity of the root node
+     * @param depth    number of hops, at most lineage.max-depth
+     * @param types    relationship labels to follow, transfers, produces and conditional if omitted
+     * @param scenario only follow relationships of this scenario, all if omitted
+     * @param limit    maximum number of edges, at most lineage.max-edges
+     * @return nodes and edges downstream of root with the distance of every node
+     */
+    @GetMapping(value = {"{identity}/downstream"})
+    public CompletableFuture<LineageObject> getDownstream(@PathVariable long identity,
+                                                          @RequestParam(required = false) Integer depth,
+                                                          @RequestParam(required = false) List<String> types,
+                                                          @RequestParam(required = false) String scenario,
+                                                          @RequestParam(required = false) Integer limit) {
+        log.info("retrieving downstream lineage of node {}", identity);
+        return lineage(identity, LineageObject.Direction.downstream, depth, types, scenario, limit);
+    }
+
+    /**
+     * get all nodes passing data to the given node, directly or through other nodes
+     *
+     * @param identity of the root node
+     * @param depth    number of hops, at most lineage.max-depth
+     * @param types    relationship labels to follow, transfers, produces and conditional if omitted
+     * @param scenario only follow relationships of this scenario, all if omitted
+     * @param limit    maximum number of edges, at most lineage.max-edges
+     * @return nodes and edges upstream of root with the distance of every node
+     */
+    @GetMapping(value = {"{identity}/upstream"})
+    public CompletableFuture<LineageObject> getUpstream(@PathVariable long identity,
+                                                        @RequestParam(required = false) Integer depth,
+                                                        @RequestParam(required = false) List<String> types,
+                                                        @RequestParam(required = false) String scenario,
+                                                        @RequestParam(required = false) Integer limit) {
+        log.info("retrieving upstream lineage of node {}", identity);
+        return lineage(identity, LineageObject.Direction.upstream, depth, types, scenario, limit);
+    }
+
+    /**
+     * get the shortest path data takes from source to target
+     *
+     * @param source   identity of the start node
+     * @param target   identity of the end node
+     * @param depth    maximum number of relationships, at most lineage.max-depth
+     * @param types    relationship labels to follow, transfers, produces and conditional if omitted
+     * @param scenario only follow relationships of this scenario, all if omitted
+     * @return nodes and edges of the path in order, 404 if there is no path
+     */
+    @GetMapping(value = {"/path"})
+    public CompletableFuture<PathObject> getPath(@RequestParam long source,
+                                                 @RequestParam long target,
+                                                 @RequestParam(required = false) Integer depth,
+                                                 @RequestParam(required = false) List<String> types,
+                                                 @RequestParam(required = false) String scenario) {
+        log.info("retrieving path from node {} to node {}", source, target);
+
+        try {
+            return lineageReader.path(source, target, depth, types, scenario);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, "invalid relationship types");
+        }
+    }
+
+    private CompletableFuture<LineageObject> lineage(long identity, LineageObject.Direction direction, Integer depth, List<String> types,
+                                                     String scenario, Integer limit) {
+        try {
+            return lineageReader.lineage(identity, direction, depth, types, scenario, limit);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, "invalid relationship types");
+        }
+    }
+}
@@ -1,17 +1,26 @@
 package backend.endpoint;
 
+import backend.entity.BatchResultObject;
+import backend.entity.NeighborhoodObject;
 import backend.entity.NodeObject;
+import backend.entity.PageObject;
+import backend.entity.SearchHitObject;
+import backend.service.BatchWriter;
+import backend.service.ChangeFeed;
+import backend.service.GraphRecordMapper;
+import backend.service.HierarchyIndex;
+import backend.service.LabelValidator;
+import backend.service.NdjsonWriter;
+import backend.service.NeighborhoodReader;
+import backend.service.NodeSearchIndex;
+import backend.service.PageReader;
+import backend.service.QueryExecutor;
+import backend.service.ScenarioBundleBuilder;
+import backend.service.ScenarioCatalog;
 import lombok.extern.slf4j.Slf4j;
-import org.neo4j.driver.AuthTokens;
-import org.neo4j.driver.Driver;
-import org.neo4j.driver.GraphDatabase;
-import org.neo4j.driver.Record;
-import org.neo4j.driver.Result;
-import org.neo4j.driver.Session;
-import org.neo4j.driver.types.Node;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.env.Environment;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -20,17 +29,15 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
-import static org.neo4j.driver.Values.parameters;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Endpoint for all node related queries
@@ -40,83 +47,139 @@ import static org.neo4j.driver.Values.parameters;
 @Slf4j
 public class NodeEndpoint {
 
-    Driver driver;
+    NdjsonWriter ndjsonWriter;
+    HierarchyIndex hierarchyIndex;
+    ChangeFeed changeFeed;
+    BatchWriter batchWriter;
+    ScenarioCatalog scenarioCatalog;
+    QueryExecutor queryExecutor;
+    GraphRecordMapper graphRecordMapper;
+    NeighborhoodReader neighborhoodReader;
+    PageReader pageReader;
+    NodeSearchIndex nodeSearchIndex;
 
     /**
-     * constructor for NodeEndpoint initializes the neo4j driver with database address and credentials
+     * constructor for NodeEndpoint
      *
-     * @param env Environment object for accessing application.properties values
+     * @param ndjsonWriter       writer used for streaming responses
+     * @param hierarchyIndex     in memory index answering hierarchy queries
+     * @param changeFeed         feed that added nodes are published to
+     * @param batchWriter        writer for batches of nodes
+     * @param scenarioCatalog    in memory catalog providing the nodes of scenarios
+     * @param queryExecutor      runs and measures all queries
+     * @param graphRecordMapper  maps query results to entities
+     * @param neighborhoodReader reads the neighborhood of nodes hop by hop
+     * @param pageReader         reads nodes page by page
+     * @param nodeSearchIndex    in memory index answering node searches
      */
     @Autowired
-    public NodeEndpoint(Environment env) {
-
-        driver = GraphDatabase.driver(env.getProperty("neo4j.uri"),
-                AuthTokens.basic(env.getProperty("neo4j.authentication.username"),
-                        env.getProperty("neo4j.authentication.password")));
+    public NodeEndpoint(NdjsonWriter ndjsonWriter, HierarchyIndex hierarchyIndex, ChangeFeed changeFeed, BatchWriter batchWriter,
+                        ScenarioCatalog scenarioCatalog, QueryExecutor queryExecutor,
+                        GraphRecordMapper graphRecordMapper, NeighborhoodReader neighborhoodReader,
+                        PageReader pageReader, NodeSearchIndex nodeSearchIndex) {
+        this.ndjsonWriter = ndjsonWriter;
+        this.hierarchyIndex = hierarchyIndex;
+        this.changeFeed = changeFeed;
+        this.batchWriter = batchWriter;
+        this.scenarioCatalog = scenarioCatalog;
+        this.queryExecutor = queryExecutor;
+        this.graphRecordMapper = graphRecordMapper;
+        this.neighborhoodReader = neighborhoodReader;
+        this.pageReader = pageReader;
+        this.nodeSearchIndex = nodeSearchIndex;
     }
 
     /**
-     * get one node by identity
+     * get one node by identity, the query runs on an async session without blocking the request thread
      *
      * @param identity of the desired node
      * @return node with given identity
      */
     @GetMapping(value = "/{identity}")
-    public NodeObject nodeById(@PathVariable int identity) {
+    public CompletableFuture<NodeObject> nodeById(@PathVariable int identity) {
         log.info("retrieving node with identity:  {}", identity);
         Map<String, Object> params = new HashMap<>();
         params.put("identity", identity);
 
-        Session session = driver.session();
-
-        Result result = session.run("Match (p) where ID(p) = $identity  return (p)", params);
-
-        if (result.hasNext()) {
-            Record rec = result.single();
-            Node node = rec.get("p").asNode();
-            String elemId = node.elementId().split(":")[2];
-            List<String> labels = new ArrayList<>();
-            node.labels().forEach(labels::add);
-            Map<String, Object> properties = node.asMap();
-
-            NodeObject nodeObject = new NodeObject();
-            nodeObject.setIdentity(elemId);
-            nodeObject.setLabels(labels);
-            nodeObject.setProps(properties);
-
-            return nodeObject;
-        }
-        throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        return queryExecutor.readAsync("Match (p) where ID(p) = $identity  return (p)", params, rec -> graphRecordMapper.toNodeObject(rec.get("p").asNode()))
+                .thenApply(nodes -> {
+                    if (nodes.isEmpty()) {
+                        throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+                    }
+                    return nodes.get(0);
+                });
     }
 
     /**
-     * get all nodes
+     * get all nodes, the query runs on an async session without blocking the request thread
      *
      * @return all nodes in the database
      */
     @GetMapping(value = {"/all"})
-    public Stream<NodeObject> allNodes() {
+    public CompletableFuture<List<NodeObject>> allNodes() {
         log.info("retrieving all nodes");
-        List<NodeObject> nodes = new ArrayList<>();
-
-        Session session = driver.session();
-        Result result = session.run("MATCH (n) RETURN n");
-
-        while (result.hasNext()) {
-            Record rec = result.next();
-            Node node = rec.get("n").asNode();
-            String identity = node.elementId().split(":")[2];
-            List<String> labels = new ArrayList<>();
-            node.labels().forEach(labels::add);
-            Map<String, Object> properties = node.asMap();
-
-            NodeObject nodeObject = new NodeObject(identity, labels, properties);
+        return queryExecutor.readAsync("MATCH (n) RETURN n", Map.of(), rec -> graphRecordMapper.toNodeObject(rec.get("n").asNode()));
+    }
 
-            nodes.add(nodeObject);
+    /**
+     * search nodes by name for typeahead, answered from the in memory search index without a database round trip
+     *
+     * @param q        text typed so far, case, accents and punctuation are ignored
+     * @param type     only nodes with this type label
+     * @param scenario only nodes of this scenario
+     * @param limit    number of hits, at most search.max-limit
+     * @return best matching nodes first
+     */
+    @GetMapping(value = {"/search"})
+    public List<SearchHitObject> searchNodes(@RequestParam String q,
+                                             @RequestParam(required = false) String type,
+                                             @RequestParam(required = false) String scenario,
+                                             @RequestParam(required = false) Integer limit) {
+        // sent on every key stroke
+        log.debug("searching nodes for {}", q);
+
+        try {
+            return nodeSearchIndex.search(q, type, scenario, limit);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, "invalid type");
+        }
+    }
 
+    /**
+     * get one page of nodes ordered by identity, pages are requested one after another with the next cursor of
+     * the previous page
+     *
+     * @param after cursor of the previous page, omitted for the first page
+     * @param size  number of nodes per page, at most page.max-size
+     * @param label only list nodes with this label
+     * @return nodes of the page and cursor of the next page
+     */
+    @GetMapping(value = {"/page"})
+    public CompletableFuture<PageObject<NodeObject>> nodePage(@RequestParam(required = false) Long after,
+                                                              @RequestParam(required = false) Integer size,
+                                                              @RequestParam(required = false) String label) {
+        log.info("retrieving page of nodes after {}", after);
+
+        try {
+            return pageReader.nodes(after, size, label);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, "invalid label");
         }
+    }
 
-        return nodes.stream();
+    /**
+     * stream all nodes as newline delimited json, selected by requesting application/x-ndjson. Nodes are written
+     * while the result is read, so memory usage does not grow with the size of the database.
+     *
+     * @return response body writing one node per line
+     */
+    @GetMapping(value = {"/all"}, produces = NdjsonWriter.MEDIA_TYPE)
+    public StreamingResponseBody streamAllNodes() {
+        log.info("streaming all nodes");
+        String endpoint = QueryExecutor.currentEndpoint();
+
+        return out -> queryExecutor.stream(endpoint, "MATCH (n) RETURN n", Map.of(),
+                records -> ndjsonWriter.write(out, records, rec -> graphRecordMapper.toNodeObject(rec.get("n").asNode())));
     }
 
     /**
@@ -128,15 +191,11 @@ public class NodeEndpoint {
     public Map<String, String> getAllChildParentHierarchies() {
         log.info("retrieving all child identities and parents");
 
-        Session session = driver.session();
-        Result result = session.run("Match (p)-[r:includes]->(c) return ID(c),ID(p)");
-
+        HierarchyIndex.Snapshot hierarchy = hierarchyIndex.snapshot();
         Map<String, String> parentMap = new HashMap<>();
-        while (result.hasNext()) {
-            Record record = result.next();
-            parentMap.put(record.get("ID(c)").toString(), record.get("ID(p)").toString());
+        for (long child : hierarchy.children()) {
+            parentMap.put(String.valueOf(child), String.valueOf(hierarchy.parentOf(child)));
         }
-
         return parentMap;
     }
 
@@ -150,19 +209,7 @@ public class NodeEndpoint {
     public Map<String, String> getAllChildParentHierarchiesByScenario(@RequestParam String scenario) {
         log.info("retrieving all child identities and parents by {}", scenario);
 
-        Map<String, Object> params = new HashMap<>();
-        params.put("scenario", scenario);
-
-        Session session = driver.session();
-        Result result = session.run("Match (p)-[r:includes]->(c)-[o]-() where o.scenario is not null and $scenario in o.scenario return distinct ID(c),ID(p)", params);
-
-        Map<String, String> parentMap = new HashMap<>();
-        while (result.hasNext()) {
-            Record record = result.next();
-            parentMap.put(record.get("ID(c)").toString(), record.get("ID(p)").toString());
-        }
-
-        return parentMap;
+        return ScenarioBundleBuilder.byChildren(scenarioCatalog.nodesOf(scenario), hierarchyIndex.snapshot());
     }
 
     /**
@@ -174,22 +221,15 @@ public class NodeEndpoint {
     public Map<String, ArrayList<String>> getAllParentChildHierarchies() {
         log.info("retrieving all parent identities and children");
 
-        Session session = driver.session();
-        Result result = session.run("Match (k:parent)-[r:includes*]->(v)  return  ID(k),ID(v)");
+        HierarchyIndex.Snapshot hierarchy = hierarchyIndex.snapshot();
         Map<String, ArrayList<String>> res = new HashMap<>();
-
-        if (result.hasNext()) {
-            result.stream().forEach(record -> {
-                String key = record.get("ID(k)").toString();
-                String value = record.get("ID(v)").toString();
-                if (res.containsKey(key)) {
-                    ArrayList<String> temp = res.get(key);
-                    temp.add(value);
-                    res.put(key, temp);
-                } else {
-                    res.put(key, new ArrayList<>(Collections.singleton(value)));
-                }
-            });
+        for (long parent : hierarchy.parents()) {
+            long[] descendants = hierarchy.descendantsOf(parent);
+            ArrayList<String> children = new ArrayList<>(descendants.length);
+            for (long descendant : descendants) {
+                children.add(String.valueOf(descendant));
+            }
+            res.put(String.valueOf(parent), children);
         }
         return res;
     }
@@ -201,30 +241,10 @@ public class NodeEndpoint {
      * @return all parent identities with direct/indirect child identities contained in scenario
      */
     @GetMapping(value = {"hierarchies/byParent/"})
-    public Map<String, ArrayList<String>> getAllParentChildHierarchiesByScenario(@RequestParam String scenario) {
+    public Map<String, List<String>> getAllParentChildHierarchiesByScenario(@RequestParam String scenario) {
         log.info("retrieving all parent identities and children by {}", scenario);
 
-        Map<String, Object> params = new HashMap<>();
-        params.put("scenario", scenario);
-
-        Session session = driver.session();
-        Result result = session.run("Match (k:parent)-[r:includes*]->(v)-[o]-() Where o.scenario is not null and  $scenario in o.scenario return distinct  ID(k),ID(v)", params);
-        Map<String, ArrayList<String>> res = new HashMap<>();
-
-        if (result.hasNext()) {
-            result.stream().forEach(record -> {
-                String key = record.get("ID(k)").toString();
-                String value = record.get("ID(v)").toString();
-                if (res.containsKey(key)) {
-                    ArrayList<String> temp = res.get(key);
-                    temp.add(value);
-                    res.put(key, temp);
-                } else {
-                    res.put(key, new ArrayList<>(Collections.singleton(value)));
-                }
-            });
-        }
-        return res;
+        return ScenarioBundleBuilder.byParent(scenarioCatalog.nodesOf(scenario), hierarchyIndex.snapshot());
     }
 
     /**
@@ -236,17 +256,11 @@ public class NodeEndpoint {
     @GetMapping(value = {"{identity}/parent"})
     public String[] getDirectParent(@PathVariable int identity) {
         log.info("retrieving parent node identity of node {}", identity);
-        Map<String, Object> params = new HashMap<>();
-        params.put("identity", identity);
-
-
-        Session session = driver.session();
-        Result result = session.run("Match (p)-[r:includes]->(s) where ID(s) = $identity return ID(p)", params);
 
         //one node can only have one parent
-        if (result.hasNext()) {
-            Record record = result.single();
-            return new String[]{record.get("ID(p)").toString()};
+        long parent = hierarchyIndex.snapshot().parentOf(identity);
+        if (parent != -1) {
+            return new String[]{String.valueOf(parent)};
         }
         return new String[0];
     }
@@ -260,43 +274,90 @@ public class NodeEndpoint {
     @GetMapping(value = {"{identity}/children"})
     public List<String> getALlChildren(@PathVariable int identity) {
         log.info("retrieving all dirent and indirect child IDs of {}", identity);
-        Map<String, Object> params = new HashMap<>();
-        params.put("identity", identity);
 
-        Session session = driver.session();
-        Result result = session.run("Match (p)-[r:includes*]->(s) where ID(p) = $identity  return ID(s)", params);
-
-        if (result.hasNext()) {
-            return result.stream().map(record -> record.get("ID(s)").toString()).collect(Collectors.toList());
+        long[] descendants = hierarchyIndex.snapshot().descendantsOf(identity);
+        List<String> children = new ArrayList<>(descendants.length);
+        for (long descendant : descendants) {
+            children.add(String.valueOf(descendant));
         }
+        return children;
+    }
 
-        return new ArrayList<>();
+    /**
+     * get the normalized subgraph around a node, so clients can start at one node and load more on demand. One
+     * query is run per hop, the result is capped at neighborhood.max-edges edges.
+     *
+     * @param identity  of the root node
+     * @param depth     number of hops to expand, at most neighborhood.max-depth
+     * @param direction follow outgoing, incoming or both relationships
+     * @param types     relationship labels to follow, all if omitted
+     * @param scenario  only follow relationships of this scenario, all if omitted
+     * @param limit     maximum number of edges, at most neighborhood.max-edges
+     * @return nodes and edges reached from root, flagged as truncated if the edge cap was reached
+     */
+    @GetMapping(value = {"{identity}/neighborhood"})
+    public CompletableFuture<NeighborhoodObject> getNeighborhood(@PathVariable long identity,
+                                                                 @RequestParam(defaultValue = "1") int depth,
+                                                                 @RequestParam(defaultValue = "both") NeighborhoodObject.Direction direction,
+                                                                 @RequestParam(required = false) List<String> types,
+                                                                 @RequestParam(required = false) String scenario,
+                                                                 @RequestParam(required = false) Integer limit) {
+        log.info("retrieving neighborhood of node {} with depth {}", identity, depth);
+
+        try {
+            return neighborhoodReader.read(identity, depth, direction, types, scenario, limit == null ? Integer.MAX_VALUE : limit);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, "invalid relationship types");
+        }
     }
 
     /**
      * add new node to database
      *
      * @param node to be added
-     * @return newly created node including ID
+     * @return newly created node including ID, completed once the transaction is committed
      */
     @PostMapping(value = "")
-    public NodeObject addNode(@RequestBody NodeObject node) {
-        System.out.println(node);
+    public CompletableFuture<NodeObject> addNode(@RequestBody NodeObject node) {
+        log.info("adding node {}", node);
 
-        Session session = driver.session();
-        if (node.getLabels() == null || node.getLabels().isEmpty() || !node.getProps().containsKey("name")) {
+        if (node.getLabels() == null || node.getLabels().isEmpty() || node.getProps() == null || !node.getProps().containsKey("name")) {
             throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY);
         }
-        String labelsIn = String.join(":", node.getLabels());
-        labelsIn = buildNodeLabels(node.getLabels());
-        Result result = session.run("Create (s:" + labelsIn + " $props ) return s", parameters("props", node.getProps(), "labels", node.getLabels()));
-
-        Node createdNode = result.single().get("s").asNode();
+        String labelsIn = buildNodeLabels(node.getLabels());
+
+        return queryExecutor.writeAsync("Create (s:" + labelsIn + " $props ) return s", Map.of("props", node.getProps()), rec -> graphRecordMapper.toNodeObject(rec.get("s").asNode()))
+                .thenApply(created -> {
+                    nodeSearchIndex.addAll(created);
+                    changeFeed.nodesAdded(created);
+                    return created.get(0);
+                });
+    }
 
-        List<String> labelsOut = new ArrayList<>();
-        createdNode.labels().forEach(labelsOut::add);
+    /**
+     * add many nodes to database, written in chunks with one query per chunk
+     *
+     * @param nodes json array of nodes to be added
+     * @return created identities in input order and errors of items that could not be added
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public BatchResultObject addNodes(@RequestBody List<NodeObject> nodes) {
+        log.info("adding batch of {} nodes", nodes.size());
+        return batchWriter.writeNodes(nodes.iterator());
+    }
 
-        return new NodeObject(createdNode.elementId().split(":")[2], labelsOut, createdNode.asMap());
+    /**
+     * add many nodes to database from newline delimited json, the body is read while earlier chunks are written
+     * so it never has to be held in memory as a whole
+     *
+     * @param body one node per line
+     * @return created identities in input order and errors of items that could not be added
+     * @throws IOException if reading the body fails
+     */
+    @PostMapping(value = "/batch", consumes = NdjsonWriter.MEDIA_TYPE)
+    public BatchResultObject addNodesStream(InputStream body) throws IOException {
+        log.info("adding streamed batch of nodes");
+        return batchWriter.writeNodes(body);
     }
 
     /**
@@ -308,25 +369,11 @@ public class NodeEndpoint {
      * @return String of : delimited valid labels
      */
     private String buildNodeLabels(List<String> labels) {
-        List<String> labelList = new ArrayList<>();
-
-        labels.forEach((label) -> {
-            try{
-                labelList.add(String.valueOf(NodeObject.TypeLabels.valueOf(label)));
-            }catch (IllegalArgumentException ignored){
-            }
-
-            try{
-                labelList.add(String.valueOf(NodeObject.FunctionalLabel.valueOf(label)));
-            }catch (IllegalArgumentException ignored){
-            }
-        });
-
-        if(labelList.isEmpty()){
+        try {
+            return LabelValidator.nodeLabels(labels);
+        } catch (IllegalArgumentException e) {
             throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, "invalid labels");
         }
-
-        return String.join(":", labelList.toArray(new String[0]));
     }
 
 }
@@ -1,28 +1,38 @@
 package backend.endpoint;
 
+import backend.entity.BatchResultObject;
+import backend.entity.EdgeObject;
 import backend.entity.NodeObject;
 import backend.entity.RelationshipObject;
+import backend.service.BatchWriter;
+import backend.service.ChangeFeed;
+import backend.service.GraphRecordMapper;
+import backend.service.HierarchyIndex;
+import backend.service.LabelValidator;
+import backend.service.LineageIndex;
+import backend.service.NdjsonWriter;
+import backend.service.QueryExecutor;
+import backend.service.ScenarioCatalog;
+import backend.service.SchemaManager;
 import lombok.extern.slf4j.Slf4j;
-import org.neo4j.driver.AuthTokens;
-import org.neo4j.driver.Driver;
-import org.neo4j.driver.GraphDatabase;
 import org.neo4j.driver.Record;
-import org.neo4j.driver.Result;
-import org.neo4j.driver.Session;
-import org.neo4j.driver.summary.ResultSummary;
 import org.neo4j.driver.types.Node;
 import org.neo4j.driver.types.Relationship;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.env.Environment;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 import static org.neo4j.driver.Values.parameters;
 
@@ -34,38 +44,56 @@ import static org.neo4j.driver.Values.parameters;
 @Slf4j
 public class RelationshipEndpoint {
 
-    Driver driver;
-
+    HierarchyIndex hierarchyIndex;
+    LineageIndex lineageIndex;
+    ChangeFeed changeFeed;
+    BatchWriter batchWriter;
+    SchemaManager schemaManager;
+    ScenarioCatalog scenarioCatalog;
+    QueryExecutor queryExecutor;
+    GraphRecordMapper graphRecordMapper;
 
     /**
-     * constructor for RelationshipEndpoint initializes the neo4j driver with database address and credentials
+     * constructor for RelationshipEndpoint
      *
-     * @param env Environment object for accessing application.properties values
+     * @param hierarchyIndex    in memory hierarchy index that is kept up to date with new includes relationships
+     * @param lineageIndex      in memory lineage index that is kept up to date with new data flow relationships
+     * @param changeFeed        feed that added relationships are published to
+     * @param batchWriter       writer for batches of relationships
+     * @param schemaManager     builds indexed lookups of nodes by name
+     * @param scenarioCatalog   in memory scenario catalog that is kept up to date with new relationships
+     * @param queryExecutor     runs and measures all queries
+     * @param graphRecordMapper maps query results to entities
      */
     @Autowired
-    public RelationshipEndpoint(Environment env) {
-        driver = GraphDatabase.driver(env.getProperty("neo4j.uri"),
-                AuthTokens.basic(env.getProperty("neo4j.authentication.username"),
-                        env.getProperty("neo4j.authentication.password")));
+    public RelationshipEndpoint(HierarchyIndex hierarchyIndex, LineageIndex lineageIndex, ChangeFeed changeFeed, BatchWriter batchWriter,
+                                SchemaManager schemaManager, ScenarioCatalog scenarioCatalog, QueryExecutor queryExecutor,
+                                GraphRecordMapper graphRecordMapper) {
+        this.hierarchyIndex = hierarchyIndex;
+        this.lineageIndex = lineageIndex;
+        this.changeFeed = changeFeed;
+        this.batchWriter = batchWriter;
+        this.schemaManager = schemaManager;
+        this.scenarioCatalog = scenarioCatalog;
+        this.queryExecutor = queryExecutor;
+        this.graphRecordMapper = graphRecordMapper;
     }
 
     /**
-     * add new relationship to database
+     * add new relationship to database, the query runs on an async session without blocking the request thread
      *
      * @param relationShip to be added
-     * @return newly created relationship including ID
+     * @return newly created relationship including ID, completed once the transaction is committed
      */
     @PostMapping(value = "")
-    public RelationshipObject addRelationship(@RequestBody RelationshipObject relationShip) {
-
-
-        Session session = driver.session();
-        Result result = null;
+    public CompletableFuture<RelationshipObject> addRelationship(@RequestBody RelationshipObject relationShip) {
         if (relationShip.getLabels() == null || relationShip.getLabels().isEmpty()) {
             log.warn("relationship contains invalid label");
             throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY);
         }
 
+        String query = null;
+        Map<String, Object> params = null;
         if (relationShip.getSource().getIdentity() != null && relationShip.getTarget().getIdentity() != null) {
             int source;
             int target;
@@ -78,50 +106,85 @@ public class RelationshipEndpoint {
             }
             log.info("adding relationship by identity");
 
-            result = session.run("Match(s) Match(t) " +
+            query = "Match(s) Match(t) " +
                     "WHERE ID(s)= $source " +
                     "AND ID(t)=  $target " +
-                    "CREATE (s)-[r:" + validatedLabel(relationShip.getLabels()) + " $props ]->(t) return s,r,t", parameters("source", source, "target", target, "props", relationShip.getProps()));
+                    "CREATE (s)-[r:" + validatedLabel(relationShip.getLabels()) + " $props ]->(t) return s,r,t";
+            params = parameters("source", source, "target", target, "props", relationShip.getProps()).asMap();
 
 
         } else if (relationShip.getSource().getProps().containsKey("name") && relationShip.getSource().getProps().get("name") != null && relationShip.getTarget().getProps().containsKey("name") && relationShip.getTarget().getProps().get("name") != null) {
             log.info("adding relationship by name");
 
-            result = session.run("Match(s) Match(t) " +
-                    "WHERE s.name=$source " +
-                    "AND t.name= $target " +
-                    "CREATE (s)-[r:" + validatedLabel(relationShip.getLabels()) + " $props ]->(t)  return s,r,t", parameters("source", relationShip.getSource().getProps().get("name"), "target", relationShip.getTarget().getProps().get("name"), "props", relationShip.getProps()));
+            // label specific lookups use the name indexes, see SchemaManager
+            query = schemaManager.matchByName("s", "$source", relationShip.getSource().getLabels(), null) +
+                    schemaManager.matchByName("t", "$target", relationShip.getTarget().getLabels(), null) +
+                    "CREATE (s)-[r:" + validatedLabel(relationShip.getLabels()) + " $props ]->(t)  return s,r,t";
+            params = parameters("source", relationShip.getSource().getProps().get("name"), "target", relationShip.getTarget().getProps().get("name"), "props", relationShip.getProps()).asMap();
 
 
         }
 
-        if (result.hasNext()) {
-            Record newRelation = result.next();
+        if (query == null) {
+            log.warn("relationship contains neither node IDs nor node names");
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY);
+        }
+
+        return queryExecutor.writeAsync(query, params, Function.identity()).thenApply(result -> {
+            if (result.isEmpty()) {
+                log.warn("database returned empty result, failed to add relationship to database");
+                throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY);
+            }
+
+            Record newRelation = result.get(0);
 
             Node sourceNode = newRelation.get("s").asNode();
             Node targetNode = newRelation.get("t").asNode();
             Relationship edge = newRelation.get("r").asRelationship();
 
-            List<String> sourceLabels = new ArrayList<>();
-            sourceNode.labels().forEach(sourceLabels::add);
-            NodeObject sourceObj = new NodeObject(sourceNode.elementId().split(":")[2], sourceLabels, sourceNode.asMap());
-
-            List<String> targetLabels = new ArrayList<>();
-            targetNode.labels().forEach(targetLabels::add);
-            NodeObject targetObj = new NodeObject(targetNode.elementId().split(":")[2], targetLabels, targetNode.asMap());
+            NodeObject sourceObj = graphRecordMapper.toNodeObject(sourceNode);
+            NodeObject targetObj = graphRecordMapper.toNodeObject(targetNode);
 
             //edges only have one label????
             String edgeLabels = edge.type();
-            session.close();
-            return new RelationshipObject(edge.elementId().split(":")[2], edgeLabels, edge.asMap(), sourceObj, targetObj);
-        } else {
-            ResultSummary summary = result.consume();
-            log.warn("database returned empty result for query: " + summary.query().toString());
-        }
+            if (RelationshipObject.RelationshipLabels.includes.name().equals(edgeLabels)) {
+                hierarchyIndex.addEdge(Long.parseLong(sourceObj.getIdentity()), Long.parseLong(targetObj.getIdentity()));
+            }
+            String identity = graphRecordMapper.identityOf(edge);
+            List<EdgeObject> added = List.of(new EdgeObject(identity, edgeLabels, edge.asMap(), sourceObj.getIdentity(), targetObj.getIdentity()));
+            lineageIndex.addEdges(added);
+            changeFeed.relationshipsAdded(added);
+            scenarioCatalog.addRelationship(Long.parseLong(identity), edge.get("scenario").asObject(), Long.parseLong(sourceObj.getIdentity()),
+                    Long.parseLong(targetObj.getIdentity()));
+            return new RelationshipObject(identity, edgeLabels, edge.asMap(), sourceObj, targetObj);
+        });
+    }
 
-        log.warn("failed to add relationship to database");
-        throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY);
+    /**
+     * add many relationships to database, written in chunks with one query per chunk. Source and target are
+     * matched by identity if both have one, otherwise by name.
+     *
+     * @param relationships json array of relationships to be added
+     * @return created identities in input order and errors of items that could not be added
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public BatchResultObject addRelationships(@RequestBody List<RelationshipObject> relationships) {
+        log.info("adding batch of {} relationships", relationships.size());
+        return batchWriter.writeRelationships(relationships.iterator());
+    }
 
+    /**
+     * add many relationships to database from newline delimited json, the body is read while earlier chunks are
+     * written so it never has to be held in memory as a whole
+     *
+     * @param body one relationship per line
+     * @return created identities in input order and errors of items that could not be added
+     * @throws IOException if reading the body fails
+     */
+    @PostMapping(value = "/batch", consumes = NdjsonWriter.MEDIA_TYPE)
+    public BatchResultObject addRelationshipsStream(InputStream body) throws IOException {
+        log.info("adding streamed batch of relationships");
+        return batchWriter.writeRelationships(body);
     }
 
     /**
@@ -132,7 +195,7 @@ public class RelationshipEndpoint {
      */
     private String validatedLabel(String label) {
         try {
-            return String.valueOf(RelationshipObject.RelationshipLabels.valueOf(label));
+            return LabelValidator.relationshipLabel(label);
         } catch (IllegalArgumentException ignored) {
             throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY);
         }
@@ -1,28 +1,44 @@
 package backend.endpoint;
 
-import backend.entity.NodeObject;
+import backend.entity.GraphObject;
+import backend.entity.PageObject;
 import backend.entity.RelationshipObject;
+import backend.entity.ScenarioStatsObject;
+import backend.service.DotBuilder;
+import backend.service.GraphCollapser;
+import backend.service.GraphRecordMapper;
+import backend.service.HierarchyIndex;
+import backend.service.LayeredLayout;
+import backend.service.NdjsonWriter;
+import backend.service.PageReader;
+import backend.service.QueryExecutor;
+import backend.service.ResponseEncoder;
+import backend.service.ScenarioBundleBuilder;
+import backend.service.ScenarioCache;
+import backend.service.ScenarioCatalog;
 import lombok.extern.slf4j.Slf4j;
-import org.neo4j.driver.AuthTokens;
-import org.neo4j.driver.Driver;
-import org.neo4j.driver.GraphDatabase;
-import org.neo4j.driver.Record;
-import org.neo4j.driver.Result;
-import org.neo4j.driver.Session;
-import org.neo4j.driver.types.Node;
-import org.neo4j.driver.types.Relationship;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.env.Environment;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.ArrayList;
-import java.util.EnumSet;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 /**
@@ -33,100 +49,272 @@ import java.util.stream.Stream;
 @Slf4j
 public class ScenarioEndpoint {
 
-    Driver driver;
+    private static final MediaType DOT_MEDIA_TYPE = new MediaType("text", "vnd.graphviz", StandardCharsets.UTF_8);
+
+    NdjsonWriter ndjsonWriter;
+    ScenarioCache scenarioCache;
+    ResponseEncoder responseEncoder;
+    DotBuilder dotBuilder;
+    LayeredLayout layeredLayout;
+    HierarchyIndex hierarchyIndex;
+    ScenarioCatalog scenarioCatalog;
+    QueryExecutor queryExecutor;
+    GraphRecordMapper graphRecordMapper;
+    PageReader pageReader;
+    ScenarioBundleBuilder scenarioBundleBuilder;
+    GraphCollapser graphCollapser;
 
     /**
-     * constructor for ScenarioEndpoint initializes the neo4j driver with database address and credentials
+     * constructor for ScenarioEndpoint
      *
-     * @param env Environment object for accessing application.properties values
+     * @param ndjsonWriter          writer used for streaming responses
+     * @param scenarioCache         cache for serialized scenario responses
+     * @param responseEncoder       encodes cached responses as json or Smile
+     * @param dotBuilder            builder for graphviz dot source of scenarios
+     * @param layeredLayout         layout engine for scenarios
+     * @param hierarchyIndex        in memory includes hierarchy
+     * @param scenarioCatalog       in memory catalog of scenario names and sizes
+     * @param queryExecutor         runs and measures all queries
+     * @param graphRecordMapper     maps query results to entities
+     * @param pageReader            reads relationships of scenarios page by page
+     * @param scenarioBundleBuilder builds the hierarchy maps sent with scenarios
+     * @param graphCollapser        collapses scenarios to a depth of the includes hierarchy
      */
     @Autowired
-    public ScenarioEndpoint(Environment env) {
-
-        driver = GraphDatabase.driver(env.getProperty("neo4j.uri"),
-                AuthTokens.basic(env.getProperty("neo4j.authentication.username"),
-                        env.getProperty("neo4j.authentication.password")));
+    public ScenarioEndpoint(NdjsonWriter ndjsonWriter, ScenarioCache scenarioCache, ResponseEncoder responseEncoder,
+                            DotBuilder dotBuilder, LayeredLayout layeredLayout, HierarchyIndex hierarchyIndex,
+                            ScenarioCatalog scenarioCatalog, QueryExecutor queryExecutor, GraphRecordMapper graphRecordMapper,
+                            PageReader pageReader, ScenarioBundleBuilder scenarioBundleBuilder, GraphCollapser graphCollapser) {
+        this.ndjsonWriter = ndjsonWriter;
+        this.scenarioCache = scenarioCache;
+        this.responseEncoder = responseEncoder;
+        this.dotBuilder = dotBuilder;
+        this.layeredLayout = layeredLayout;
+        this.hierarchyIndex = hierarchyIndex;
+        this.scenarioCatalog = scenarioCatalog;
+        this.queryExecutor = queryExecutor;
+        this.graphRecordMapper = graphRecordMapper;
+        this.pageReader = pageReader;
+        this.scenarioBundleBuilder = scenarioBundleBuilder;
+        this.graphCollapser = graphCollapser;
     }
 
     /**
-     * get all distinct scenario names
+     * get all distinct scenario names, answered from the scenario catalog
      *
      * @return stream of scenario names
      */
     @GetMapping(value = {"/all"})
     public Stream<String> getScenarioNames() {
         log.info("retrieving all scenario names");
-        Session session = driver.session();
-        List<String> scenarios = new ArrayList<>();
-        Result result = session.run("MATCH ()-[r]->() UNWIND r.scenario as scenario RETURN DISTINCT scenario");
+        return scenarioCatalog.names().stream();
+    }
 
-        while (result.hasNext()) {
-            Record rec = result.next();
-            scenarios.add(rec.get("scenario").asString());
-        }
-        return scenarios.stream();
+    /**
+     * get number of relationships and nodes of all scenarios, answered from the scenario catalog
+     *
+     * @return size and last changed graph version per scenario
+     */
+    @GetMapping(value = {"/stats"})
+    public List<ScenarioStatsObject> getScenarioStats() {
+        log.info("retrieving scenario statistics");
+        return scenarioCatalog.stats();
     }
 
     /**
      * get all relationships where scenario attribute includes given scenario name
      *
-     * @param name of the desired scenario
-     * @return all relationships from scenario
+     * @param name   of the desired scenario
+     * @param accept Accept header, selects json or Smile
+     * @return all relationships from scenario as json or Smile, with ETag for conditional requests
      */
     @GetMapping(value = {"/"})
-    public Stream<RelationshipObject> getAllByScenario(@RequestParam String name) {
+    public CompletableFuture<ResponseEntity<byte[]>> getAllByScenario(@RequestParam String name,
+                                                                      @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
         log.info("retrieving scenario with name:  {}", name);
+        return cachedEncoded("relationships:" + name, accept, () -> readRelationships(name));
+    }
+
+    /**
+     * get one page of the relationships of scenario ordered by identity, pages are requested one after another
+     * with the next cursor of the previous page
+     *
+     * @param name  of the desired scenario
+     * @param after cursor of the previous page, omitted for the first page
+     * @param size  number of relationships per page, at most page.max-size
+     * @return relationships of the page including source and target node and cursor of the next page
+     */
+    @GetMapping(value = {"/page"})
+    public CompletableFuture<PageObject<RelationshipObject>> getPageByScenario(@RequestParam String name,
+                                                                               @RequestParam(required = false) Long after,
+                                                                               @RequestParam(required = false) Integer size) {
+        log.info("retrieving page of scenario {} after {}", name, after);
+        return pageReader.relationships(name, after, size);
+    }
+
+    /**
+     * stream all relationships of scenario as newline delimited json, selected by requesting application/x-ndjson.
+     * Relationships are written while the result is read instead of being collected first.
+     *
+     * @param name of the desired scenario
+     * @return response body writing one relationship per line
+     */
+    @GetMapping(value = {"/"}, produces = NdjsonWriter.MEDIA_TYPE)
+    public StreamingResponseBody streamAllByScenario(@RequestParam String name) {
+        log.info("streaming scenario with name:  {}", name);
         Map<String, Object> params = new HashMap<>();
         params.put("scenario", name);
+        String endpoint = QueryExecutor.currentEndpoint();
 
-        Session session = driver.session();
-        Result result = session.run("MATCH (p)-[r]->(q) where $scenario in r.scenario RETURN p,r,q", params);
-
-        List<RelationshipObject> relationshipList = new ArrayList<>();
+        return out -> queryExecutor.stream(endpoint, "MATCH (p)-[r]->(q) where $scenario in r.scenario RETURN p,r,q", params,
+                records -> ndjsonWriter.write(out, records, graphRecordMapper::toRelationshipObject));
+    }
 
-        while (result.hasNext()) {
-            Record rec = result.next();
+    /**
+     * get scenario as normalized graph, every node is only contained once and edges reference their source
+     * and target by identity. The query runs on an async session without blocking the request thread.
+     *
+     * @param name   of the desired scenario
+     * @param accept Accept header, selects json or Smile
+     * @return nodes and edges of scenario as json or Smile, with ETag for conditional requests
+     */
+    @GetMapping(value = {"/graph"})
+    public CompletableFuture<ResponseEntity<byte[]>> getGraphByScenario(@RequestParam String name,
+                                                                        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        log.info("retrieving normalized scenario graph with name:  {}", name);
+        return cachedEncoded("graph:" + name, accept, () -> readGraph(name));
+    }
 
-            Node source = rec.get("p").asNode();
-            Node target = rec.get("q").asNode();
-            Relationship edge = rec.get("r").asRelationship();
+    /**
+     * get scenario as graphviz dot source, built the same way the frontend builds it for the scenario viewer.
+     * The dot source is cached per graph version, so clients only have to render it.
+     *
+     * @param name      of the desired scenario
+     * @param collapsed if true child nodes are hidden and their edges are drawn from/to their root node
+     * @return dot source of scenario, with ETag for conditional requests
+     */
+    @GetMapping(value = {"/dot"})
+    public CompletableFuture<ResponseEntity<byte[]>> getDotByScenario(@RequestParam String name, @RequestParam(defaultValue = "false") boolean collapsed) {
+        log.info("retrieving dot source of scenario with name:  {}", name);
+        return cached("dot:" + collapsed + ":" + name, DOT_MEDIA_TYPE,
+                () -> readGraph(name).thenApplyAsync(graph -> dotBuilder.build(graph, hierarchyIndex.snapshot(), collapsed).getBytes(StandardCharsets.UTF_8)));
+    }
 
-            List<String> sourceLabels = orderLabels(source.labels());
-            NodeObject sourceObj = new NodeObject(source.elementId().split(":")[2], sourceLabels, source.asMap());
+    /**
+     * get scenario together with a precomputed layered layout, containing node positions, edge routes and the
+     * bounding boxes of includes clusters. The layout is cached per graph version.
+     *
+     * @param name   of the desired scenario
+     * @param accept Accept header, selects json or Smile
+     * @return scenario graph with layout as json or Smile, with ETag for conditional requests
+     */
+    @GetMapping(value = {"/layout"})
+    public CompletableFuture<ResponseEntity<byte[]>> getLayoutByScenario(@RequestParam String name,
+                                                                         @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        log.info("retrieving layout of scenario with name:  {}", name);
+        return cachedEncoded("layout:" + name, accept, () -> readGraph(name).thenApplyAsync(graph -> layeredLayout.layout(graph, hierarchyIndex.snapshot())));
+    }
 
-            List<String> targetLabels = orderLabels(target.labels());
-            NodeObject targetObj = new NodeObject(target.elementId().split(":")[2], targetLabels, target.asMap());
+    /**
+     * get everything needed to open a scenario in one request: the normalized scenario graph and the hierarchy
+     * maps of /node/hierarchies/byParent/ and /node/hierarchies/byChildren/ together with the root of every child.
+     * The graph is read with one query, the hierarchy maps are built from the in memory hierarchy for exactly the
+     * nodes of that graph. The bundle is cached per graph version.
+     *
+     * @param name   of the desired scenario
+     * @param accept Accept header, selects json or Smile
+     * @return scenario graph with hierarchy maps as json or Smile, with ETag for conditional requests
+     */
+    @GetMapping(value = {"/bundle"})
+    public CompletableFuture<ResponseEntity<byte[]>> getBundleByScenario(@RequestParam String name,
+                                                                         @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        log.info("retrieving bundle of scenario with name:  {}", name);
+        return cachedEncoded("bundle:" + name, accept, () -> readGraph(name).thenApplyAsync(graph -> scenarioBundleBuilder.build(graph, hierarchyIndex.snapshot())));
+    }
 
-            //edges only have one label????
-            String edgeLabels = edge.type();
-            RelationshipObject relationship = new RelationshipObject(edge.elementId().split(":")[2], edgeLabels, edge.asMap(), sourceObj, targetObj);
-            relationshipList.add(relationship);
+    /**
+     * get scenario collapsed to a depth of the includes hierarchy, for a first overview of large scenarios. Nodes
+     * below depth are hidden and their parent at depth stands in for them, relationships between the same visible
+     * nodes are aggregated per label with their count. The collapsed graph is cached per graph version and depth.
+     *
+     * @param name   of the desired scenario
+     * @param depth  hierarchy depth of the deepest visible nodes, 0 to only show root nodes
+     * @param accept Accept header, selects json or Smile
+     * @return visible nodes, aggregated edges and number of hidden nodes per collapsed node as json or Smile, with
+     * ETag for conditional requests
+     */
+    @GetMapping(value = {"/collapsed"})
+    public CompletableFuture<ResponseEntity<byte[]>> getCollapsedByScenario(@RequestParam String name,
+                                                                            @RequestParam(defaultValue = "0") int depth,
+                                                                            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        log.info("retrieving scenario with name {} collapsed to depth {}", name, depth);
 
+        if (depth < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "depth must not be negative");
         }
+        String endpoint = QueryExecutor.currentEndpoint();
+        return cachedEncoded("collapsed:" + depth + ":" + name, accept,
+                () -> readGraph(name).thenComposeAsync(graph -> graphCollapser.collapse(endpoint, graph, hierarchyIndex.snapshot(), depth)));
+    }
+
+    /**
+     * reads all relationships of scenario from database
+     *
+     * @param name of scenario
+     * @return future of relationships including source and target node
+     */
+    private CompletableFuture<List<RelationshipObject>> readRelationships(String name) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("scenario", name);
 
-        return relationshipList.stream();
+        return queryExecutor.readLatestAsync("MATCH (p)-[r]->(q) where $scenario in r.scenario RETURN p,r,q", params, graphRecordMapper.relationshipMapper());
     }
 
     /**
-     * orders node labels, so that the symbol defining label is first in list
+     * reads scenario from database as normalized graph, every node is only contained once
      *
-     * @param labels iterable containing a set of label strings
-     * @return ordered ArrayList containing label strings
+     * @param name of scenario
+     * @return future of nodes and edges of scenario
      */
-    private List<String> orderLabels(Iterable<String> labels) {
-        List<String> orderedLabels = new ArrayList<>();
-        EnumSet<NodeObject.TypeLabels> typeLabels = EnumSet.allOf(NodeObject.TypeLabels.class);
+    private CompletableFuture<GraphObject> readGraph(String name) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("scenario", name);
 
-        labels.forEach((label) -> {
-            if(typeLabels.contains(label)){
-                orderedLabels.add(0,label);
-            }else{
-                orderedLabels.add(label);
-            }
-        });
+        return queryExecutor.readLatestAsync("MATCH (p)-[r]->(q) where $scenario in r.scenario RETURN p,r,q", params, Function.identity())
+                .thenApply(graphRecordMapper::toGraphObject);
+    }
 
-        return orderedLabels;
+    /**
+     * serves json or Smile response from the scenario cache, both encodings are cached separately
+     *
+     * @param key    cache key of the response
+     * @param accept Accept header of the request
+     * @param loader starts reading the response object from the database on cache miss
+     * @return future of encoded response with ETag
+     */
+    private CompletableFuture<ResponseEntity<byte[]>> cachedEncoded(String key, String accept, Supplier<CompletableFuture<?>> loader) {
+        MediaType mediaType = responseEncoder.negotiate(accept);
+        String cacheKey = mediaType.equals(ResponseEncoder.SMILE) ? "smile:" + key : key;
+        return cached(cacheKey, mediaType, () -> loader.get().thenApplyAsync(value -> responseEncoder.encode(value, mediaType)));
+    }
 
+    /**
+     * serves response from the scenario cache. The response carries a strong ETag, spring answers requests
+     * with a matching If-None-Match header with 304 Not Modified and without body. On cache miss the body is
+     * created asynchronously, serialization runs on the common pool instead of the driver's network threads.
+     *
+     * @param key         cache key of the response
+     * @param contentType content type of the response body
+     * @param loader      starts creating the response body on cache miss
+     * @return future of response with ETag
+     */
+    private CompletableFuture<ResponseEntity<byte[]>> cached(String key, MediaType contentType, Supplier<CompletionStage<byte[]>> loader) {
+        return scenarioCache.getAsync(key, loader).thenApply(entry -> ResponseEntity.ok()
+                .contentType(contentType)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT)
+                .eTag(entry.etag())
+                .body(entry.body()));
     }
 
 }
@@ -0,0 +1,97 @@
+package backend.endpoint;
+
+import backend.entity.SnapshotObject;
+import backend.service.NdjsonWriter;
+import backend.service.QueryExecutor;
+import backend.service.SnapshotStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+
+/**
+ * Endpoint for exporting and importing snapshots of the whole graph
+ */
+@RestController
+@RequestMapping("/snapshot")
+@Slf4j
+public class SnapshotEndpoint {
+
+    SnapshotStore snapshotStore;
+
+    /**
+     * constructor for SnapshotEndpoint
+     *
+     * @param snapshotStore writes and reads gzip compressed graph snapshots
+     */
+    @Autowired
+    public SnapshotEndpoint(SnapshotStore snapshotStore) {
+        this.snapshotStore = snapshotStore;
+    }
+
+    /**
+     * download a snapshot of all nodes and relationships as gzip compressed newline delimited json. The snapshot is
+     * compressed while the graph is read, so memory usage does not grow with the size of the database.
+     *
+     * @return response body writing the compressed snapshot
+     */
+    @GetMapping(value = {""}, produces = SnapshotStore.MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> exportSnapshot() {
+        log.info("exporting snapshot");
+        String endpoint = QueryExecutor.currentEndpoint();
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(SnapshotStore.fileName(Instant.now())).build().toString())
+                .contentType(MediaType.parseMediaType(SnapshotStore.MEDIA_TYPE))
+                .body(out -> snapshotStore.export(endpoint, out));
+    }
+
+    /**
+     * save a snapshot to snapshot.directory, older snapshots beyond snapshot.keep are deleted
+     *
+     * @return file name and number of nodes and relationships saved
+     * @throws IOException if writing the snapshot fails
+     */
+    @PostMapping(value = {""})
+    public SnapshotObject saveSnapshot() throws IOException {
+        log.info("saving snapshot");
+        return snapshotStore.save(QueryExecutor.currentEndpoint());
+    }
+
+    /**
+     * import a gzip compressed snapshot into an empty database, nodes and relationships are written in chunks
+     *
+     * @param body compressed snapshot as downloaded from GET /snapshot
+     * @return number of nodes and relationships created and of lines that could not be imported, 409 if the
+     * database is not empty, 422 if the snapshot is truncated or malformed
+     */
+    @PostMapping(value = "/import", consumes = SnapshotStore.MEDIA_TYPE)
+    public SnapshotObject importSnapshot(InputStream body) {
+        log.info("importing compressed snapshot");
+        return snapshotStore.importSnapshot(body, true);
+    }
+
+    /**
+     * import an uncompressed snapshot into an empty database
+     *
+     * @param body one node or relationship per line, nodes first
+     * @return number of nodes and relationships created and of lines that could not be imported, 409 if the
+     * database is not empty, 422 if the snapshot is malformed
+     */
+    @PostMapping(value = "/import", consumes = NdjsonWriter.MEDIA_TYPE)
+    public SnapshotObject importSnapshotStream(InputStream body) {
+        log.info("importing snapshot");
+        return snapshotStore.importSnapshot(body, false);
+    }
+}
@@ -0,0 +1,109 @@
+package backend.endpoint;
+
+import backend.entity.PoolMetricsObject;
+import backend.entity.QueryStatsObject;
+import backend.entity.ResponseStatsObject;
+import backend.entity.SchemaObject;
+import backend.service.QueryMetrics;
+import backend.service.SchemaManager;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.ConnectionPoolMetrics;
+import org.neo4j.driver.Driver;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Endpoint exposing runtime information about the backend and its database connection
+ */
+@RestController
+@RequestMapping("/status")
+@Slf4j
+public class StatusEndpoint {
+
+    Driver driver;
+    SchemaManager schemaManager;
+    QueryMetrics queryMetrics;
+
+    /**
+     * constructor for StatusEndpoint
+     *
+     * @param driver        neo4j driver, source of the connection pool metrics
+     * @param schemaManager creates the indexes on startup and reports their state
+     * @param queryMetrics  execution statistics of queries and responses
+     */
+    @Autowired
+    public StatusEndpoint(Driver driver, SchemaManager schemaManager, QueryMetrics queryMetrics) {
+        this.driver = driver;
+        this.schemaManager = schemaManager;
+        this.queryMetrics = queryMetrics;
+    }
+
+    /**
+     * get connection pool statistics of the neo4j driver
+     *
+     * @return one entry per connection pool (one per database server address)
+     */
+    @GetMapping(value = {"/pool"})
+    public List<PoolMetricsObject> getPoolMetrics() {
+        log.info("retrieving connection pool metrics");
+
+        return driver.metrics().connectionPoolMetrics().stream()
+                .map(this::toPoolMetricsObject)
+                .toList();
+    }
+
+    /**
+     * get state of the indexes created on startup
+     *
+     * @return online, missing and not yet online indexes
+     */
+    @GetMapping(value = {"/schema"})
+    public SchemaObject getSchema() {
+        log.info("retrieving schema status");
+        return schemaManager.status();
+    }
+
+    /**
+     * get execution statistics of all queries, grouped by endpoint and query
+     *
+     * @return count, errors, rows, latencies and latency histogram per query, slowest total time first
+     */
+    @GetMapping(value = {"/queries"})
+    public List<QueryStatsObject> getQueryStats() {
+        log.info("retrieving query statistics");
+        return queryMetrics.queries();
+    }
+
+    /**
+     * get size of the response bodies written by every endpoint
+     *
+     * @return count and total, mean and maximum bytes per endpoint, largest total first
+     */
+    @GetMapping(value = {"/responses"})
+    public List<ResponseStatsObject> getResponseStats() {
+        log.info("retrieving response size statistics");
+        return queryMetrics.responses();
+    }
+
+    /**
+     * reset query and response statistics, e.g. before measuring a single workload
+     */
+    @DeleteMapping(value = {"/queries"})
+    public void clearQueryStats() {
+        log.info("clearing query statistics");
+        queryMetrics.clear();
+    }
+
+    private PoolMetricsObject toPoolMetricsObject(ConnectionPoolMetrics metrics) {
+        double average = metrics.acquired() == 0 ? 0 : (double) metrics.totalAcquisitionTime() / metrics.acquired();
+
+        return new PoolMetricsObject(metrics.id(), metrics.inUse(), metrics.idle(), metrics.creating(),
+                metrics.acquiring(), metrics.acquired(), metrics.timedOutToAcquire(),
+                metrics.totalAcquisitionTime(), average);
+    }
+}
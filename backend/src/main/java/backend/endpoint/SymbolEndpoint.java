@@ -1,26 +1,24 @@
 package backend.endpoint;
 
 
-import lombok.RequiredArgsConstructor;
+import backend.service.ResponseEncoder;
+import backend.service.SymbolStore;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.env.Environment;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
 
-import java.io.FileDescriptor;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -29,30 +27,71 @@ import java.nio.file.Paths;
 @RestController
 @RequestMapping("/symbol")
 @Slf4j
-@RequiredArgsConstructor
 public class SymbolEndpoint {
 
+    private static final MediaType SVG_MEDIA_TYPE = MediaType.valueOf("image/svg+xml");
+    private static final String EXTENSION = ".svg";
+
+    SymbolStore symbolStore;
+    CacheControl cacheControl;
+
+    /**
+     * constructor for SymbolEndpoint
+     *
+     * @param symbolStore in memory store of all symbols
+     * @param env         Environment object for accessing application.properties values
+     */
+    @Autowired
+    public SymbolEndpoint(SymbolStore symbolStore, Environment env) {
+        this.symbolStore = symbolStore;
+        this.cacheControl = CacheControl.maxAge(env.getProperty("symbol.cache.max-age-seconds", Long.class, 86400L), TimeUnit.SECONDS);
+    }
+
+    /**
+     * get all symbols in one response
+     *
+     * @param acceptEncoding Accept-Encoding header, the gzip compressed bundle is returned if it contains gzip
+     * @return json object containing the svg source of every symbol by name, with ETag for conditional requests
+     */
+    @GetMapping("/bundle")
+    public ResponseEntity<byte[]> getBundle(@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        log.info("retrieving symbol bundle");
+        return response(symbolStore.bundle(), MediaType.APPLICATION_JSON, acceptEncoding);
+    }
+
     /**
      * get symbol as SVG
      *
-     * @param name of symbol including file extension
-     * @return svg as byte[]
+     * @param name           of symbol including file extension
+     * @param acceptEncoding Accept-Encoding header, the gzip compressed symbol is returned if it accepts gzip
+     * @return svg as byte[], with ETag for conditional requests
      */
     @GetMapping("/{name}")
-    public ResponseEntity<byte[]> getSymbol(@PathVariable String name) {
-        log.info("retrieving symbol with name {}",name);
-
-        HttpHeaders header = new HttpHeaders();
-        header.add("Content-Type","image/svg+xml");
-        header.add("Cache-Control","max-age=600");
-
-        try {
-            Path path = Paths.get("../images/" + name);
-            byte[] svg = Files.readAllBytes(path);
-            return ResponseEntity.ok().headers(header).body(svg);
-        } catch (IOException e) {
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
-        }
+    public ResponseEntity<byte[]> getSymbol(@PathVariable String name,
+                                            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        log.info("retrieving symbol with name {}", name);
+
+        String symbol = name.endsWith(EXTENSION) ? name.substring(0, name.length() - EXTENSION.length()) : name;
+        return symbolStore.symbol(symbol)
+                .map(asset -> response(asset, SVG_MEDIA_TYPE, acceptEncoding))
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
     }
 
+    /**
+     * builds response from preloaded asset, spring answers requests with a matching If-None-Match header with
+     * 304 Not Modified and without body
+     */
+    private ResponseEntity<byte[]> response(SymbolStore.Asset asset, MediaType contentType, String acceptEncoding) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(contentType)
+                .cacheControl(cacheControl)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+
+        if (asset.gzipped() != null && ResponseEncoder.acceptsGzip(acceptEncoding)) {
+            return response.eTag(asset.gzippedEtag())
+                    .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                    .body(asset.gzipped());
+        }
+        return response.eTag(asset.etag()).body(asset.body());
+    }
 }
@@ -0,0 +1,38 @@
+package backend.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class representing the outcome of a batch write
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchResultObject {
+
+    int received;
+    int created;
+
+    /**
+     * identity of the created entity per received item in input order, null for items that were not created
+     */
+    List<String> identities = new ArrayList<>();
+
+    List<ItemError> errors = new ArrayList<>();
+
+    /**
+     * error of one item of the batch, referenced by its position in the input
+     */
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class ItemError {
+        int index;
+        String message;
+    }
+}
@@ -0,0 +1,42 @@
+package backend.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Class representing one change of the graph as sent by the change feed, nodes and edges are normalized like in
+ * {@link GraphObject}
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChangeObject {
+
+    /**
+     * graph version after the change, used as event id
+     */
+    long version;
+    Type type;
+    /**
+     * scenarios of the added relationships, empty for nodes
+     */
+    List<String> scenarios;
+
+    List<NodeObject> nodes;
+    List<EdgeObject> edges;
+
+    /**
+     * kind of change, also used as event name
+     */
+    public enum Type {
+        nodesAdded,
+        relationshipsAdded,
+        /**
+         * the change was too large to be sent or the client missed changes, it has to reload the graph
+         */
+        reset
+    }
+}
@@ -0,0 +1,43 @@
+package backend.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class representing a graph collapsed to a depth of the includes hierarchy. Nodes below that depth are replaced by
+ * their ancestor at that depth and the edges between them are aggregated.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CollapsedGraphObject {
+
+    /**
+     * hierarchy depth of the deepest visible nodes, 0 if only root nodes are visible
+     */
+    int depth;
+
+    List<NodeObject> nodes;
+    List<AggregatedEdge> edges;
+    /**
+     * number of nodes hidden below every collapsed node
+     */
+    Map<String, Integer> hidden;
+
+    /**
+     * all relationships with the same label between the visible nodes standing in for their source and target
+     */
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class AggregatedEdge {
+        String source;
+        String target;
+        String labels;
+        int count;
+    }
+}
@@ -0,0 +1,23 @@
+package backend.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Class representing relationships that only reference their source and target node by identity
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class EdgeObject {
+
+    String identity;
+    String labels;
+    Map<String, Object> props;
+
+    String source;
+    String target;
+}
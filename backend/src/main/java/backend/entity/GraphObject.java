@@ -0,0 +1,19 @@
+package backend.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Class representing a normalized graph, every node is contained exactly once and edges reference nodes by identity
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class GraphObject {
+
+    List<NodeObject> nodes;
+    List<EdgeObject> edges;
+}
@@ -0,0 +1,66 @@
+package backend.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Class representing a laid out graph. All coordinates are the centers of the laid out elements, the graph is laid
+ * out from left to right.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LayoutObject {
+
+    GraphObject graph;
+    double width;
+    double height;
+
+    List<NodeLayout> nodes;
+    List<EdgeLayout> edges;
+    List<ClusterLayout> clusters;
+
+    /**
+     * position and size of one node
+     */
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class NodeLayout {
+        String identity;
+        int layer;
+        double x;
+        double y;
+        double width;
+        double height;
+    }
+
+    /**
+     * route of one edge from its source to its target node as a list of [x, y] points
+     */
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class EdgeLayout {
+        String identity;
+        List<double[]> points;
+    }
+
+    /**
+     * bounding box of all nodes included by the same root node
+     */
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class ClusterLayout {
+        String identity;
+        List<String> nodes;
+        double x;
+        double y;
+        double width;
+        double height;
+    }
+}
@@ -0,0 +1,50 @@
+package backend.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class representing the nodes upstream or downstream of a root node, connected by transfers, produces and
+ * conditional relationships. Every node is contained exactly once and edges reference nodes by identity.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LineageObject {
+
+    String root;
+    Direction direction;
+    /**
+     * number of hops that were expanded, less than requested if the lineage ended or was truncated
+     */
+    int depth;
+    /**
+     * whether the edge cap was reached before the lineage was expanded to the requested depth
+     */
+    boolean truncated;
+    /**
+     * number of relationships between root and every node
+     */
+    Map<String, Integer> distances;
+
+    List<NodeObject> nodes;
+    List<EdgeObject> edges;
+
+    /**
+     * direction of the data flow followed from the root
+     */
+    public enum Direction {
+        /**
+         * nodes the root passes data to, relationships are followed from source to target
+         */
+        downstream,
+        /**
+         * nodes passing data to the root, relationships are followed from target to source
+         */
+        upstream
+    }
+}
@@ -0,0 +1,39 @@
+package backend.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Class representing the normalized subgraph around a root node, every node is contained exactly once and edges
+ * reference nodes by identity
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class NeighborhoodObject {
+
+    String root;
+    /**
+     * number of hops that were expanded, less than requested if the neighborhood ended or was truncated
+     */
+    int depth;
+    /**
+     * whether the edge cap was reached before the neighborhood was expanded to the requested depth
+     */
+    boolean truncated;
+
+    List<NodeObject> nodes;
+    List<EdgeObject> edges;
+
+    /**
+     * direction of the relationships followed from the root
+     */
+    public enum Direction {
+        outgoing,
+        incoming,
+        both
+    }
+}
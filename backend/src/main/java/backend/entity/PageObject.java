@@ -0,0 +1,22 @@
+package backend.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Class representing one page of a listing ordered by identity
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PageObject<T> {
+
+    List<T> items;
+    /**
+     * cursor to request the next page with, the identity of the last item. Null on the last page.
+     */
+    String next;
+}
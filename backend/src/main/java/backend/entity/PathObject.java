@@ -0,0 +1,22 @@
+package backend.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Class representing a path from a source to a target node, nodes and edges are listed in path order
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PathObject {
+
+    String source;
+    String target;
+
+    List<NodeObject> nodes;
+    List<EdgeObject> edges;
+}
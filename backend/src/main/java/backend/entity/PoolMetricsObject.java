@@ -0,0 +1,32 @@
+package backend.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Class representing the statistics of one neo4j driver connection pool
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PoolMetricsObject {
+
+    String id;
+    int inUse;
+    int idle;
+    int creating;
+    int acquiring;
+    long acquired;
+    long timedOutToAcquire;
+
+    /**
+     * total time in milliseconds spent waiting for connections since driver start
+     */
+    long totalAcquisitionTime;
+
+    /**
+     * average time in milliseconds spent waiting per acquired connection
+     */
+    double averageAcquisitionTime;
+}
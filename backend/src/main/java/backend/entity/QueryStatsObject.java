@@ -0,0 +1,45 @@
+package backend.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Class representing the statistics of one query run for one endpoint
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class QueryStatsObject {
+
+    /**
+     * http method and request mapping, "background" for queries not run for a request
+     */
+    String endpoint;
+    String query;
+    long count;
+    long errors;
+    long rows;
+
+    /**
+     * time from starting the query until the result was read completely, including the time the backend spent
+     * processing the records
+     */
+    long totalMillis;
+    double meanMillis;
+    long maxMillis;
+
+    /**
+     * sum of the server side timings reported in the result summaries
+     */
+    long resultAvailableAfterMillis;
+    long resultConsumedAfterMillis;
+
+    /**
+     * number of executions by latency bucket, e.g. le100ms counts executions that took more than the previous
+     * bucket and at most 100ms
+     */
+    Map<String, Long> histogram;
+}
@@ -0,0 +1,23 @@
+package backend.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Class representing the size of the responses of one endpoint
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ResponseStatsObject {
+
+    /**
+     * http method and request mapping
+     */
+    String endpoint;
+    long count;
+    long totalBytes;
+    double meanBytes;
+    long maxBytes;
+}
@@ -0,0 +1,32 @@
+package backend.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class representing everything needed to open a scenario: its normalized graph and the includes hierarchy of its
+ * nodes. All hierarchy maps are keyed by node identity.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ScenarioBundleObject {
+
+    GraphObject graph;
+    /**
+     * parents with their direct and indirect children that appear in the scenario, like /node/hierarchies/byParent/
+     */
+    Map<String, List<String>> byParent;
+    /**
+     * children in the scenario with their direct parent, like /node/hierarchies/byChildren/
+     */
+    Map<String, String> byChildren;
+    /**
+     * all direct and indirect children of the root nodes of byParent with their root node
+     */
+    Map<String, String> rootOf;
+}
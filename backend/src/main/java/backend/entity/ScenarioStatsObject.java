@@ -0,0 +1,23 @@
+package backend.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Class representing the size of one scenario
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ScenarioStatsObject {
+
+    String name;
+    long relationships;
+    int nodes;
+
+    /**
+     * graph version of the last relationship added to the scenario, 0 if it has not changed since startup
+     */
+    long lastModified;
+}
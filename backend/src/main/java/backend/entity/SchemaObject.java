@@ -0,0 +1,30 @@
+package backend.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class representing the state of the indexes the backend depends on
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SchemaObject {
+
+    /**
+     * false if the database could not be reached to verify the indexes
+     */
+    boolean verified;
+
+    List<String> online;
+    List<String> missing;
+
+    /**
+     * state by index name for indexes that exist but are not online yet (e.g. POPULATING or FAILED)
+     */
+    Map<String, String> notOnline;
+}
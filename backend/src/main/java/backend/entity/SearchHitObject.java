@@ -0,0 +1,26 @@
+package backend.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Class representing one node found by the node search
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SearchHitObject {
+
+    String identity;
+    List<String> labels;
+    String name;
+
+    /**
+     * property the query was found in and its value
+     */
+    String property;
+    String value;
+}
@@ -0,0 +1,26 @@
+package backend.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Class representing the outcome of writing or importing a graph snapshot
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SnapshotObject {
+
+    /**
+     * file name in snapshot.directory, null for uploaded snapshots
+     */
+    String name;
+    long nodes;
+    long relationships;
+
+    /**
+     * nodes and relationships of an imported snapshot that could not be created
+     */
+    long failed;
+}
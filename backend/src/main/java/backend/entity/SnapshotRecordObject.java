@@ -0,0 +1,19 @@
+package backend.entity;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Class representing one line of a graph snapshot, either a node or a relationship
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SnapshotRecordObject {
+
+    NodeObject node;
+    EdgeObject edge;
+}
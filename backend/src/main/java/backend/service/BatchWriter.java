@@ -0,0 +1,412 @@
+package backend.service;
+
+import backend.entity.BatchResultObject;
+import backend.entity.EdgeObject;
+import backend.entity.NodeObject;
+import backend.entity.RelationshipObject;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.exceptions.Neo4jException;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.neo4j.driver.Values.parameters;
+
+/**
+ * Writes large numbers of nodes or relationships. Items are validated one by one, grouped by their labels (labels
+ * can't be query parameters) and written in chunks, one UNWIND query per chunk in its own write transaction. Failures
+ * are reported per item, a failing chunk does not affect the other chunks.
+ */
+@Component
+@Slf4j
+public class BatchWriter {
+
+    private final QueryExecutor queryExecutor;
+    private final HierarchyIndex hierarchyIndex;
+    private final LineageIndex lineageIndex;
+    private final NodeSearchIndex nodeSearchIndex;
+    private final ChangeFeed changeFeed;
+    private final ObjectMapper objectMapper;
+    private final SchemaManager schemaManager;
+    private final ScenarioCatalog scenarioCatalog;
+    private final GraphRecordMapper graphRecordMapper;
+    private final int chunkSize;
+
+    public BatchWriter(QueryExecutor queryExecutor, HierarchyIndex hierarchyIndex, LineageIndex lineageIndex, NodeSearchIndex nodeSearchIndex,
+                       ChangeFeed changeFeed, ObjectMapper objectMapper, SchemaManager schemaManager, ScenarioCatalog scenarioCatalog,
+                       GraphRecordMapper graphRecordMapper, Environment env) {
+        this.queryExecutor = queryExecutor;
+        this.hierarchyIndex = hierarchyIndex;
+        this.lineageIndex = lineageIndex;
+        this.nodeSearchIndex = nodeSearchIndex;
+        this.changeFeed = changeFeed;
+        this.objectMapper = objectMapper;
+        this.schemaManager = schemaManager;
+        this.scenarioCatalog = scenarioCatalog;
+        this.graphRecordMapper = graphRecordMapper;
+        this.chunkSize = env.getProperty("batch.chunk-size", Integer.class, 1000);
+    }
+
+    /**
+     * writes nodes read from newline delimited json, the input is read while earlier chunks are written
+     *
+     * @param ndjson one NodeObject per line
+     * @return created identities and errors per item
+     * @throws IOException if reading the input fails
+     */
+    public BatchResultObject writeNodes(InputStream ndjson) throws IOException {
+        try (MappingIterator<NodeObject> nodes = objectMapper.readerFor(NodeObject.class).readValues(ndjson)) {
+            return writeNodes(nodes);
+        }
+    }
+
+    /**
+     * writes nodes
+     *
+     * @param nodes nodes with labels and props containing at least a name
+     * @return created identities and errors per item
+     */
+    public BatchResultObject writeNodes(Iterator<NodeObject> nodes) {
+        BatchResultObject result = new BatchResultObject();
+        Map<String, List<Map<String, Object>>> pending = new HashMap<>();
+        ChangeFeed.Collector<NodeObject> added = changeFeed.collector();
+
+        try {
+            int index = 0;
+            while (true) {
+                int current = index;
+                NodeObject node;
+                try {
+                    if (!nodes.hasNext()) {
+                        break;
+                    }
+                    node = nodes.next();
+                } catch (RuntimeException e) {
+                    skipMalformed(e, current, result);
+                    index++;
+                    break;
+                }
+                index++;
+                result.getIdentities().add(null);
+
+                if (node == null || node.getProps() == null || !node.getProps().containsKey("name")) {
+                    result.getErrors().add(new BatchResultObject.ItemError(current, "node has no name"));
+                    continue;
+                }
+                String labels;
+                try {
+                    labels = LabelValidator.nodeLabels(node.getLabels());
+                    PropertyValidator.validate(node.getProps());
+                } catch (IllegalArgumentException e) {
+                    result.getErrors().add(new BatchResultObject.ItemError(current, e.getMessage()));
+                    continue;
+                }
+
+                List<Map<String, Object>> rows = pending.computeIfAbsent(labels, key -> new ArrayList<>());
+                rows.add(Map.of("index", current, "props", node.getProps()));
+                if (rows.size() >= chunkSize) {
+                    writeNodeChunk(labels, rows, result, added);
+                    rows.clear();
+                }
+            }
+            result.setReceived(index);
+
+            for (Map.Entry<String, List<Map<String, Object>>> entry : pending.entrySet()) {
+                if (!entry.getValue().isEmpty()) {
+                    writeNodeChunk(entry.getKey(), entry.getValue(), result, added);
+                }
+            }
+        } finally {
+            if (result.getCreated() > 0) {
+                changeFeed.nodesAdded(added.items());
+            }
+        }
+
+        log.info("batch created {} of {} nodes", result.getCreated(), result.getReceived());
+        return result;
+    }
+
+    private void writeNodeChunk(String labels, List<Map<String, Object>> rows, BatchResultObject result, ChangeFeed.Collector<NodeObject> added) {
+        try {
+            List<Record> created = queryExecutor.write(
+                    "UNWIND $rows AS row CREATE (s:" + labels + ") SET s = row.props RETURN row.index AS index, ID(s) AS identity",
+                    parameters("rows", rows).asMap(), Function.identity());
+
+            List<String> labelList = graphRecordMapper.orderLabels(new LinkedHashSet<>(Arrays.asList(labels.split(":"))));
+            Map<Integer, Map<String, Object>> rowOf = new HashMap<>();
+            for (Map<String, Object> row : rows) {
+                rowOf.put((Integer) row.get("index"), row);
+            }
+            List<NodeObject> nodes = new ArrayList<>(created.size());
+            for (Record record : created) {
+                int index = record.get("index").asInt();
+                String identity = String.valueOf(record.get("identity").asLong());
+                result.getIdentities().set(index, identity);
+                @SuppressWarnings("unchecked")
+                Map<String, Object> props = (Map<String, Object>) rowOf.get(index).get("props");
+                NodeObject node = new NodeObject(identity, labelList, props);
+                nodes.add(node);
+                added.add(node);
+            }
+            nodeSearchIndex.addAll(nodes);
+            result.setCreated(result.getCreated() + created.size());
+        } catch (Neo4jException e) {
+            log.warn("failed to write chunk of {} nodes: {}", rows.size(), e.getMessage());
+            for (Map<String, Object> row : rows) {
+                result.getErrors().add(new BatchResultObject.ItemError((int) row.get("index"), e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * writes relationships read from newline delimited json, the input is read while earlier chunks are written
+     *
+     * @param ndjson one RelationshipObject per line
+     * @return created identities and errors per item
+     * @throws IOException if reading the input fails
+     */
+    public BatchResultObject writeRelationships(InputStream ndjson) throws IOException {
+        try (MappingIterator<RelationshipObject> relationships = objectMapper.readerFor(RelationshipObject.class).readValues(ndjson)) {
+            return writeRelationships(relationships);
+        }
+    }
+
+    /**
+     * writes relationships, source and target are matched by identity if both have one, by name otherwise
+     *
+     * @param relationships relationships with label, props, source and target
+     * @return created identities and errors per item
+     */
+    public BatchResultObject writeRelationships(Iterator<RelationshipObject> relationships) {
+        BatchResultObject result = new BatchResultObject();
+        Map<Chunk, List<Map<String, Object>>> pending = new HashMap<>();
+        List<Added> added = new ArrayList<>();
+        ChangeFeed.Collector<EdgeObject> edges = changeFeed.collector();
+
+        try {
+            int index = 0;
+            while (true) {
+                int current = index;
+                RelationshipObject relationship;
+                try {
+                    if (!relationships.hasNext()) {
+                        break;
+                    }
+                    relationship = relationships.next();
+                } catch (RuntimeException e) {
+                    skipMalformed(e, current, result);
+                    index++;
+                    break;
+                }
+                index++;
+                result.getIdentities().add(null);
+
+                String label;
+                try {
+                    label = LabelValidator.relationshipLabel(relationship == null ? null : relationship.getLabels());
+                } catch (IllegalArgumentException e) {
+                    result.getErrors().add(new BatchResultObject.ItemError(current, "invalid relationship label"));
+                    continue;
+                }
+                try {
+                    PropertyValidator.validate(relationship.getProps());
+                } catch (IllegalArgumentException e) {
+                    result.getErrors().add(new BatchResultObject.ItemError(current, e.getMessage()));
+                    continue;
+                }
+
+                Map<String, Object> row = new HashMap<>();
+                row.put("index", current);
+                row.put("props", relationship.getProps() == null ? Map.of() : relationship.getProps());
+                String match = endpoints(relationship, row);
+                if (match == null) {
+                    result.getErrors().add(new BatchResultObject.ItemError(current, "relationship contains neither node IDs nor node names"));
+                    continue;
+                }
+
+                Chunk chunk = new Chunk(match, label);
+                List<Map<String, Object>> rows = pending.computeIfAbsent(chunk, k -> new ArrayList<>());
+                rows.add(row);
+                if (rows.size() >= chunkSize) {
+                    writeRelationshipChunk(chunk, rows, result, added, edges);
+                    rows.clear();
+                }
+            }
+            result.setReceived(index);
+
+            for (Map.Entry<Chunk, List<Map<String, Object>>> entry : pending.entrySet()) {
+                if (!entry.getValue().isEmpty()) {
+                    writeRelationshipChunk(entry.getKey(), entry.getValue(), result, added, edges);
+                }
+            }
+        } finally {
+            updateIndexes(added, edges);
+        }
+
+        log.info("batch created {} of {} relationships", result.getCreated(), result.getReceived());
+        return result;
+    }
+
+    /**
+     * adds source and target of relationship to query row
+     *
+     * @return subqueries binding all nodes matching source and target of the row as lists ss and ts, null if the
+     * nodes can't be matched
+     */
+    private String endpoints(RelationshipObject relationship, Map<String, Object> row) {
+        NodeObject source = relationship.getSource();
+        NodeObject target = relationship.getTarget();
+        if (source == null || target == null) {
+            return null;
+        }
+
+        if (source.getIdentity() != null && target.getIdentity() != null) {
+            try {
+                row.put("source", Long.parseLong(source.getIdentity()));
+                row.put("target", Long.parseLong(target.getIdentity()));
+                return "CALL { WITH row MATCH (s) WHERE ID(s) = row.source RETURN collect(s) AS ss } " +
+                        "CALL { WITH row MATCH (t) WHERE ID(t) = row.target RETURN collect(t) AS ts } ";
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        Object sourceName = source.getProps() == null ? null : source.getProps().get("name");
+        Object targetName = target.getProps() == null ? null : target.getProps().get("name");
+        if (sourceName != null && targetName != null) {
+            row.put("source", sourceName);
+            row.put("target", targetName);
+            // label specific lookups use the name indexes, see SchemaManager
+            return "CALL { WITH row " + schemaManager.matchByName("s", "row.source", source.getLabels(), "row") + "RETURN collect(s) AS ss } " +
+                    "CALL { WITH row " + schemaManager.matchByName("t", "row.target", target.getLabels(), "row") + "RETURN collect(t) AS ts } ";
+        }
+        return null;
+    }
+
+    /**
+     * writes one chunk, a relationship is only created if its source and target each match exactly one node. Names
+     * are not unique, a name matching several nodes is reported as error instead of connecting all of them.
+     */
+    private void writeRelationshipChunk(Chunk chunk, List<Map<String, Object>> rows, BatchResultObject result, List<Added> added,
+                                        ChangeFeed.Collector<EdgeObject> edges) {
+        String label = chunk.label();
+        try {
+            List<Record> written = queryExecutor.write(
+                    "UNWIND $rows AS row " + chunk.match() +
+                            "CALL { WITH row, ss, ts WITH row, ss, ts WHERE size(ss) = 1 AND size(ts) = 1 " +
+                            "WITH row, ss[0] AS s, ts[0] AS t CREATE (s)-[r:" + label + "]->(t) SET r = row.props RETURN collect(r) AS created } " +
+                            "RETURN row.index AS index, size(ss) AS sources, size(ts) AS targets, " +
+                            "head([r IN created | ID(r)]) AS identity, head([r IN created | r.scenario]) AS scenario, " +
+                            "ID(ss[0]) AS source, ID(ts[0]) AS target",
+                    parameters("rows", rows).asMap(), Function.identity());
+
+            Map<Integer, Map<String, Object>> rowOf = new HashMap<>();
+            for (Map<String, Object> row : rows) {
+                rowOf.put((Integer) row.get("index"), row);
+            }
+            for (Record record : written) {
+                int index = record.get("index").asInt();
+                if (record.get("identity").isNull()) {
+                    boolean missing = record.get("sources").asInt() == 0 || record.get("targets").asInt() == 0;
+                    result.getErrors().add(new BatchResultObject.ItemError(index, missing ? "source or target node not found" : "source or target name is ambiguous"));
+                    continue;
+                }
+
+                String identity = String.valueOf(record.get("identity").asLong());
+                result.getIdentities().set(index, identity);
+                long source = record.get("source").asLong();
+                long target = record.get("target").asLong();
+                added.add(new Added(identity, label, source, target, record.get("scenario").asObject()));
+
+                @SuppressWarnings("unchecked")
+                Map<String, Object> props = (Map<String, Object>) rowOf.get(index).get("props");
+                edges.add(new EdgeObject(identity, label, props, String.valueOf(source), String.valueOf(target)));
+                result.setCreated(result.getCreated() + 1);
+            }
+        } catch (Neo4jException e) {
+            log.warn("failed to write chunk of {} relationships: {}", rows.size(), e.getMessage());
+            for (Map<String, Object> row : rows) {
+                result.getErrors().add(new BatchResultObject.ItemError((Integer) row.get("index"), e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * records malformed input as error of the item at index, chunks written before are still reported. Jackson
+     * reports invalid values as {@link RuntimeJsonMappingException} and syntax errors or truncated input as runtime
+     * exception caused by the underlying {@link IOException}.
+     *
+     * @throws RuntimeException e if it is not caused by malformed input
+     */
+    private static void skipMalformed(RuntimeException e, int index, BatchResultObject result) {
+        if (!(e instanceof RuntimeJsonMappingException) && !(e.getCause() instanceof IOException)) {
+            throw e;
+        }
+        // the position in malformed input is unknown, so reading stops here
+        result.getIdentities().add(null);
+        result.getErrors().add(new BatchResultObject.ItemError(index, "malformed input, remaining items skipped: " + e.getMessage()));
+    }
+
+    /**
+     * relationships written by the same query, sharing how their nodes are matched and their label
+     */
+    private record Chunk(String match, String label) {
+    }
+
+    /**
+     * adds created relationships to the in memory hierarchy, lineage and scenario catalog and publishes them to the
+     * change feed, which marks the graph as changed
+     */
+    private void updateIndexes(List<Added> added, ChangeFeed.Collector<EdgeObject> edges) {
+        if (added.isEmpty()) {
+            return;
+        }
+
+        long[] parents = new long[added.size()];
+        long[] children = new long[added.size()];
+        int includes = 0;
+        List<EdgeObject> lineage = new ArrayList<>();
+        for (Added relationship : added) {
+            if (relationship.label().equals(RelationshipObject.RelationshipLabels.includes.name())) {
+                parents[includes] = relationship.source();
+                children[includes] = relationship.target();
+                includes++;
+            } else {
+                lineage.add(new EdgeObject(relationship.identity(), relationship.label(), Collections.singletonMap("scenario", relationship.scenario()),
+                        String.valueOf(relationship.source()), String.valueOf(relationship.target())));
+            }
+        }
+        if (includes > 0) {
+            hierarchyIndex.addEdges(Arrays.copyOf(parents, includes), Arrays.copyOf(children, includes));
+        }
+        if (!lineage.isEmpty()) {
+            lineageIndex.addEdges(lineage);
+        }
+
+        changeFeed.relationshipsAdded(edges.items());
+        for (Added relationship : added) {
+            scenarioCatalog.addRelationship(Long.parseLong(relationship.identity()), relationship.scenario(), relationship.source(), relationship.target());
+        }
+    }
+
+    /**
+     * relationship created by a batch
+     */
+    private record Added(String identity, String label, long source, long target, Object scenario) {
+    }
+}
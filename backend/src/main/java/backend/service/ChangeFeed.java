@@ -0,0 +1,264 @@
+package backend.service;
+
+import backend.entity.ChangeObject;
+import backend.entity.EdgeObject;
+import backend.entity.NodeObject;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feed of the changes made through the backend, sent to subscribed clients as server-sent events. Every change
+ * increments the {@link GraphVersion} and is sent with the new version as event id. The latest changes are kept in
+ * a ring buffer, so clients reconnecting with the id of the last event they received are sent the changes they
+ * missed instead of having to reload the graph.
+ * <p>
+ * Events are sent by a single thread in the order of their versions, writers never wait for clients.
+ */
+@Component
+@Slf4j
+public class ChangeFeed {
+
+    private final GraphVersion graphVersion;
+    private final int maxItems;
+    private final long timeoutMs;
+
+    private final Object lock = new Object();
+    private final ChangeLog changes;
+
+    // only accessed by the delivery thread
+    private final List<Subscriber> subscribers = new ArrayList<>();
+    private final ScheduledExecutorService delivery = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "change-feed");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ChangeFeed(GraphVersion graphVersion, Environment env) {
+        this.graphVersion = graphVersion;
+        this.changes = new ChangeLog(env.getProperty("changes.buffer-size", Integer.class, 1024));
+        this.maxItems = env.getProperty("changes.max-items", Integer.class, 1000);
+        this.timeoutMs = env.getProperty("changes.timeout-ms", Long.class, 1800000L);
+
+        long heartbeat = env.getProperty("changes.heartbeat-seconds", Long.class, 15L);
+        delivery.scheduleAtFixedRate(this::heartbeat, heartbeat, heartbeat, TimeUnit.SECONDS);
+    }
+
+    /**
+     * publishes nodes that were added, must be called after they are committed
+     *
+     * @param nodes added nodes
+     * @return new graph version
+     */
+    public long nodesAdded(List<NodeObject> nodes) {
+        return publish(ChangeObject.Type.nodesAdded, List.of(), nodes, List.of());
+    }
+
+    /**
+     * publishes relationships that were added, must be called after they are committed and the in memory indexes
+     * are updated
+     *
+     * @param edges added relationships
+     * @return new graph version
+     */
+    public long relationshipsAdded(List<EdgeObject> edges) {
+        Set<String> scenarios = new LinkedHashSet<>();
+        for (EdgeObject edge : edges) {
+            scenarios.addAll(ScenarioCatalog.namesOf(edge.getProps() == null ? null : edge.getProps().get("scenario")));
+        }
+        return publish(ChangeObject.Type.relationshipsAdded, List.copyOf(scenarios), List.of(), edges);
+    }
+
+    /**
+     * @return collector for the items of a batch, to be published by {@link #nodesAdded} or
+     * {@link #relationshipsAdded}
+     */
+    public <T> Collector<T> collector() {
+        return new Collector<>(maxItems);
+    }
+
+    private long publish(ChangeObject.Type type, List<String> scenarios, List<NodeObject> nodes, List<EdgeObject> edges) {
+        synchronized (lock) {
+            long version = graphVersion.increment();
+            // large batches are not kept in memory, clients reload instead
+            ChangeObject change = nodes.size() + edges.size() > maxItems
+                    ? new ChangeObject(version, ChangeObject.Type.reset, scenarios, List.of(), List.of())
+                    : new ChangeObject(version, type, scenarios, nodes, edges);
+            changes.append(change);
+            // queued while holding the lock, so changes are sent in the order of their versions
+            delivery.execute(() -> deliver(change));
+            return version;
+        }
+    }
+
+    /**
+     * subscribes to all changes after since
+     *
+     * @param since    version of the last change the client received, only new changes are sent if null. A reset
+     *                 is sent if the changes after since are no longer buffered.
+     * @param scenario only send relationships of this scenario, all relationships if null. Nodes are always sent.
+     * @return emitter sending the changes
+     */
+    public SseEmitter subscribe(Long since, String scenario) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(emitter, scenario);
+        // clients reconnect with the last event id once the connection times out
+        emitter.onTimeout(emitter::complete);
+        emitter.onCompletion(() -> delivery.execute(() -> subscribers.remove(subscriber)));
+
+        synchronized (lock) {
+            long current = graphVersion.current();
+            List<ChangeObject> missed = since == null ? List.of() : changes.since(since, current);
+            delivery.execute(() -> {
+                if (missed == null) {
+                    if (!send(subscriber, new ChangeObject(current, ChangeObject.Type.reset, List.of(), List.of(), List.of()))) {
+                        return;
+                    }
+                } else {
+                    for (ChangeObject change : missed) {
+                        if (subscriber.accepts(change) && !send(subscriber, change)) {
+                            return;
+                        }
+                    }
+                }
+                subscribers.add(subscriber);
+            });
+        }
+        return emitter;
+    }
+
+    private void deliver(ChangeObject change) {
+        Iterator<Subscriber> iterator = subscribers.iterator();
+        while (iterator.hasNext()) {
+            Subscriber subscriber = iterator.next();
+            if (subscriber.accepts(change) && !send(subscriber, change)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * sends a comment to every client, so closed connections are noticed and proxies keep open ones
+     */
+    private void heartbeat() {
+        subscribers.removeIf(subscriber -> {
+            try {
+                subscriber.emitter().send(SseEmitter.event().comment("heartbeat"));
+                return false;
+            } catch (IOException | IllegalStateException e) {
+                return true;
+            }
+        });
+    }
+
+    private boolean send(Subscriber subscriber, ChangeObject change) {
+        try {
+            subscriber.emitter().send(SseEmitter.event()
+                    .id(String.valueOf(change.getVersion()))
+                    .name(change.getType().name())
+                    .data(change, MediaType.APPLICATION_JSON));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // the client disconnected, the emitter is completed by spring
+            log.debug("could not send change {}: {}", change.getVersion(), e.getMessage());
+            return false;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        delivery.shutdownNow();
+    }
+
+    /**
+     * Items added by a batch. Batches larger than changes.max-items are published as reset, so only one item more
+     * than that is kept.
+     */
+    public static final class Collector<T> {
+
+        private final int maxItems;
+        private final List<T> items = new ArrayList<>();
+
+        Collector(int maxItems) {
+            this.maxItems = maxItems;
+        }
+
+        public void add(T item) {
+            if (items.size() <= maxItems) {
+                items.add(item);
+            }
+        }
+
+        public List<T> items() {
+            return items;
+        }
+    }
+
+    private record Subscriber(SseEmitter emitter, String scenario) {
+
+        boolean accepts(ChangeObject change) {
+            return scenario == null || change.getScenarios().isEmpty() || change.getScenarios().contains(scenario);
+        }
+    }
+
+    /**
+     * Ring buffer of the latest changes in the order of their versions. Not thread safe.
+     */
+    static final class ChangeLog {
+
+        private final ChangeObject[] buffer;
+        private int next = 0;
+        private int size = 0;
+        /**
+         * version of the latest change that was overwritten
+         */
+        private long evicted = 0;
+
+        ChangeLog(int capacity) {
+            this.buffer = new ChangeObject[Math.max(1, capacity)];
+        }
+
+        void append(ChangeObject change) {
+            if (size == buffer.length) {
+                evicted = buffer[next].getVersion();
+            } else {
+                size++;
+            }
+            buffer[next] = change;
+            next = (next + 1) % buffer.length;
+        }
+
+        /**
+         * @param since   version the client has seen
+         * @param current current graph version
+         * @return changes after since, null if some of them are no longer buffered or since is not a version of
+         * this graph (the backend was restarted)
+         */
+        List<ChangeObject> since(long since, long current) {
+            if (since < evicted || since > current) {
+                return null;
+            }
+            List<ChangeObject> missed = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                ChangeObject change = buffer[(next - size + i + buffer.length) % buffer.length];
+                if (change.getVersion() > since) {
+                    missed.add(change);
+                }
+            }
+            return missed;
+        }
+    }
+}
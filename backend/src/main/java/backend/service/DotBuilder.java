@@ -0,0 +1,200 @@
+package backend.service;
+
+import backend.entity.EdgeObject;
+import backend.entity.GraphObject;
+import backend.entity.NodeObject;
+import backend.entity.RelationshipObject;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds graphviz dot source for a scenario, following the structure the frontend's DotHandler produces for the
+ * scenario viewer: one cluster per value of the grouping property, node statements carrying id, label and symbol,
+ * includes relationships left out, parallel edges merged into one edge and origin nodes ranked first.
+ */
+@Component
+public class DotBuilder {
+
+    private static final Map<String, String> GRAPH_SETTINGS = new LinkedHashMap<>();
+    private static final Map<String, String> NODE_SETTINGS = new LinkedHashMap<>();
+    private static final Map<String, String> EDGE_SETTINGS = new LinkedHashMap<>();
+
+    // defaults of scenarioDotSettings in frontend/settings.js
+    static {
+        GRAPH_SETTINGS.put("ranksep", "1");
+        GRAPH_SETTINGS.put("rankdir", "LR");
+        GRAPH_SETTINGS.put("fontname", "Helvetica,Arial,sans-serif");
+        GRAPH_SETTINGS.put("splines", "polyline");
+        GRAPH_SETTINGS.put("bgcolor", "#262626");
+
+        NODE_SETTINGS.put("fontname", "Helvetica,Arial,sans-serif");
+        NODE_SETTINGS.put("shape", "box");
+        NODE_SETTINGS.put("color", "transparent");
+        NODE_SETTINGS.put("style", "rounded");
+
+        EDGE_SETTINGS.put("fontname", "Helvetica,Arial,sans-serif");
+        EDGE_SETTINGS.put("color", "#969696");
+        EDGE_SETTINGS.put("style", "bold");
+        EDGE_SETTINGS.put("penwidth", "7");
+    }
+
+    private final String groupingProperty;
+
+    public DotBuilder(Environment env) {
+        this.groupingProperty = env.getProperty("dot.grouping-property", "institution");
+    }
+
+    /**
+     * builds dot source for scenario graph
+     *
+     * @param graph     normalized scenario graph
+     * @param hierarchy includes hierarchy, used to mark parent nodes and to collapse children
+     * @param collapsed if true children are hidden and their edges are attached to their topmost ancestor in the
+     *                  graph, otherwise all nodes except parent nodes are shown
+     * @return dot source
+     */
+    public String build(GraphObject graph, HierarchyIndex.Snapshot hierarchy, boolean collapsed) {
+        StringBuilder dot = new StringBuilder("digraph G{\n");
+        appendSettings(dot, "graph", GRAPH_SETTINGS);
+        appendSettings(dot, "node", NODE_SETTINGS);
+        appendSettings(dot, "edge", EDGE_SETTINGS);
+
+        Set<Long> contained = new HashSet<>();
+        graph.getNodes().forEach(node -> contained.add(Long.parseLong(node.getIdentity())));
+
+        Map<String, List<NodeObject>> clusters = new LinkedHashMap<>();
+        List<String> origins = new ArrayList<>();
+        for (NodeObject node : graph.getNodes()) {
+            long identity = Long.parseLong(node.getIdentity());
+            boolean isParent = node.getLabels().contains(NodeObject.FunctionalLabel.parent.name());
+            boolean visible = collapsed ? rootOf(identity, hierarchy, contained) == identity : !isParent;
+            if (!visible) {
+                continue;
+            }
+            if (node.getLabels().contains(NodeObject.FunctionalLabel.origin.name())) {
+                origins.add(node.getIdentity());
+            }
+            Object group = node.getProps() == null ? null : node.getProps().get(groupingProperty);
+            clusters.computeIfAbsent(group == null ? null : group.toString(), key -> new ArrayList<>()).add(node);
+        }
+
+        for (Map.Entry<String, List<NodeObject>> cluster : clusters.entrySet()) {
+            StringBuilder nodes = new StringBuilder();
+            for (NodeObject node : cluster.getValue()) {
+                appendNode(nodes, node, hierarchy);
+            }
+
+            if (cluster.getKey() == null) {
+                dot.append(nodes);
+            } else {
+                dot.append("subgraph cluster_").append(clusterName(cluster.getKey())).append("{\n")
+                        .append("label = ").append(quote(cluster.getKey())).append('\n')
+                        .append("style = \"rounded, dashed, bold\"\n")
+                        .append("node [imagescale = \"true\",  ];\n")
+                        .append(nodes)
+                        .append("}\n");
+            }
+        }
+
+        appendEdges(dot, graph.getEdges(), hierarchy, contained, collapsed);
+
+        for (String origin : origins) {
+            dot.append("{rank=source; ").append(origin).append("}\n");
+        }
+        return dot.append("\n}\n").toString();
+    }
+
+    private void appendNode(StringBuilder dot, NodeObject node, HierarchyIndex.Snapshot hierarchy) {
+        Map<String, Object> props = node.getProps();
+        Object name = props.containsKey("nameShort") ? props.get("nameShort") : props.get("name");
+        String type = node.getLabels().isEmpty() ? "" : node.getLabels().get(0);
+
+        dot.append(node.getIdentity()).append(" [");
+        if (hierarchy.hasChildren(Long.parseLong(node.getIdentity()))) {
+            dot.append(" class = \"parent\", ");
+        }
+        dot.append("id = ").append(quote(node.getIdentity())).append(", ")
+                .append("label = ").append(quote(String.valueOf(name))).append(", ")
+                .append("type = ").append(quote(type)).append(", ");
+        if (isSymbol(type)) {
+            dot.append("image = ").append(quote(type + ".svg")).append(", ");
+        }
+        dot.append("]\n");
+    }
+
+    private void appendEdges(StringBuilder dot, List<EdgeObject> edges, HierarchyIndex.Snapshot hierarchy, Set<Long> contained, boolean collapsed) {
+        // parallel edges between the same nodes are drawn once, carrying all edge ids
+        Map<String, List<EdgeObject>> merged = new LinkedHashMap<>();
+        for (EdgeObject edge : edges) {
+            if (RelationshipObject.RelationshipLabels.includes.name().equals(edge.getLabels())) {
+                continue;
+            }
+            String source = collapsed ? String.valueOf(rootOf(Long.parseLong(edge.getSource()), hierarchy, contained)) : edge.getSource();
+            String target = collapsed ? String.valueOf(rootOf(Long.parseLong(edge.getTarget()), hierarchy, contained)) : edge.getTarget();
+            merged.computeIfAbsent(source + " -> " + target, key -> new ArrayList<>()).add(edge);
+        }
+
+        for (Map.Entry<String, List<EdgeObject>> entry : merged.entrySet()) {
+            List<String> ids = new ArrayList<>();
+            Set<String> types = new HashSet<>();
+            for (EdgeObject edge : entry.getValue()) {
+                ids.add(edge.getIdentity());
+                types.add(edge.getLabels());
+            }
+
+            dot.append(entry.getKey()).append(" [id = ").append(quote(String.join(",", ids))).append(", ");
+            if (types.contains(RelationshipObject.RelationshipLabels.conditional.name())) {
+                dot.append("style=\"dashed\"");
+            }
+            dot.append(" ];\n");
+        }
+    }
+
+    /**
+     * @param contained identities of the nodes of the graph
+     * @return topmost ancestor of identity that is part of the graph, identity itself if there is none. Collapsed
+     * graphs show exactly the nodes that are their own root, so edges are never attached to undeclared nodes.
+     */
+    private long rootOf(long identity, HierarchyIndex.Snapshot hierarchy, Set<Long> contained) {
+        long[] ancestors = hierarchy.ancestorsOf(identity);
+        for (int i = ancestors.length - 1; i >= 0; i--) {
+            if (contained.contains(ancestors[i])) {
+                return ancestors[i];
+            }
+        }
+        return identity;
+    }
+
+    private void appendSettings(StringBuilder dot, String element, Map<String, String> settings) {
+        dot.append(element).append(" [ ");
+        settings.forEach((key, value) -> dot.append(key).append(" = ").append(quote(value)).append(", "));
+        dot.append(" ]\n");
+    }
+
+    private boolean isSymbol(String label) {
+        try {
+            NodeObject.TypeLabels.valueOf(label);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * removes all characters graphviz does not accept in cluster names
+     */
+    private String clusterName(String name) {
+        return name.replaceAll("[^A-Za-z0-9]+", "");
+    }
+
+    private String quote(String value) {
+        return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+}
@@ -0,0 +1,126 @@
+package backend.service;
+
+import backend.entity.CollapsedGraphObject;
+import backend.entity.EdgeObject;
+import backend.entity.GraphObject;
+import backend.entity.NodeObject;
+import backend.entity.RelationshipObject;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Collapses scenario graphs to a depth of the includes hierarchy. Every node deeper than that depth is replaced by
+ * its ancestor at that depth, so each visible parent stands in for its whole subtree. Relationships are attached
+ * to the nodes standing in for their source and target and aggregated per label, relationships within one
+ * collapsed subtree and includes relationships are left out.
+ */
+@Component
+public class GraphCollapser {
+
+    private final QueryExecutor queryExecutor;
+    private final GraphRecordMapper graphRecordMapper;
+
+    public GraphCollapser(QueryExecutor queryExecutor, GraphRecordMapper graphRecordMapper) {
+        this.queryExecutor = queryExecutor;
+        this.graphRecordMapper = graphRecordMapper;
+    }
+
+    /**
+     * collapses graph, ancestors standing in for nodes of the graph that are not part of the graph themselves are
+     * read with one additional query
+     *
+     * @param endpoint  endpoint the query is recorded for
+     * @param graph     normalized scenario graph
+     * @param hierarchy includes hierarchy
+     * @param depth     hierarchy depth of the deepest visible nodes, 0 to only show root nodes
+     * @return future of collapsed graph
+     */
+    public CompletableFuture<CollapsedGraphObject> collapse(String endpoint, GraphObject graph, HierarchyIndex.Snapshot hierarchy, int depth) {
+        Set<Long> missing = missingNodes(graph, hierarchy, depth);
+        if (missing.isEmpty()) {
+            return CompletableFuture.completedFuture(collapse(graph, hierarchy, depth, List.of()));
+        }
+        return queryExecutor.readAsync(endpoint, "MATCH (n) WHERE ID(n) IN $identities RETURN n", Map.of("identities", new ArrayList<>(missing)),
+                        rec -> graphRecordMapper.toNodeObject(rec.get("n").asNode()))
+                .thenApply(nodes -> collapse(graph, hierarchy, depth, nodes));
+    }
+
+    /**
+     * @param identity  node identity
+     * @param hierarchy includes hierarchy
+     * @param depth     hierarchy depth of the deepest visible nodes
+     * @return identity of the ancestor at depth, identity itself if the node is not deeper than that
+     */
+    static long visibleNodeOf(long identity, HierarchyIndex.Snapshot hierarchy, int depth) {
+        long[] ancestors = hierarchy.ancestorsOf(identity);
+        return ancestors.length <= depth ? identity : ancestors[ancestors.length - depth - 1];
+    }
+
+    /**
+     * @return identities of the visible nodes that are not contained in graph
+     */
+    static Set<Long> missingNodes(GraphObject graph, HierarchyIndex.Snapshot hierarchy, int depth) {
+        Set<Long> contained = new HashSet<>();
+        for (NodeObject node : graph.getNodes()) {
+            contained.add(Long.parseLong(node.getIdentity()));
+        }
+        Set<Long> missing = new LinkedHashSet<>();
+        for (long identity : contained) {
+            long visible = visibleNodeOf(identity, hierarchy, depth);
+            if (!contained.contains(visible)) {
+                missing.add(visible);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * @param additional visible nodes not contained in graph, see {@link #missingNodes}
+     */
+    static CollapsedGraphObject collapse(GraphObject graph, HierarchyIndex.Snapshot hierarchy, int depth, List<NodeObject> additional) {
+        Map<String, String> visibleOf = new HashMap<>();
+        Map<String, Integer> hidden = new HashMap<>();
+        for (NodeObject node : graph.getNodes()) {
+            String visible = String.valueOf(visibleNodeOf(Long.parseLong(node.getIdentity()), hierarchy, depth));
+            visibleOf.put(node.getIdentity(), visible);
+            if (!visible.equals(node.getIdentity())) {
+                hidden.merge(visible, 1, Integer::sum);
+            }
+        }
+
+        List<NodeObject> nodes = new ArrayList<>();
+        for (NodeObject node : graph.getNodes()) {
+            if (visibleOf.get(node.getIdentity()).equals(node.getIdentity())) {
+                nodes.add(node);
+            }
+        }
+        nodes.addAll(additional);
+
+        Map<List<String>, CollapsedGraphObject.AggregatedEdge> edges = new LinkedHashMap<>();
+        for (EdgeObject edge : graph.getEdges()) {
+            if (RelationshipObject.RelationshipLabels.includes.name().equals(edge.getLabels())) {
+                continue;
+            }
+            String source = visibleOf.getOrDefault(edge.getSource(), edge.getSource());
+            String target = visibleOf.getOrDefault(edge.getTarget(), edge.getTarget());
+            if (source.equals(target) && !edge.getSource().equals(edge.getTarget())) {
+                // within one collapsed subtree
+                continue;
+            }
+            CollapsedGraphObject.AggregatedEdge aggregated = edges.computeIfAbsent(List.of(source, target, String.valueOf(edge.getLabels())),
+                    key -> new CollapsedGraphObject.AggregatedEdge(source, target, edge.getLabels(), 0));
+            aggregated.setCount(aggregated.getCount() + 1);
+        }
+
+        return new CollapsedGraphObject(depth, nodes, new ArrayList<>(edges.values()), hidden);
+    }
+}
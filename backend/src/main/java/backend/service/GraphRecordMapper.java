@@ -0,0 +1,242 @@
+package backend.service;
+
+import backend.entity.EdgeObject;
+import backend.entity.GraphObject;
+import backend.entity.NodeObject;
+import backend.entity.RelationshipObject;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.types.Entity;
+import org.neo4j.driver.types.Node;
+import org.neo4j.driver.types.Relationship;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Maps records returned by the driver to the entities returned by the endpoints. Shared by all endpoints, so the
+ * mapping can be measured on its own, see the benchmarks module.
+ * <p>
+ * The graph only contains a handful of label combinations, so every combination is ordered once and the same
+ * unmodifiable list is shared by all nodes carrying it. Mappers created by {@link #relationshipMapper()} and
+ * {@link #toGraphObject} map every node once per result, no matter how many relationships it takes part in.
+ */
+@Component
+public class GraphRecordMapper {
+
+    /**
+     * upper bound for cached label combinations, labels are not restricted in the database
+     */
+    static final int MAX_LABEL_COMBINATIONS = 1024;
+
+    private static final Set<String> TYPE_LABELS = typeLabels();
+
+    /**
+     * ordered label list by label list as returned by the driver
+     */
+    private final Map<List<String>, List<String>> canonicalLabels = new ConcurrentHashMap<>();
+
+    /**
+     * maps database node to NodeObject
+     *
+     * @param node as returned by the driver
+     * @return NodeObject with identity, ordered labels and properties of node
+     */
+    public NodeObject toNodeObject(Node node) {
+        return new NodeObject(identityOf(node), orderLabels(node.labels()), node.asMap());
+    }
+
+    /**
+     * maps record containing source p, relationship r and target q to RelationshipObject. Nodes are mapped for
+     * every record, use {@link #relationshipMapper()} for results that are collected.
+     *
+     * @param rec record as returned by scenario query
+     * @return RelationshipObject including source and target node
+     */
+    public RelationshipObject toRelationshipObject(Record rec) {
+        return toRelationshipObject(rec, null);
+    }
+
+    /**
+     * creates a mapper for the records of one result, nodes contained in several relationships are mapped once
+     * and the same NodeObject is shared by these relationships. Not thread safe, create one mapper per result.
+     *
+     * @return function mapping records containing source p, relationship r and target q to RelationshipObject
+     */
+    public Function<Record, RelationshipObject> relationshipMapper() {
+        Map<String, NodeObject> nodes = new HashMap<>();
+        return rec -> toRelationshipObject(rec, nodes);
+    }
+
+    /**
+     * maps records containing source p, relationship r and target q to normalized graph
+     *
+     * @param records as returned by scenario query
+     * @return nodes and edges, nodes are deduplicated by identity
+     */
+    public GraphObject toGraphObject(List<Record> records) {
+        Map<String, NodeObject> nodes = new LinkedHashMap<>();
+        List<EdgeObject> edges = new ArrayList<>(records.size());
+
+        for (Record rec : records) {
+            NodeObject source = nodeObject(rec.get("p").asNode(), nodes);
+            NodeObject target = nodeObject(rec.get("q").asNode(), nodes);
+            Relationship edge = rec.get("r").asRelationship();
+
+            edges.add(new EdgeObject(identityOf(edge), edge.type(), edge.asMap(), source.getIdentity(), target.getIdentity()));
+        }
+
+        return new GraphObject(new ArrayList<>(nodes.values()), edges);
+    }
+
+    /**
+     * creates a builder for a normalized graph that is read with several queries, nodes and edges are only added
+     * once no matter how often they are returned. Not thread safe.
+     *
+     * @return empty graph builder
+     */
+    public GraphBuilder graphBuilder() {
+        return new GraphBuilder();
+    }
+
+    /**
+     * @param entity node or relationship
+     * @return identity used by the endpoints, the last part of the element id
+     */
+    public String identityOf(Entity entity) {
+        String elementId = entity.elementId();
+        return elementId.substring(elementId.lastIndexOf(':') + 1);
+    }
+
+    /**
+     * orders node labels, so that the symbol defining label is first in list. Type labels keep their relative
+     * order, followed by all other labels.
+     *
+     * @param labels iterable containing a set of label strings
+     * @return unmodifiable ordered list, shared by all nodes with the same labels
+     */
+    public List<String> orderLabels(Iterable<String> labels) {
+        List<String> key;
+        if (labels instanceof List<String> list) {
+            key = list;
+        } else {
+            key = new ArrayList<>();
+            labels.forEach(key::add);
+        }
+
+        List<String> ordered = canonicalLabels.get(key);
+        if (ordered != null) {
+            return ordered;
+        }
+        ordered = order(key);
+        if (canonicalLabels.size() < MAX_LABEL_COMBINATIONS) {
+            // the key is copied, the driver's list must not be referenced by the cache
+            List<String> existing = canonicalLabels.putIfAbsent(List.copyOf(key), ordered);
+            return existing == null ? ordered : existing;
+        }
+        return ordered;
+    }
+
+    private RelationshipObject toRelationshipObject(Record rec, Map<String, NodeObject> nodes) {
+        NodeObject source = nodeObject(rec.get("p").asNode(), nodes);
+        NodeObject target = nodeObject(rec.get("q").asNode(), nodes);
+        Relationship edge = rec.get("r").asRelationship();
+
+        //edges only have one label????
+        return new RelationshipObject(identityOf(edge), edge.type(), edge.asMap(), source, target);
+    }
+
+    /**
+     * @param nodes already mapped nodes by element id, may be null to map node without deduplication
+     */
+    private NodeObject nodeObject(Node node, Map<String, NodeObject> nodes) {
+        if (nodes == null) {
+            return toNodeObject(node);
+        }
+        NodeObject mapped = nodes.get(node.elementId());
+        if (mapped == null) {
+            mapped = toNodeObject(node);
+            nodes.put(node.elementId(), mapped);
+        }
+        return mapped;
+    }
+
+    /**
+     * Normalized graph collected from several results
+     */
+    public final class GraphBuilder {
+
+        private final Map<String, NodeObject> nodes = new LinkedHashMap<>();
+        private final Map<String, EdgeObject> edges = new LinkedHashMap<>();
+
+        private GraphBuilder() {
+        }
+
+        /**
+         * @param node as returned by the driver
+         * @return NodeObject of node, the same object for every call with the same node
+         */
+        public NodeObject addNode(Node node) {
+            return nodeObject(node, nodes);
+        }
+
+        /**
+         * @param edge   as returned by the driver
+         * @param source NodeObject of the source node, see {@link #addNode}
+         * @param target NodeObject of the target node, see {@link #addNode}
+         * @return whether the edge was added, false if it is already contained
+         */
+        public boolean addEdge(Relationship edge, NodeObject source, NodeObject target) {
+            if (edges.containsKey(edge.elementId())) {
+                return false;
+            }
+            edges.put(edge.elementId(), new EdgeObject(identityOf(edge), edge.type(), edge.asMap(), source.getIdentity(), target.getIdentity()));
+            return true;
+        }
+
+        /**
+         * @return number of edges added
+         */
+        public int edgeCount() {
+            return edges.size();
+        }
+
+        /**
+         * @return nodes and edges in the order they were added
+         */
+        public GraphObject build() {
+            return new GraphObject(new ArrayList<>(nodes.values()), new ArrayList<>(edges.values()));
+        }
+    }
+
+    private static List<String> order(List<String> labels) {
+        List<String> ordered = new ArrayList<>(labels.size());
+        for (String label : labels) {
+            if (TYPE_LABELS.contains(label)) {
+                ordered.add(label);
+            }
+        }
+        for (String label : labels) {
+            if (!TYPE_LABELS.contains(label)) {
+                ordered.add(label);
+            }
+        }
+        return Collections.unmodifiableList(ordered);
+    }
+
+    private static Set<String> typeLabels() {
+        Set<String> labels = new HashSet<>();
+        for (NodeObject.TypeLabels label : NodeObject.TypeLabels.values()) {
+            labels.add(label.name());
+        }
+        return Set.copyOf(labels);
+    }
+}
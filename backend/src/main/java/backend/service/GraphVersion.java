@@ -0,0 +1,31 @@
+package backend.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version counter of the graph, incremented by every write done through the backend. Cached results are only
+ * valid for the version they were read at.
+ */
+@Component
+public class GraphVersion {
+
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * @return current version
+     */
+    public long current() {
+        return version.get();
+    }
+
+    /**
+     * marks the graph as changed
+     *
+     * @return new version
+     */
+    public long increment() {
+        return version.incrementAndGet();
+    }
+}
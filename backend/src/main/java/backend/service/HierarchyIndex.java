@@ -0,0 +1,535 @@
+package backend.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.exceptions.Neo4jException;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * In memory index of the includes hierarchy. Every node taking part in an includes relationship gets a dense
+ * position, parents are stored in an int array and the tree is labeled in pre-order, so that the descendants of
+ * a node occupy the interval [pre, end) of the pre-order. Parent, ancestor and descendant lookups are answered
+ * from these arrays without a database round trip.
+ * <p>
+ * The index is loaded once the application is ready. Added includes relationships are appended to its edge list
+ * and the snapshot is rebuilt from it on the next read. Readers always see a complete immutable {@link Snapshot}.
+ */
+@Component
+@Slf4j
+public class HierarchyIndex {
+
+    /**
+     * time between attempts to replace a provisional index by the database content
+     */
+    static final long RETRY_MS = 30_000;
+
+    private final QueryExecutor queryExecutor;
+
+    private final Object lock = new Object();
+    /**
+     * held while the index is loaded from the database, taken before lock
+     */
+    private final Object loadLock = new Object();
+    private Edges edges = new Edges();
+    /**
+     * edges added while a load is running, added to the loaded edges once it finished
+     */
+    private Edges replay;
+    private boolean loading;
+
+    private volatile Snapshot snapshot;
+    /**
+     * set when edges were added after snapshot was built
+     */
+    private volatile boolean stale;
+    /**
+     * set while the index holds the content of a snapshot file instead of the database
+     */
+    private volatile boolean provisional;
+    /**
+     * earliest time in milliseconds a provisional index is loaded again on access
+     */
+    private volatile long retryAt;
+
+    public HierarchyIndex(QueryExecutor queryExecutor) {
+        this.queryExecutor = queryExecutor;
+    }
+
+    /**
+     * loads the index on startup, failing to reach the database is logged and loading is retried on first use
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        try {
+            reload();
+        } catch (Neo4jException e) {
+            log.warn("could not load hierarchy index on startup: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * reads all includes relationships from the database and rebuilds the index. Relationships added while the
+     * query runs are kept and added to the loaded ones, they may or may not be part of the query result.
+     */
+    public void reload() {
+        synchronized (loadLock) {
+            synchronized (lock) {
+                loading = true;
+                replay = new Edges();
+            }
+
+            Edges loaded = new Edges();
+            try {
+                queryExecutor.forEach("Match (p)-[r:includes]->(c) return ID(p),ID(c)", Map.of(),
+                        record -> loaded.add(record.get("ID(p)").asLong(), record.get("ID(c)").asLong()));
+            } catch (RuntimeException e) {
+                synchronized (lock) {
+                    loading = false;
+                    replay = null;
+                }
+                retryAt = System.currentTimeMillis() + RETRY_MS;
+                throw e;
+            }
+
+            synchronized (lock) {
+                // a relationship read by the query and replayed is included twice, the second parent is ignored
+                loaded.addAll(replay);
+                loading = false;
+                replay = null;
+                install(loaded);
+            }
+            log.info("hierarchy index built with {} includes relationships", loaded.count);
+        }
+    }
+
+    /**
+     * replaces all edges of the index
+     *
+     * @param parents  parent identity per edge
+     * @param children child identity per edge, same length as parents
+     */
+    public void rebuild(long[] parents, long[] children) {
+        Edges replaced = new Edges();
+        replaced.addAll(parents, children, parents.length);
+        synchronized (lock) {
+            install(replaced);
+        }
+        log.info("hierarchy index built with {} includes relationships", parents.length);
+    }
+
+    private void install(Edges replaced) {
+        edges = replaced;
+        snapshot = Snapshot.build(edges.parents, edges.children, edges.count);
+        stale = false;
+        provisional = false;
+    }
+
+    /**
+     * fills the index from a snapshot file before it is loaded from the database, does nothing once it is loaded.
+     * Until a load succeeds, access retries loading every RETRY_MS.
+     *
+     * @param parents  parent identity per edge
+     * @param children child identity per edge, same length as parents
+     */
+    void warm(long[] parents, long[] children) {
+        synchronized (lock) {
+            if (snapshot == null) {
+                rebuild(parents, children);
+                provisional = true;
+                // the load on startup follows
+                retryAt = System.currentTimeMillis() + RETRY_MS;
+            }
+        }
+    }
+
+    /**
+     * adds a newly created includes relationship to the index
+     *
+     * @param parent identity of the including node
+     * @param child  identity of the included node
+     */
+    public void addEdge(long parent, long child) {
+        addEdges(new long[]{parent}, new long[]{child});
+    }
+
+    /**
+     * adds newly created includes relationships to the index. The snapshot is rebuilt on the next read, so a
+     * series of writes only causes one rebuild.
+     *
+     * @param parents  identity of the including node per relationship
+     * @param children identity of the included node per relationship, same length as parents
+     */
+    public void addEdges(long[] parents, long[] children) {
+        synchronized (lock) {
+            if (loading) {
+                replay.addAll(parents, children, parents.length);
+            }
+            if (snapshot == null) {
+                // not loaded yet, the edges are picked up by the next load
+                return;
+            }
+            edges.addAll(parents, children, parents.length);
+            stale = true;
+        }
+    }
+
+    /**
+     * get current snapshot, loading the index if that did not succeed on startup or it was filled from a snapshot
+     * file, and rebuilding it if edges were added since the last read
+     *
+     * @return immutable hierarchy snapshot
+     */
+    public Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current != null && !stale && !provisional) {
+            return current;
+        }
+
+        if (current != null && provisional) {
+            retryLoad();
+        } else if (current == null) {
+            synchronized (loadLock) {
+                if (snapshot == null) {
+                    try {
+                        reload();
+                    } catch (Neo4jException e) {
+                        log.warn("could not load hierarchy index: {}", e.getMessage());
+                        throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "hierarchy index not available");
+                    }
+                }
+            }
+        }
+
+        synchronized (lock) {
+            if (stale) {
+                snapshot = Snapshot.build(edges.parents, edges.children, edges.count);
+                stale = false;
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * replaces the content of a snapshot file by the database content, unless a load is running or failed less
+     * than RETRY_MS ago. The snapshot file content is kept while the database can't be reached.
+     */
+    private void retryLoad() {
+        if (System.currentTimeMillis() < retryAt) {
+            return;
+        }
+        synchronized (lock) {
+            if (loading) {
+                return;
+            }
+        }
+        synchronized (loadLock) {
+            if (provisional && System.currentTimeMillis() >= retryAt) {
+                try {
+                    reload();
+                } catch (Neo4jException e) {
+                    log.warn("could not load hierarchy index, answering from snapshot file: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * growable edge list, parents and children are only valid up to count
+     */
+    private static final class Edges {
+        private long[] parents = new long[16];
+        private long[] children = new long[16];
+        private int count;
+
+        void add(long parent, long child) {
+            if (count == parents.length) {
+                parents = Arrays.copyOf(parents, count * 2);
+                children = Arrays.copyOf(children, count * 2);
+            }
+            parents[count] = parent;
+            children[count] = child;
+            count++;
+        }
+
+        void addAll(Edges other) {
+            addAll(other.parents, other.children, other.count);
+        }
+
+        void addAll(long[] addedParents, long[] addedChildren, int added) {
+            if (count + added > parents.length) {
+                int capacity = Math.max(count * 2, count + added);
+                parents = Arrays.copyOf(parents, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            System.arraycopy(addedParents, 0, parents, count, added);
+            System.arraycopy(addedChildren, 0, children, count, added);
+            count += added;
+        }
+    }
+
+    /**
+     * Immutable array representation of the includes forest
+     */
+    public static final class Snapshot {
+
+        /**
+         * sorted node identities, position in this array is the dense index used by all other arrays
+         */
+        private final long[] ids;
+        private final int[] parent;
+        private final int[] depth;
+        private final int[] pre;
+        private final int[] end;
+        /**
+         * dense index of node by pre-order position
+         */
+        private final int[] order;
+        private final boolean[] hasChildren;
+
+        private Snapshot(long[] ids, int[] parent, int[] depth, int[] pre, int[] end, int[] order, boolean[] hasChildren) {
+            this.ids = ids;
+            this.parent = parent;
+            this.depth = depth;
+            this.pre = pre;
+            this.end = end;
+            this.order = order;
+            this.hasChildren = hasChildren;
+        }
+
+        static Snapshot build(long[] edgeParents, long[] edgeChildren, int edgeCount) {
+            long[] all = new long[edgeCount * 2];
+            System.arraycopy(edgeParents, 0, all, 0, edgeCount);
+            System.arraycopy(edgeChildren, 0, all, edgeCount, edgeCount);
+            Arrays.sort(all);
+            int n = 0;
+            for (int i = 0; i < all.length; i++) {
+                if (i == 0 || all[i] != all[i - 1]) {
+                    all[n++] = all[i];
+                }
+            }
+            long[] ids = Arrays.copyOf(all, n);
+
+            // one node can only have one parent, additional includes relationships are ignored
+            int[] parent = new int[n];
+            Arrays.fill(parent, -1);
+            int[] childCount = new int[n + 1];
+            boolean[] hasChildren = new boolean[n];
+            boolean[] accepted = new boolean[edgeCount];
+            for (int e = 0; e < edgeCount; e++) {
+                int p = Arrays.binarySearch(ids, edgeParents[e]);
+                int c = Arrays.binarySearch(ids, edgeChildren[e]);
+                if (parent[c] == -1 && p != c) {
+                    parent[c] = p;
+                    childCount[p]++;
+                    hasChildren[p] = true;
+                    accepted[e] = true;
+                }
+            }
+
+            // children in compressed sparse row layout
+            int[] offsets = new int[n + 1];
+            for (int i = 0; i < n; i++) {
+                offsets[i + 1] = offsets[i] + childCount[i];
+            }
+            int[] fill = Arrays.copyOf(offsets, n);
+            int[] childList = new int[offsets[n]];
+            for (int e = 0; e < edgeCount; e++) {
+                if (accepted[e]) {
+                    int p = Arrays.binarySearch(ids, edgeParents[e]);
+                    childList[fill[p]++] = Arrays.binarySearch(ids, edgeChildren[e]);
+                }
+            }
+
+            int[] pre = new int[n];
+            int[] end = new int[n];
+            int[] order = new int[n];
+            int[] depth = new int[n];
+            int[] treeParent = new int[n];
+            Arrays.fill(pre, -1);
+
+            int[] stack = new int[n];
+            int counter = 0;
+            // roots first, then nodes that are only reachable through a cycle
+            for (int pass = 0; pass < 2; pass++) {
+                for (int root = 0; root < n; root++) {
+                    if (pre[root] != -1 || (pass == 0 && parent[root] != -1)) {
+                        continue;
+                    }
+                    int top = 0;
+                    stack[top++] = root;
+                    treeParent[root] = -1;
+                    depth[root] = 0;
+                    pre[root] = counter;
+                    order[counter++] = root;
+                    while (top > 0) {
+                        int v = stack[--top];
+                        for (int k = offsets[v + 1] - 1; k >= offsets[v]; k--) {
+                            int child = childList[k];
+                            if (pre[child] == -1) {
+                                pre[child] = -2;
+                                treeParent[child] = v;
+                                depth[child] = depth[v] + 1;
+                                stack[top++] = child;
+                            }
+                        }
+                        if (pre[v] == -2) {
+                            pre[v] = counter;
+                            order[counter++] = v;
+                        }
+                    }
+                }
+            }
+
+            // subtree sizes in reverse pre-order, every descendant is processed before its ancestor
+            int[] size = new int[n];
+            for (int position = n - 1; position >= 0; position--) {
+                int v = order[position];
+                size[v] += 1;
+                if (treeParent[v] != -1) {
+                    size[treeParent[v]] += size[v];
+                }
+            }
+            for (int v = 0; v < n; v++) {
+                end[v] = pre[v] + size[v];
+            }
+
+            return new Snapshot(ids, parent, depth, pre, end, order, hasChildren);
+        }
+
+        private int indexOf(long identity) {
+            return Arrays.binarySearch(ids, identity);
+        }
+
+        /**
+         * @return number of nodes taking part in the hierarchy
+         */
+        public int size() {
+            return ids.length;
+        }
+
+        /**
+         * @param identity node identity
+         * @return whether the node has an includes relationship to or from it
+         */
+        public boolean contains(long identity) {
+            return indexOf(identity) >= 0;
+        }
+
+        /**
+         * @param identity of child node
+         * @return identity of the direct parent or -1 if node has no parent
+         */
+        public long parentOf(long identity) {
+            int index = indexOf(identity);
+            if (index < 0 || parent[index] == -1) {
+                return -1;
+            }
+            return ids[parent[index]];
+        }
+
+        /**
+         * @param identity node identity
+         * @return whether node includes at least one other node
+         */
+        public boolean hasChildren(long identity) {
+            int index = indexOf(identity);
+            return index >= 0 && hasChildren[index];
+        }
+
+        /**
+         * @param identity node identity
+         * @return number of includes relationships between the node and its root, 0 for nodes outside the hierarchy
+         */
+        public int depthOf(long identity) {
+            int index = indexOf(identity);
+            return index < 0 ? 0 : depth[index];
+        }
+
+        /**
+         * @param identity of parent node
+         * @return identities of all direct and indirect children in pre-order
+         */
+        public long[] descendantsOf(long identity) {
+            int index = indexOf(identity);
+            if (index < 0) {
+                return new long[0];
+            }
+            long[] result = new long[end[index] - pre[index] - 1];
+            for (int position = pre[index] + 1, i = 0; position < end[index]; position++, i++) {
+                result[i] = ids[order[position]];
+            }
+            return result;
+        }
+
+        /**
+         * @param identity of child node
+         * @return identities of all ancestors, starting with the direct parent
+         */
+        public long[] ancestorsOf(long identity) {
+            int index = indexOf(identity);
+            if (index < 0) {
+                return new long[0];
+            }
+            long[] result = new long[depth[index]];
+            int count = 0;
+            int current = parent[index];
+            // bounded by node count in case the includes relationships contain a cycle
+            while (current != -1 && count < ids.length) {
+                if (count == result.length) {
+                    result = Arrays.copyOf(result, count + 1);
+                }
+                result[count++] = ids[current];
+                current = parent[current];
+                if (current == index) {
+                    break;
+                }
+            }
+            return Arrays.copyOf(result, count);
+        }
+
+        /**
+         * @param ancestor   identity of possible ancestor
+         * @param descendant identity of possible descendant
+         * @return whether descendant is a direct or indirect child of ancestor
+         */
+        public boolean isAncestor(long ancestor, long descendant) {
+            int a = indexOf(ancestor);
+            int d = indexOf(descendant);
+            return a >= 0 && d >= 0 && pre[a] < pre[d] && pre[d] < end[a];
+        }
+
+        /**
+         * @return identities of all nodes that include at least one other node
+         */
+        public long[] parents() {
+            int count = 0;
+            long[] result = new long[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                if (hasChildren[i]) {
+                    result[count++] = ids[i];
+                }
+            }
+            return Arrays.copyOf(result, count);
+        }
+
+        /**
+         * @return identities of all nodes that have a parent
+         */
+        public long[] children() {
+            int count = 0;
+            long[] result = new long[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                if (parent[i] != -1) {
+                    result[count++] = ids[i];
+                }
+            }
+            return Arrays.copyOf(result, count);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package backend.service;
+
+import backend.entity.NodeObject;
+import backend.entity.RelationshipObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Validates labels against the label enums before they are concatenated into queries. Labels can't be set using
+ * query parameters, so this is the only protection against cypher injection through labels,
+ * see: https://github.com/neo4j/neo4j/issues/4334
+ */
+public final class LabelValidator {
+
+    private LabelValidator() {
+    }
+
+    /**
+     * keeps all labels contained in {@link NodeObject.TypeLabels} or {@link NodeObject.FunctionalLabel}
+     *
+     * @param labels list of labels to be validated
+     * @return String of : delimited valid labels
+     * @throws IllegalArgumentException if no label is valid
+     */
+    public static String nodeLabels(List<String> labels) {
+        List<String> labelList = new ArrayList<>();
+
+        if (labels != null) {
+            labels.forEach((label) -> {
+                try {
+                    labelList.add(String.valueOf(NodeObject.TypeLabels.valueOf(label)));
+                } catch (IllegalArgumentException ignored) {
+                }
+
+                try {
+                    labelList.add(String.valueOf(NodeObject.FunctionalLabel.valueOf(label)));
+                } catch (IllegalArgumentException ignored) {
+                }
+            });
+        }
+
+        if (labelList.isEmpty()) {
+            throw new IllegalArgumentException("invalid labels");
+        }
+
+        return String.join(":", labelList);
+    }
+
+    /**
+     * @param label relationship label as received by client
+     * @return label from {@link RelationshipObject.RelationshipLabels}
+     * @throws IllegalArgumentException if label is not contained in enum
+     */
+    public static String relationshipLabel(String label) {
+        if (label == null) {
+            throw new IllegalArgumentException("missing relationship label");
+        }
+        return String.valueOf(RelationshipObject.RelationshipLabels.valueOf(label));
+    }
+}
@@ -0,0 +1,445 @@
+package backend.service;
+
+import backend.entity.EdgeObject;
+import backend.entity.GraphObject;
+import backend.entity.LayoutObject;
+import backend.entity.NodeObject;
+import backend.entity.RelationshipObject;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Layered (Sugiyama style) layout engine for scenario graphs, laying out from left to right like the scenario
+ * viewer's dot settings. The layout is computed in the usual phases:
+ * <ol>
+ *     <li>cycles are broken by reversing depth first search back edges</li>
+ *     <li>nodes are assigned to layers by longest path</li>
+ *     <li>edges spanning several layers are split by dummy nodes</li>
+ *     <li>crossings are reduced by barycenter sweeps, nodes of the same includes cluster are kept next to each other</li>
+ *     <li>coordinates are assigned by averaging an upwards and a downwards compaction towards the neighbours</li>
+ * </ol>
+ * includes relationships are not laid out as edges, they define the clusters: every node is put into the cluster of
+ * its root node in the includes hierarchy.
+ */
+@Component
+public class LayeredLayout {
+
+    private static final int SWEEPS = 8;
+    private static final int ALIGNMENT_PASSES = 4;
+
+    private final double nodeWidth;
+    private final double nodeHeight;
+    private final double layerGap;
+    private final double nodeGap;
+    private final double clusterPadding;
+
+    public LayeredLayout(Environment env) {
+        this.nodeWidth = env.getProperty("layout.node-width", Double.class, 250.0);
+        this.nodeHeight = env.getProperty("layout.node-height", Double.class, 200.0);
+        this.layerGap = env.getProperty("layout.layer-gap", Double.class, 150.0);
+        this.nodeGap = env.getProperty("layout.node-gap", Double.class, 60.0);
+        this.clusterPadding = env.getProperty("layout.cluster-padding", Double.class, 30.0);
+    }
+
+    /**
+     * computes node positions, edge routes and cluster boxes for graph
+     *
+     * @param graph     normalized scenario graph
+     * @param hierarchy includes hierarchy defining the clusters
+     * @return layout including the graph it was computed for
+     */
+    public LayoutObject layout(GraphObject graph, HierarchyIndex.Snapshot hierarchy) {
+        List<NodeObject> nodes = graph.getNodes();
+        int n = nodes.size();
+        Map<String, Integer> indexOf = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            indexOf.put(nodes.get(i).getIdentity(), i);
+        }
+
+        // clusters by root of includes hierarchy
+        Map<Long, Integer> clusterOfRoot = new LinkedHashMap<>();
+        int[] cluster = new int[n];
+        for (int i = 0; i < n; i++) {
+            long identity = Long.parseLong(nodes.get(i).getIdentity());
+            long[] ancestors = hierarchy.ancestorsOf(identity);
+            long root = ancestors.length > 0 ? ancestors[ancestors.length - 1] : hierarchy.hasChildren(identity) ? identity : -1;
+            cluster[i] = root == -1 ? -1 : clusterOfRoot.computeIfAbsent(root, key -> clusterOfRoot.size());
+        }
+
+        // edges taking part in layering
+        List<EdgeObject> edges = graph.getEdges();
+        int[] from = new int[edges.size()];
+        int[] to = new int[edges.size()];
+        int[] edgeOf = new int[edges.size()];
+        int m = 0;
+        for (int e = 0; e < edges.size(); e++) {
+            EdgeObject edge = edges.get(e);
+            Integer source = indexOf.get(edge.getSource());
+            Integer target = indexOf.get(edge.getTarget());
+            if (source == null || target == null || source.equals(target)
+                    || RelationshipObject.RelationshipLabels.includes.name().equals(edge.getLabels())) {
+                continue;
+            }
+            from[m] = source;
+            to[m] = target;
+            edgeOf[m] = e;
+            m++;
+        }
+
+        boolean[] reversed = removeCycles(n, from, to, m);
+        int[] layer = assignLayers(n, from, to, m);
+
+        // split long edges by dummy nodes, vertices [0, n) are real nodes
+        int vertexCount = n;
+        for (int e = 0; e < m; e++) {
+            vertexCount += layer[to[e]] - layer[from[e]] - 1;
+        }
+        int[] vertexLayer = Arrays.copyOf(layer, vertexCount);
+        int[] vertexCluster = Arrays.copyOf(cluster, vertexCount);
+        List<List<Integer>> up = new ArrayList<>(vertexCount);
+        List<List<Integer>> down = new ArrayList<>(vertexCount);
+        for (int v = 0; v < vertexCount; v++) {
+            up.add(new ArrayList<>(2));
+            down.add(new ArrayList<>(2));
+        }
+        int[][] chains = new int[m][];
+        int next = n;
+        for (int e = 0; e < m; e++) {
+            int span = layer[to[e]] - layer[from[e]];
+            int[] chain = new int[span + 1];
+            chain[0] = from[e];
+            chain[span] = to[e];
+            for (int k = 1; k < span; k++) {
+                int dummy = next++;
+                vertexLayer[dummy] = layer[from[e]] + k;
+                vertexCluster[dummy] = cluster[from[e]] == cluster[to[e]] ? cluster[from[e]] : -1;
+                chain[k] = dummy;
+            }
+            for (int k = 0; k < span; k++) {
+                down.get(chain[k]).add(chain[k + 1]);
+                up.get(chain[k + 1]).add(chain[k]);
+            }
+            chains[e] = chain;
+        }
+
+        int layerCount = 0;
+        for (int v = 0; v < vertexCount; v++) {
+            layerCount = Math.max(layerCount, vertexLayer[v] + 1);
+        }
+        List<List<Integer>> layers = new ArrayList<>(layerCount);
+        for (int l = 0; l < layerCount; l++) {
+            layers.add(new ArrayList<>());
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            layers.get(vertexLayer[v]).add(v);
+        }
+
+        double[] position = new double[vertexCount];
+        for (List<Integer> l : layers) {
+            updatePositions(l, position);
+        }
+        reduceCrossings(layers, up, down, vertexCluster, position);
+
+        double[] y = assignCoordinates(layers, up, down, vertexCluster, n);
+        double[] x = new double[vertexCount];
+        for (int v = 0; v < vertexCount; v++) {
+            x[v] = clusterPadding + nodeWidth / 2 + vertexLayer[v] * (nodeWidth + layerGap);
+        }
+
+        return toLayoutObject(graph, n, m, layer, cluster, clusterOfRoot, reversed, chains, edgeOf, indexOf, x, y, layerCount);
+    }
+
+    /**
+     * reverses back edges found by an iterative depth first search, so the remaining graph is acyclic
+     */
+    private boolean[] removeCycles(int n, int[] from, int[] to, int m) {
+        int[][] outgoing = adjacency(n, from, m);
+        boolean[] reversed = new boolean[m];
+        int[] state = new int[n];
+        int[] stack = new int[n];
+        int[] cursor = new int[n];
+
+        for (int start = 0; start < n; start++) {
+            if (state[start] != 0) {
+                continue;
+            }
+            int top = 0;
+            stack[top++] = start;
+            state[start] = 1;
+            while (top > 0) {
+                int v = stack[top - 1];
+                if (cursor[v] < outgoing[v].length) {
+                    int e = outgoing[v][cursor[v]++];
+                    int w = to[e];
+                    if (state[w] == 1) {
+                        reversed[e] = true;
+                    } else if (state[w] == 0) {
+                        state[w] = 1;
+                        stack[top++] = w;
+                    }
+                } else {
+                    state[v] = 2;
+                    top--;
+                }
+            }
+        }
+
+        for (int e = 0; e < m; e++) {
+            if (reversed[e]) {
+                int temp = from[e];
+                from[e] = to[e];
+                to[e] = temp;
+            }
+        }
+        return reversed;
+    }
+
+    /**
+     * longest path layering in topological order, sources are put into layer 0
+     */
+    private int[] assignLayers(int n, int[] from, int[] to, int m) {
+        int[][] outgoing = adjacency(n, from, m);
+        int[] inDegree = new int[n];
+        for (int e = 0; e < m; e++) {
+            inDegree[to[e]]++;
+        }
+        int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+        for (int v = 0; v < n; v++) {
+            if (inDegree[v] == 0) {
+                queue[tail++] = v;
+            }
+        }
+        int[] layer = new int[n];
+        while (head < tail) {
+            int v = queue[head++];
+            for (int e : outgoing[v]) {
+                int w = to[e];
+                layer[w] = Math.max(layer[w], layer[v] + 1);
+                if (--inDegree[w] == 0) {
+                    queue[tail++] = w;
+                }
+            }
+        }
+        return layer;
+    }
+
+    private int[][] adjacency(int n, int[] from, int m) {
+        int[] degree = new int[n];
+        for (int e = 0; e < m; e++) {
+            degree[from[e]]++;
+        }
+        int[][] outgoing = new int[n][];
+        for (int v = 0; v < n; v++) {
+            outgoing[v] = new int[degree[v]];
+        }
+        int[] fill = new int[n];
+        for (int e = 0; e < m; e++) {
+            outgoing[from[e]][fill[from[e]]++] = e;
+        }
+        return outgoing;
+    }
+
+    /**
+     * alternating downward and upward barycenter sweeps. Within a layer nodes are ordered by cluster block first,
+     * blocks are ordered by the mean barycenter of their nodes, so clusters stay contiguous.
+     */
+    private void reduceCrossings(List<List<Integer>> layers, List<List<Integer>> up, List<List<Integer>> down,
+                                 int[] cluster, double[] position) {
+        double[] barycenter = new double[position.length];
+        for (int sweep = 0; sweep < SWEEPS; sweep++) {
+            boolean downwards = sweep % 2 == 0;
+            int first = downwards ? 1 : layers.size() - 2;
+            int step = downwards ? 1 : -1;
+            for (int l = first; l >= 0 && l < layers.size(); l += step) {
+                List<Integer> layer = layers.get(l);
+                List<List<Integer>> neighbours = downwards ? up : down;
+                for (int v : layer) {
+                    List<Integer> adjacent = neighbours.get(v);
+                    if (adjacent.isEmpty()) {
+                        barycenter[v] = position[v];
+                    } else {
+                        double sum = 0;
+                        for (int w : adjacent) {
+                            sum += position[w];
+                        }
+                        barycenter[v] = sum / adjacent.size();
+                    }
+                }
+
+                Map<Integer, double[]> clusterMean = new HashMap<>();
+                for (int v : layer) {
+                    if (cluster[v] != -1) {
+                        double[] mean = clusterMean.computeIfAbsent(cluster[v], key -> new double[2]);
+                        mean[0] += barycenter[v];
+                        mean[1]++;
+                    }
+                }
+                layer.sort((a, b) -> {
+                    double keyA = cluster[a] == -1 ? barycenter[a] : clusterMean.get(cluster[a])[0] / clusterMean.get(cluster[a])[1];
+                    double keyB = cluster[b] == -1 ? barycenter[b] : clusterMean.get(cluster[b])[0] / clusterMean.get(cluster[b])[1];
+                    int result = Double.compare(keyA, keyB);
+                    if (result == 0) {
+                        result = Integer.compare(cluster[a], cluster[b]);
+                    }
+                    if (result == 0) {
+                        result = Double.compare(barycenter[a], barycenter[b]);
+                    }
+                    return result != 0 ? result : Integer.compare(a, b);
+                });
+                updatePositions(layer, position);
+            }
+        }
+    }
+
+    private void updatePositions(List<Integer> layer, double[] position) {
+        for (int i = 0; i < layer.size(); i++) {
+            position[layer.get(i)] = i;
+        }
+    }
+
+    /**
+     * assigns vertical coordinates. Every pass moves nodes towards the mean coordinate of their neighbours in the
+     * previous layer, resolving overlaps once pushing downwards and once pushing upwards and averaging both
+     * placements, which keeps the minimum separation between neighbours in the layer.
+     */
+    private double[] assignCoordinates(List<List<Integer>> layers, List<List<Integer>> up, List<List<Integer>> down,
+                                       int[] cluster, int realNodes) {
+        double[] y = new double[cluster.length];
+        for (List<Integer> layer : layers) {
+            double current = 0;
+            for (int i = 0; i < layer.size(); i++) {
+                if (i > 0) {
+                    current += separation(layer.get(i - 1), layer.get(i), cluster, realNodes);
+                }
+                y[layer.get(i)] = current;
+            }
+        }
+
+        double[] desired = new double[y.length];
+        for (int pass = 0; pass < ALIGNMENT_PASSES; pass++) {
+            boolean downwards = pass % 2 == 0;
+            int first = downwards ? 1 : layers.size() - 2;
+            int step = downwards ? 1 : -1;
+            for (int l = first; l >= 0 && l < layers.size(); l += step) {
+                List<Integer> layer = layers.get(l);
+                List<List<Integer>> neighbours = downwards ? up : down;
+                for (int v : layer) {
+                    List<Integer> adjacent = neighbours.get(v);
+                    double sum = 0;
+                    for (int w : adjacent) {
+                        sum += y[w];
+                    }
+                    desired[v] = adjacent.isEmpty() ? y[v] : sum / adjacent.size();
+                }
+
+                int size = layer.size();
+                double[] pushedDown = new double[size];
+                double[] pushedUp = new double[size];
+                for (int i = 0; i < size; i++) {
+                    pushedDown[i] = desired[layer.get(i)];
+                    if (i > 0) {
+                        pushedDown[i] = Math.max(pushedDown[i], pushedDown[i - 1] + separation(layer.get(i - 1), layer.get(i), cluster, realNodes));
+                    }
+                }
+                for (int i = size - 1; i >= 0; i--) {
+                    pushedUp[i] = desired[layer.get(i)];
+                    if (i < size - 1) {
+                        pushedUp[i] = Math.min(pushedUp[i], pushedUp[i + 1] - separation(layer.get(i), layer.get(i + 1), cluster, realNodes));
+                    }
+                }
+                for (int i = 0; i < size; i++) {
+                    y[layer.get(i)] = (pushedDown[i] + pushedUp[i]) / 2;
+                }
+            }
+        }
+
+        double min = Double.MAX_VALUE;
+        for (double value : y) {
+            min = Math.min(min, value);
+        }
+        double offset = nodeHeight / 2 + clusterPadding - (y.length == 0 ? 0 : min);
+        for (int v = 0; v < y.length; v++) {
+            y[v] += offset;
+        }
+        return y;
+    }
+
+    /**
+     * minimum distance between the centers of two vertices that are next to each other in a layer
+     */
+    private double separation(int a, int b, int[] cluster, int realNodes) {
+        double heightA = a < realNodes ? nodeHeight : 0;
+        double heightB = b < realNodes ? nodeHeight : 0;
+        double gap = a < realNodes && b < realNodes ? nodeGap : nodeGap / 3;
+        if (cluster[a] != cluster[b]) {
+            gap += 2 * clusterPadding;
+        }
+        return (heightA + heightB) / 2 + gap;
+    }
+
+    private LayoutObject toLayoutObject(GraphObject graph, int n, int m, int[] layer, int[] cluster,
+                                        Map<Long, Integer> clusterOfRoot, boolean[] reversed, int[][] chains,
+                                        int[] edgeOf, Map<String, Integer> indexOf, double[] x, double[] y, int layerCount) {
+        List<NodeObject> nodes = graph.getNodes();
+        List<LayoutObject.NodeLayout> nodeLayouts = new ArrayList<>(n);
+        double height = 0;
+        for (int v = 0; v < n; v++) {
+            nodeLayouts.add(new LayoutObject.NodeLayout(nodes.get(v).getIdentity(), layer[v], x[v], y[v], nodeWidth, nodeHeight));
+            height = Math.max(height, y[v] + nodeHeight / 2 + clusterPadding);
+        }
+
+        List<LayoutObject.EdgeLayout> edgeLayouts = new ArrayList<>(m);
+        for (int e = 0; e < m; e++) {
+            int[] chain = chains[e];
+            List<double[]> points = new ArrayList<>(chain.length);
+            points.add(new double[]{x[chain[0]] + nodeWidth / 2, y[chain[0]]});
+            for (int k = 1; k < chain.length - 1; k++) {
+                points.add(new double[]{x[chain[k]], y[chain[k]]});
+            }
+            points.add(new double[]{x[chain[chain.length - 1]] - nodeWidth / 2, y[chain[chain.length - 1]]});
+            if (reversed[e]) {
+                Collections.reverse(points);
+            }
+            edgeLayouts.add(new LayoutObject.EdgeLayout(graph.getEdges().get(edgeOf[e]).getIdentity(), points));
+        }
+        for (EdgeObject edge : graph.getEdges()) {
+            Integer v = indexOf.get(edge.getSource());
+            if (v != null && edge.getSource().equals(edge.getTarget())) {
+                double right = x[v] + nodeWidth / 2;
+                edgeLayouts.add(new LayoutObject.EdgeLayout(edge.getIdentity(), List.of(
+                        new double[]{right, y[v] - nodeHeight / 4}, new double[]{right + layerGap / 3, y[v] - nodeHeight / 4},
+                        new double[]{right + layerGap / 3, y[v] + nodeHeight / 4}, new double[]{right, y[v] + nodeHeight / 4})));
+            }
+        }
+
+        List<LayoutObject.ClusterLayout> clusterLayouts = new ArrayList<>(clusterOfRoot.size());
+        for (Map.Entry<Long, Integer> entry : clusterOfRoot.entrySet()) {
+            double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+            List<String> members = new ArrayList<>();
+            for (int v = 0; v < n; v++) {
+                if (cluster[v] == entry.getValue()) {
+                    members.add(nodes.get(v).getIdentity());
+                    minX = Math.min(minX, x[v] - nodeWidth / 2);
+                    maxX = Math.max(maxX, x[v] + nodeWidth / 2);
+                    minY = Math.min(minY, y[v] - nodeHeight / 2);
+                    maxY = Math.max(maxY, y[v] + nodeHeight / 2);
+                }
+            }
+            clusterLayouts.add(new LayoutObject.ClusterLayout(String.valueOf(entry.getKey()), members,
+                    (minX + maxX) / 2, (minY + maxY) / 2, maxX - minX + 2 * clusterPadding, maxY - minY + 2 * clusterPadding));
+        }
+
+        double width = layerCount == 0 ? 0 : layerCount * nodeWidth + (layerCount - 1) * layerGap + 2 * clusterPadding;
+        return new LayoutObject(graph, width, height, nodeLayouts, edgeLayouts, clusterLayouts);
+    }
+}
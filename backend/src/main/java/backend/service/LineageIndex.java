@@ -0,0 +1,579 @@
+package backend.service;
+
+import backend.entity.EdgeObject;
+import backend.entity.RelationshipObject;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.exceptions.Neo4jException;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In memory projection of the data flow between nodes, made of all transfers, produces and conditional
+ * relationships. Every node taking part in one of them gets a dense position and the relationships are stored in
+ * compressed sparse row layout in both directions, so upstream and downstream nodes are found by breadth first
+ * search over int arrays instead of variable length expansion in the database.
+ * <p>
+ * The projection is loaded once the application is ready. Added lineage relationships are appended to its edge list
+ * and the snapshot is rebuilt from it on the next read. Readers always see a complete immutable {@link Snapshot}.
+ */
+@Component
+@Slf4j
+public class LineageIndex {
+
+    /**
+     * relationship labels describing data flow, includes relationships are left out
+     */
+    public static final List<RelationshipObject.RelationshipLabels> LABELS = List.of(
+            RelationshipObject.RelationshipLabels.transfers,
+            RelationshipObject.RelationshipLabels.produces,
+            RelationshipObject.RelationshipLabels.conditional);
+    /**
+     * time between attempts to replace a provisional projection by the database content
+     */
+    static final long RETRY_MS = 30_000;
+
+    private final QueryExecutor queryExecutor;
+
+    private final Object lock = new Object();
+    /**
+     * held while the projection is loaded from the database, taken before lock
+     */
+    private final Object loadLock = new Object();
+    private EdgeList edges = new EdgeList();
+    /**
+     * relationships added while a load is running, added to the loaded relationships once it finished
+     */
+    private EdgeList replay;
+
+    private volatile Snapshot snapshot;
+    /**
+     * set when relationships were added after snapshot was built
+     */
+    private volatile boolean stale;
+    /**
+     * set while the projection holds the content of a snapshot file instead of the database
+     */
+    private volatile boolean provisional;
+    /**
+     * earliest time in milliseconds a provisional projection is loaded again on access
+     */
+    private volatile long retryAt;
+
+    public LineageIndex(QueryExecutor queryExecutor) {
+        this.queryExecutor = queryExecutor;
+    }
+
+    /**
+     * loads the projection on startup, failing to reach the database is logged and loading is retried on first use
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        try {
+            reload();
+        } catch (Neo4jException e) {
+            log.warn("could not load lineage index on startup: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * reads all lineage relationships from the database and rebuilds the projection. Relationships added while the
+     * query runs are kept and added to the loaded ones unless the query returned them as well.
+     */
+    public void reload() {
+        synchronized (loadLock) {
+            synchronized (lock) {
+                replay = new EdgeList();
+            }
+
+            EdgeList loaded = new EdgeList();
+            String types = String.join("|", LABELS.stream().map(Enum::name).toList());
+            try {
+                queryExecutor.forEach("MATCH (p)-[r:" + types + "]->(q) RETURN ID(r) AS identity, type(r) AS type, ID(p) AS source, ID(q) AS target, r.scenario AS scenario",
+                        Map.of(), record -> loaded.add(record.get("identity").asLong(), RelationshipObject.RelationshipLabels.valueOf(record.get("type").asString()),
+                                record.get("source").asLong(), record.get("target").asLong(), record.get("scenario").asObject()));
+            } catch (RuntimeException e) {
+                synchronized (lock) {
+                    replay = null;
+                }
+                retryAt = System.currentTimeMillis() + RETRY_MS;
+                throw e;
+            }
+
+            synchronized (lock) {
+                loaded.addMissing(replay);
+                replay = null;
+                edges = loaded;
+                snapshot = edges.snapshot();
+                stale = false;
+                provisional = false;
+            }
+            log.info("lineage index built with {} relationships", loaded.size);
+        }
+    }
+
+    /**
+     * fills the projection from a snapshot file before it is loaded from the database, does nothing once it is
+     * loaded. Until a load succeeds, access retries loading every RETRY_MS.
+     *
+     * @param loaded all lineage relationships
+     */
+    void warm(EdgeList loaded) {
+        synchronized (lock) {
+            if (snapshot == null) {
+                edges = loaded;
+                snapshot = edges.snapshot();
+                stale = false;
+                provisional = true;
+                // the load on startup follows
+                retryAt = System.currentTimeMillis() + RETRY_MS;
+                log.info("lineage index warmed with {} relationships", loaded.size);
+            }
+        }
+    }
+
+    /**
+     * adds newly created relationships to the projection, relationships that are not part of the lineage are
+     * ignored. The snapshot is rebuilt on the next read, so a series of writes only causes one rebuild.
+     *
+     * @param added relationships including identity, label, scenario property and the identities of source and target
+     */
+    public void addEdges(List<EdgeObject> added) {
+        synchronized (lock) {
+            if (replay == null && snapshot == null) {
+                // not loaded yet, the relationships are picked up by the next load
+                return;
+            }
+            for (EdgeObject edge : added) {
+                RelationshipObject.RelationshipLabels label = RelationshipObject.RelationshipLabels.valueOf(edge.getLabels());
+                if (LABELS.contains(label)) {
+                    Object scenario = edge.getProps() == null ? null : edge.getProps().get("scenario");
+                    long identity = Long.parseLong(edge.getIdentity());
+                    long source = Long.parseLong(edge.getSource());
+                    long target = Long.parseLong(edge.getTarget());
+                    if (replay != null) {
+                        replay.add(identity, label, source, target, scenario);
+                    }
+                    if (snapshot != null) {
+                        edges.add(identity, label, source, target, scenario);
+                        stale = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * get current snapshot, loading the projection if that did not succeed on startup or it was filled from a
+     * snapshot file, and rebuilding it if relationships were added since the last read
+     *
+     * @return immutable lineage snapshot
+     */
+    public Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current != null && !stale && !provisional) {
+            return current;
+        }
+
+        if (current != null && provisional) {
+            retryLoad();
+        } else if (current == null) {
+            synchronized (loadLock) {
+                if (snapshot == null) {
+                    try {
+                        reload();
+                    } catch (Neo4jException e) {
+                        log.warn("could not load lineage index: {}", e.getMessage());
+                        throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "lineage index not available");
+                    }
+                }
+            }
+        }
+
+        synchronized (lock) {
+            if (stale) {
+                snapshot = edges.snapshot();
+                stale = false;
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * replaces the content of a snapshot file by the database content, unless a load is running or failed less
+     * than RETRY_MS ago. The snapshot file content is kept while the database can't be reached.
+     */
+    private void retryLoad() {
+        if (System.currentTimeMillis() < retryAt) {
+            return;
+        }
+        synchronized (lock) {
+            if (replay != null) {
+                return;
+            }
+        }
+        synchronized (loadLock) {
+            if (provisional && System.currentTimeMillis() >= retryAt) {
+                try {
+                    reload();
+                } catch (Neo4jException e) {
+                    log.warn("could not load lineage index, answering from snapshot file: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * @param types relationship labels as received by client, all lineage labels if null or empty
+     * @return bit mask of label ordinals
+     * @throws IllegalArgumentException if a label is invalid or not part of the lineage
+     */
+    public static int typeMask(List<String> types) {
+        int mask = 0;
+        if (types == null || types.isEmpty()) {
+            for (RelationshipObject.RelationshipLabels label : LABELS) {
+                mask |= 1 << label.ordinal();
+            }
+            return mask;
+        }
+        for (String type : types) {
+            RelationshipObject.RelationshipLabels label = RelationshipObject.RelationshipLabels.valueOf(LabelValidator.relationshipLabel(type));
+            if (!LABELS.contains(label)) {
+                throw new IllegalArgumentException(type + " relationships are not part of the lineage");
+            }
+            mask |= 1 << label.ordinal();
+        }
+        return mask;
+    }
+
+    /**
+     * growing list of lineage relationships, scenario lists are shared between relationships of the same scenarios
+     */
+    static final class EdgeList {
+        long[] identities = new long[1024];
+        long[] sources = new long[1024];
+        long[] targets = new long[1024];
+        byte[] types = new byte[1024];
+        List<List<String>> scenarios = new ArrayList<>();
+        int size;
+        private final Map<List<String>, List<String>> distinctScenarios = new HashMap<>();
+
+        void add(long identity, RelationshipObject.RelationshipLabels type, long source, long target, Object scenario) {
+            if (size == identities.length) {
+                identities = Arrays.copyOf(identities, size * 2);
+                sources = Arrays.copyOf(sources, size * 2);
+                targets = Arrays.copyOf(targets, size * 2);
+                types = Arrays.copyOf(types, size * 2);
+            }
+            identities[size] = identity;
+            sources[size] = source;
+            targets[size] = target;
+            types[size] = (byte) type.ordinal();
+            List<String> names = new ArrayList<>(ScenarioCatalog.namesOf(scenario));
+            scenarios.add(distinctScenarios.computeIfAbsent(names, key -> List.copyOf(names)));
+            size++;
+        }
+
+        /**
+         * adds the relationships of other that are not contained yet
+         */
+        void addMissing(EdgeList other) {
+            if (other.size == 0) {
+                return;
+            }
+            Set<Long> contained = new HashSet<>(size * 2);
+            for (int i = 0; i < size; i++) {
+                contained.add(identities[i]);
+            }
+            for (int i = 0; i < other.size; i++) {
+                if (!contained.contains(other.identities[i])) {
+                    add(other.identities[i], RelationshipObject.RelationshipLabels.values()[other.types[i]], other.sources[i], other.targets[i],
+                            other.scenarios.get(i));
+                }
+            }
+        }
+
+        Snapshot snapshot() {
+            return Snapshot.build(identities, sources, targets, types, scenarios, size);
+        }
+    }
+
+    /**
+     * nodes reached from a root
+     *
+     * @param edges     identities of all relationships followed, at most the requested number
+     * @param distances number of relationships between root and every reached node, including root itself
+     * @param depth     number of hops that were expanded
+     * @param truncated whether the relationship cap was reached before the requested depth was expanded
+     */
+    public record Reach(long[] edges, Map<Long, Integer> distances, int depth, boolean truncated) {
+    }
+
+    /**
+     * Immutable compressed sparse row representation of the lineage relationships
+     */
+    public static final class Snapshot {
+
+        /**
+         * sorted node identities, position in this array is the dense index used by all other node arrays
+         */
+        private final long[] ids;
+        private final long[] edgeIds;
+        private final int[] edgeSources;
+        private final int[] edgeTargets;
+        private final byte[] edgeTypes;
+        /**
+         * scenario ids per relationship, as position in scenarioSets
+         */
+        private final int[] edgeScenarios;
+        private final int[][] scenarioSets;
+        private final Map<String, Integer> scenarioIds;
+        /**
+         * outgoing relationships of node i are outEdges[outOffsets[i]] to outEdges[outOffsets[i + 1] - 1]
+         */
+        private final int[] outOffsets;
+        private final int[] outEdges;
+        private final int[] inOffsets;
+        private final int[] inEdges;
+
+        private Snapshot(long[] ids, long[] edgeIds, int[] edgeSources, int[] edgeTargets, byte[] edgeTypes, int[] edgeScenarios,
+                         int[][] scenarioSets, Map<String, Integer> scenarioIds, int[] outOffsets, int[] outEdges, int[] inOffsets, int[] inEdges) {
+            this.ids = ids;
+            this.edgeIds = edgeIds;
+            this.edgeSources = edgeSources;
+            this.edgeTargets = edgeTargets;
+            this.edgeTypes = edgeTypes;
+            this.edgeScenarios = edgeScenarios;
+            this.scenarioSets = scenarioSets;
+            this.scenarioIds = scenarioIds;
+            this.outOffsets = outOffsets;
+            this.outEdges = outEdges;
+            this.inOffsets = inOffsets;
+            this.inEdges = inEdges;
+        }
+
+        static Snapshot build(long[] identities, long[] sources, long[] targets, byte[] types, List<List<String>> scenarios, int edgeCount) {
+            long[] all = new long[edgeCount * 2];
+            System.arraycopy(sources, 0, all, 0, edgeCount);
+            System.arraycopy(targets, 0, all, edgeCount, edgeCount);
+            Arrays.sort(all);
+            int n = 0;
+            for (int i = 0; i < all.length; i++) {
+                if (i == 0 || all[i] != all[i - 1]) {
+                    all[n++] = all[i];
+                }
+            }
+            long[] ids = Arrays.copyOf(all, n);
+
+            int[] edgeSources = new int[edgeCount];
+            int[] edgeTargets = new int[edgeCount];
+            int[] edgeScenarios = new int[edgeCount];
+            Map<String, Integer> scenarioIds = new HashMap<>();
+            Map<List<String>, Integer> setIds = new LinkedHashMap<>();
+            int[] outDegree = new int[n];
+            int[] inDegree = new int[n];
+            for (int e = 0; e < edgeCount; e++) {
+                edgeSources[e] = Arrays.binarySearch(ids, sources[e]);
+                edgeTargets[e] = Arrays.binarySearch(ids, targets[e]);
+                outDegree[edgeSources[e]]++;
+                inDegree[edgeTargets[e]]++;
+                edgeScenarios[e] = setIds.computeIfAbsent(scenarios.get(e), key -> setIds.size());
+            }
+            int[][] scenarioSets = new int[setIds.size()][];
+            setIds.forEach((names, set) -> {
+                int[] members = new int[names.size()];
+                for (int i = 0; i < names.size(); i++) {
+                    members[i] = scenarioIds.computeIfAbsent(names.get(i), key -> scenarioIds.size());
+                }
+                scenarioSets[set] = members;
+            });
+
+            int[] outOffsets = offsets(outDegree);
+            int[] inOffsets = offsets(inDegree);
+            int[] outFill = Arrays.copyOf(outOffsets, n);
+            int[] inFill = Arrays.copyOf(inOffsets, n);
+            int[] outEdges = new int[edgeCount];
+            int[] inEdges = new int[edgeCount];
+            for (int e = 0; e < edgeCount; e++) {
+                outEdges[outFill[edgeSources[e]]++] = e;
+                inEdges[inFill[edgeTargets[e]]++] = e;
+            }
+
+            return new Snapshot(ids, Arrays.copyOf(identities, edgeCount), edgeSources, edgeTargets, Arrays.copyOf(types, edgeCount),
+                    edgeScenarios, scenarioSets, scenarioIds, outOffsets, outEdges, inOffsets, inEdges);
+        }
+
+        private static int[] offsets(int[] degree) {
+            int[] offsets = new int[degree.length + 1];
+            for (int i = 0; i < degree.length; i++) {
+                offsets[i + 1] = offsets[i] + degree[i];
+            }
+            return offsets;
+        }
+
+        /**
+         * @return number of relationships in the projection
+         */
+        public int size() {
+            return edgeIds.length;
+        }
+
+        /**
+         * follows relationships breadth first, relationships between nodes that were reached before are followed as
+         * well
+         *
+         * @param root       identity of the start node
+         * @param downstream follow relationships from source to target if true, from target to source otherwise
+         * @param depth      maximum number of hops
+         * @param types      bit mask of the relationship label ordinals to follow, see {@link LineageIndex#typeMask}
+         * @param scenario   only follow relationships of this scenario, all relationships if null
+         * @param limit      maximum number of followed relationships
+         * @return followed relationships and reached nodes
+         */
+        public Reach reach(long root, boolean downstream, int depth, int types, String scenario, int limit) {
+            Map<Long, Integer> distances = new LinkedHashMap<>();
+            distances.put(root, 0);
+            int start = Arrays.binarySearch(ids, root);
+            int scenarioId = scenarioIdOf(scenario);
+            if (start < 0 || scenarioId == -2) {
+                return new Reach(new long[0], distances, 0, false);
+            }
+
+            int[] offsets = downstream ? outOffsets : inOffsets;
+            int[] adjacent = downstream ? outEdges : inEdges;
+            int[] other = downstream ? edgeTargets : edgeSources;
+
+            long[] followed = new long[16];
+            int count = 0;
+            int hops = 0;
+            boolean truncated = false;
+            int[] frontier = {start};
+            int frontierSize = 1;
+            while (hops < depth && frontierSize > 0 && !truncated) {
+                int[] next = new int[16];
+                int nextSize = 0;
+                hops++;
+                for (int f = 0; f < frontierSize && !truncated; f++) {
+                    int v = frontier[f];
+                    for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+                        int e = adjacent[k];
+                        if (!follows(e, types, scenarioId)) {
+                            continue;
+                        }
+                        if (count == limit) {
+                            truncated = true;
+                            break;
+                        }
+                        if (count == followed.length) {
+                            followed = Arrays.copyOf(followed, count * 2);
+                        }
+                        followed[count++] = edgeIds[e];
+                        int w = other[e];
+                        if (distances.putIfAbsent(ids[w], hops) == null) {
+                            if (nextSize == next.length) {
+                                next = Arrays.copyOf(next, nextSize * 2);
+                            }
+                            next[nextSize++] = w;
+                        }
+                    }
+                }
+                frontier = next;
+                frontierSize = nextSize;
+            }
+            return new Reach(Arrays.copyOf(followed, count), distances, hops, truncated);
+        }
+
+        /**
+         * finds a path with the least number of relationships from source to target, following relationships
+         * from their source to their target
+         *
+         * @param source   identity of the start node
+         * @param target   identity of the end node
+         * @param depth    maximum number of relationships of the path
+         * @param types    bit mask of the relationship label ordinals to follow, see {@link LineageIndex#typeMask}
+         * @param scenario only follow relationships of this scenario, all relationships if null
+         * @return identities of the relationships of the path in order, empty if source equals target, null if
+         * there is no path
+         */
+        public long[] shortestPath(long source, long target, int depth, int types, String scenario) {
+            if (source == target) {
+                return new long[0];
+            }
+            int start = Arrays.binarySearch(ids, source);
+            int end = Arrays.binarySearch(ids, target);
+            int scenarioId = scenarioIdOf(scenario);
+            if (start < 0 || end < 0 || scenarioId == -2) {
+                return null;
+            }
+
+            // relationship each node was reached through
+            Map<Integer, Integer> reachedBy = new HashMap<>();
+            reachedBy.put(start, -1);
+            int[] frontier = {start};
+            int frontierSize = 1;
+            for (int hops = 0; hops < depth && frontierSize > 0; hops++) {
+                int[] next = new int[16];
+                int nextSize = 0;
+                for (int f = 0; f < frontierSize; f++) {
+                    int v = frontier[f];
+                    for (int k = outOffsets[v]; k < outOffsets[v + 1]; k++) {
+                        int e = outEdges[k];
+                        int w = edgeTargets[e];
+                        if (!follows(e, types, scenarioId) || reachedBy.putIfAbsent(w, e) != null) {
+                            continue;
+                        }
+                        if (w == end) {
+                            long[] path = new long[hops + 1];
+                            for (int i = hops, node = w; i >= 0; i--) {
+                                int edge = reachedBy.get(node);
+                                path[i] = edgeIds[edge];
+                                node = edgeSources[edge];
+                            }
+                            return path;
+                        }
+                        if (nextSize == next.length) {
+                            next = Arrays.copyOf(next, nextSize * 2);
+                        }
+                        next[nextSize++] = w;
+                    }
+                }
+                frontier = next;
+                frontierSize = nextSize;
+            }
+            return null;
+        }
+
+        /**
+         * @return id of scenario, -1 for all scenarios if null, -2 if no relationship belongs to scenario
+         */
+        private int scenarioIdOf(String scenario) {
+            return scenario == null ? -1 : scenarioIds.getOrDefault(scenario, -2);
+        }
+
+        private boolean follows(int edge, int types, int scenarioId) {
+            if ((types & 1 << edgeTypes[edge]) == 0) {
+                return false;
+            }
+            if (scenarioId == -1) {
+                return true;
+            }
+            for (int member : scenarioSets[edgeScenarios[edge]]) {
+                if (member == scenarioId) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
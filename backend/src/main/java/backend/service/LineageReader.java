@@ -0,0 +1,146 @@
+package backend.service;
+
+import backend.entity.EdgeObject;
+import backend.entity.GraphObject;
+import backend.entity.LineageObject;
+import backend.entity.NodeObject;
+import backend.entity.PathObject;
+import org.neo4j.driver.Record;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Answers lineage questions from the {@link LineageIndex}. The relationships to return are found in memory, only
+ * the found nodes and relationships are read from the database, with one query for the root and one for all
+ * relationships.
+ */
+@Component
+public class LineageReader {
+
+    private final QueryExecutor queryExecutor;
+    private final GraphRecordMapper graphRecordMapper;
+    private final LineageIndex lineageIndex;
+    private final int maxDepth;
+    private final int maxEdges;
+
+    public LineageReader(QueryExecutor queryExecutor, GraphRecordMapper graphRecordMapper, LineageIndex lineageIndex, Environment env) {
+        this.queryExecutor = queryExecutor;
+        this.graphRecordMapper = graphRecordMapper;
+        this.lineageIndex = lineageIndex;
+        this.maxDepth = env.getProperty("lineage.max-depth", Integer.class, 50);
+        this.maxEdges = env.getProperty("lineage.max-edges", Integer.class, 5000);
+    }
+
+    /**
+     * reads the nodes upstream or downstream of root
+     *
+     * @param root      identity of the root node
+     * @param direction direction of the data flow to follow
+     * @param depth     number of hops, lineage.max-depth if null, at most lineage.max-depth
+     * @param types     relationship labels to follow, all lineage labels if null or empty
+     * @param scenario  only follow relationships of this scenario, all relationships if null
+     * @param limit     maximum number of edges, lineage.max-edges if null, at most lineage.max-edges
+     * @return future of the lineage, failing with 404 if root does not exist
+     * @throws IllegalArgumentException if a relationship label is invalid or not part of the lineage
+     */
+    public CompletableFuture<LineageObject> lineage(long root, LineageObject.Direction direction, Integer depth, List<String> types,
+                                                    String scenario, Integer limit) {
+        int mask = LineageIndex.typeMask(types);
+        LineageIndex.Reach reach = lineageIndex.snapshot().reach(root, direction == LineageObject.Direction.downstream, depthOf(depth),
+                mask, scenario, limit == null ? maxEdges : Math.max(0, Math.min(limit, maxEdges)));
+
+        return readGraph(QueryExecutor.currentEndpoint(), root, reach.edges()).thenApply(graph -> {
+            Map<String, Integer> distances = new LinkedHashMap<>();
+            reach.distances().forEach((identity, distance) -> distances.put(String.valueOf(identity), distance));
+            return new LineageObject(String.valueOf(root), direction, reach.depth(), reach.truncated(), distances, graph.getNodes(), graph.getEdges());
+        });
+    }
+
+    /**
+     * reads a path with the least number of relationships from source to target in direction of the data flow
+     *
+     * @param source   identity of the start node
+     * @param target   identity of the end node
+     * @param depth    maximum number of relationships, lineage.max-depth if null, at most lineage.max-depth
+     * @param types    relationship labels to follow, all lineage labels if null or empty
+     * @param scenario only follow relationships of this scenario, all relationships if null
+     * @return future of the path, failing with 404 if source does not exist or there is no path
+     * @throws IllegalArgumentException if a relationship label is invalid or not part of the lineage
+     */
+    public CompletableFuture<PathObject> path(long source, long target, Integer depth, List<String> types, String scenario) {
+        int mask = LineageIndex.typeMask(types);
+        long[] path = lineageIndex.snapshot().shortestPath(source, target, depthOf(depth), mask, scenario);
+        if (path == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "no path");
+        }
+
+        return readGraph(QueryExecutor.currentEndpoint(), source, path).thenApply(graph -> inPathOrder(graph, source, target, path));
+    }
+
+    int depthOf(Integer depth) {
+        return depth == null ? maxDepth : Math.max(0, Math.min(depth, maxDepth));
+    }
+
+    /**
+     * reads root and the relationships with their source and target
+     */
+    private CompletableFuture<GraphObject> readGraph(String endpoint, long root, long[] edges) {
+        GraphRecordMapper.GraphBuilder graph = graphRecordMapper.graphBuilder();
+
+        return queryExecutor.readAsync(endpoint, "MATCH (n) WHERE ID(n) = $root RETURN n", Map.of("root", root), Function.identity())
+                .thenCompose(roots -> {
+                    if (roots.isEmpty()) {
+                        throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+                    }
+                    graph.addNode(roots.get(0).get("n").asNode());
+                    if (edges.length == 0) {
+                        return CompletableFuture.completedFuture(graph.build());
+                    }
+                    return queryExecutor.readAsync(endpoint, "MATCH (p)-[r]->(q) WHERE ID(r) IN $edges RETURN p, r, q",
+                            Map.of("edges", Arrays.stream(edges).boxed().toList()), Function.identity()).thenApply(records -> {
+                        for (Record rec : records) {
+                            NodeObject p = graph.addNode(rec.get("p").asNode());
+                            NodeObject q = graph.addNode(rec.get("q").asNode());
+                            graph.addEdge(rec.get("r").asRelationship(), p, q);
+                        }
+                        return graph.build();
+                    });
+                });
+    }
+
+    /**
+     * @param path identities of the relationships of the path in order
+     * @return nodes and edges of graph in path order, relationships deleted from the database meanwhile are left out
+     */
+    static PathObject inPathOrder(GraphObject graph, long source, long target, long[] path) {
+        Map<String, NodeObject> nodes = new HashMap<>();
+        graph.getNodes().forEach(node -> nodes.put(node.getIdentity(), node));
+        Map<String, EdgeObject> edges = new HashMap<>();
+        graph.getEdges().forEach(edge -> edges.put(edge.getIdentity(), edge));
+
+        List<EdgeObject> orderedEdges = new ArrayList<>();
+        List<NodeObject> orderedNodes = new ArrayList<>();
+        orderedNodes.add(nodes.get(String.valueOf(source)));
+        for (long identity : path) {
+            EdgeObject edge = edges.get(String.valueOf(identity));
+            if (edge != null) {
+                orderedEdges.add(edge);
+                orderedNodes.add(nodes.get(edge.getTarget()));
+            }
+        }
+        orderedNodes.removeIf(Objects::isNull);
+        return new PathObject(String.valueOf(source), String.valueOf(target), orderedNodes, orderedEdges);
+    }
+}
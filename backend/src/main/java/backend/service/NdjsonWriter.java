@@ -0,0 +1,64 @@
+package backend.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.function.Function;
+
+/**
+ * Writes query results as newline delimited json (one json document per line) directly to an output stream,
+ * so records are serialized as they are pulled from the database instead of being collected first
+ */
+@Component
+public class NdjsonWriter {
+
+    public static final String MEDIA_TYPE = "application/x-ndjson";
+
+    /**
+     * number of lines written between flushes; the first line is always flushed immediately
+     */
+    private static final int FLUSH_INTERVAL = 64;
+
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter writer;
+
+    public NdjsonWriter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * maps and writes every element of the iterator as one line
+     *
+     * @param out    stream the lines are written to, is not closed
+     * @param source elements to write, e.g. a neo4j Result
+     * @param mapper function transforming an element to the object to be serialized
+     * @return number of lines written
+     * @throws IOException if writing to the stream fails
+     */
+    public <S, T> long write(OutputStream out, Iterator<S> source, Function<S, T> mapper) throws IOException {
+        long count = 0;
+
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+
+            while (source.hasNext()) {
+                writer.writeValue(generator, mapper.apply(source.next()));
+                generator.writeRaw('\n');
+                count++;
+
+                if (count == 1 || count % FLUSH_INTERVAL == 0) {
+                    generator.flush();
+                }
+            }
+        }
+        return count;
+    }
+}
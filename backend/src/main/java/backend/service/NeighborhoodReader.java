@@ -0,0 +1,176 @@
+package backend.service;
+
+import backend.entity.GraphObject;
+import backend.entity.NeighborhoodObject;
+import backend.entity.NodeObject;
+import org.neo4j.driver.Record;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Reads the k-hop neighborhood of a node breadth first, one query per hop. Every query only starts at the nodes
+ * found in the previous hop and skips relationships leading back to nodes of earlier hops, so each relationship is
+ * read once. Expansion stops at the requested depth, when no new nodes are found or when the edge cap is reached.
+ */
+@Component
+public class NeighborhoodReader {
+
+    private final QueryExecutor queryExecutor;
+    private final GraphRecordMapper graphRecordMapper;
+    private final int maxDepth;
+    private final int maxEdges;
+
+    public NeighborhoodReader(QueryExecutor queryExecutor, GraphRecordMapper graphRecordMapper, Environment env) {
+        this.queryExecutor = queryExecutor;
+        this.graphRecordMapper = graphRecordMapper;
+        this.maxDepth = env.getProperty("neighborhood.max-depth", Integer.class, 5);
+        this.maxEdges = env.getProperty("neighborhood.max-edges", Integer.class, 5000);
+    }
+
+    /**
+     * reads neighborhood of root, the queries run on async sessions without blocking the calling thread
+     *
+     * @param root      identity of the root node
+     * @param depth     number of hops, limited by neighborhood.max-depth
+     * @param direction direction of the followed relationships
+     * @param types     relationship labels to follow, all labels if null or empty
+     * @param scenario  only follow relationships of this scenario, all relationships if null
+     * @param limit     maximum number of edges, limited by neighborhood.max-edges
+     * @return future of the normalized subgraph, failing with 404 if root does not exist
+     * @throws IllegalArgumentException if a relationship label is invalid
+     */
+    public CompletableFuture<NeighborhoodObject> read(long root, int depth, NeighborhoodObject.Direction direction, List<String> types,
+                                                      String scenario, int limit) {
+        String query = hopQuery(direction, relationshipTypes(types), scenario != null);
+        Expansion expansion = new Expansion(QueryExecutor.currentEndpoint(), query, scenario, Math.max(0, Math.min(depth, maxDepth)), Math.max(0, Math.min(limit, maxEdges)));
+
+        return queryExecutor.readAsync(expansion.endpoint, "MATCH (n) WHERE ID(n) = $root RETURN n", Map.of("root", root), Function.identity())
+                .thenCompose(roots -> {
+                    if (roots.isEmpty()) {
+                        throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+                    }
+                    expansion.graph.addNode(roots.get(0).get("n").asNode());
+                    expansion.visited.add(root);
+                    return expand(expansion, List.of(root));
+                })
+                .thenApply(expansion::result);
+    }
+
+    private CompletableFuture<Void> expand(Expansion expansion, List<Long> frontier) {
+        int remaining = expansion.limit - expansion.graph.edgeCount();
+        if (expansion.hops == expansion.depth || frontier.isEmpty() || remaining <= 0) {
+            // the cap was reached while nodes were left to expand
+            expansion.truncated |= remaining <= 0 && !frontier.isEmpty() && expansion.hops < expansion.depth;
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Set<Long> frontierSet = new HashSet<>(frontier);
+        List<Long> earlier = new ArrayList<>();
+        for (long visited : expansion.visited) {
+            if (!frontierSet.contains(visited)) {
+                earlier.add(visited);
+            }
+        }
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("frontier", frontier);
+        params.put("visited", earlier);
+        params.put("scenario", expansion.scenario);
+        // one more than remaining, so a truncated hop can be told apart from one that fits exactly
+        params.put("limit", remaining + 1);
+
+        return queryExecutor.readAsync(expansion.endpoint, expansion.query, params, Function.identity()).thenCompose(records -> {
+            expansion.hops++;
+            Set<Long> next = new LinkedHashSet<>();
+            for (Record rec : records) {
+                if (expansion.graph.edgeCount() == expansion.limit) {
+                    expansion.truncated = true;
+                    break;
+                }
+                NodeObject source = expansion.graph.addNode(rec.get("p").asNode());
+                NodeObject target = expansion.graph.addNode(rec.get("q").asNode());
+                expansion.graph.addEdge(rec.get("r").asRelationship(), source, target);
+
+                for (NodeObject node : List.of(source, target)) {
+                    long identity = Long.parseLong(node.getIdentity());
+                    if (expansion.visited.add(identity)) {
+                        next.add(identity);
+                    }
+                }
+            }
+            return expand(expansion, new ArrayList<>(next));
+        });
+    }
+
+    /**
+     * builds the query of one hop, returning source p, relationship r and target q of every relationship between
+     * a node of the frontier and a node that was not visited in an earlier hop
+     */
+    static String hopQuery(NeighborhoodObject.Direction direction, String types, boolean byScenario) {
+        String scenario = byScenario ? " AND $scenario IN r.scenario" : "";
+        String outgoing = "MATCH (p)-[r" + types + "]->(q) WHERE ID(p) IN $frontier AND NOT ID(q) IN $visited" + scenario + " RETURN p, r, q";
+        String incoming = "MATCH (p)-[r" + types + "]->(q) WHERE ID(q) IN $frontier AND NOT ID(p) IN $visited" + scenario + " RETURN p, r, q";
+
+        return switch (direction) {
+            case outgoing -> outgoing + " LIMIT $limit";
+            case incoming -> incoming + " LIMIT $limit";
+            case both -> "CALL { " + outgoing + " UNION " + incoming + " } RETURN p, r, q LIMIT $limit";
+        };
+    }
+
+    /**
+     * @param types relationship labels as received by client
+     * @return type expression for the relationship pattern, empty to match all types
+     * @throws IllegalArgumentException if a label is invalid
+     */
+    static String relationshipTypes(List<String> types) {
+        if (types == null || types.isEmpty()) {
+            return "";
+        }
+        Set<String> valid = new LinkedHashSet<>();
+        for (String type : types) {
+            valid.add(LabelValidator.relationshipLabel(type));
+        }
+        return ":" + String.join("|", valid);
+    }
+
+    /**
+     * state of one neighborhood read, only accessed by one query callback at a time
+     */
+    private final class Expansion {
+        final String endpoint;
+        final String query;
+        final String scenario;
+        final int depth;
+        final int limit;
+        final GraphRecordMapper.GraphBuilder graph = graphRecordMapper.graphBuilder();
+        final Set<Long> visited = new HashSet<>();
+        int hops = 0;
+        boolean truncated = false;
+
+        Expansion(String endpoint, String query, String scenario, int depth, int limit) {
+            this.endpoint = endpoint;
+            this.query = query;
+            this.scenario = scenario;
+            this.depth = depth;
+            this.limit = limit;
+        }
+
+        NeighborhoodObject result(Void done) {
+            GraphObject built = graph.build();
+            return new NeighborhoodObject(built.getNodes().get(0).getIdentity(), hops, truncated, built.getNodes(), built.getEdges());
+        }
+    }
+}
@@ -0,0 +1,674 @@
+package backend.service;
+
+import backend.entity.NodeObject;
+import backend.entity.SearchHitObject;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.exceptions.Neo4jException;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * In memory index for typeahead search of nodes. The string properties listed in search.properties are normalized
+ * (accents removed, lower case, everything but letters and digits collapsed to single spaces) and every value is
+ * stored together with the suffixes starting at each of its words in one sorted array, so values and words
+ * starting with the query are found by binary search. Values containing the query within a word are found
+ * through trigram posting lists.
+ * <p>
+ * The index is loaded once the application is ready. Nodes added through the backend are queued and added to the
+ * snapshot by the next search, outside the lock writers take. They are kept in a short list that is searched
+ * linearly and merged into a new {@link Snapshot} once it grows too large. Readers always see a complete immutable
+ * snapshot.
+ */
+@Component
+@Slf4j
+public class NodeSearchIndex {
+
+    static final int EXACT = 0;
+    static final int PREFIX = 1;
+    static final int WORD_PREFIX = 2;
+    static final int INFIX = 3;
+
+    /**
+     * minimum query length for matches within words, shorter queries have no trigram
+     */
+    static final int INFIX_LENGTH = 3;
+
+    /**
+     * maximum number of prefix and of trigram matches passing the filter looked at per query, bounds the latency of
+     * short or very common queries
+     */
+    static final int SCAN_LIMIT = 1000;
+
+    /**
+     * nodes added since the last merge are searched linearly up to this many or a sixteenth of the snapshot
+     */
+    static final int MIN_RECENT = 1024;
+    /**
+     * time between attempts to replace a provisional index by the database content
+     */
+    static final long RETRY_MS = 30_000;
+
+    private final QueryExecutor queryExecutor;
+    private final GraphRecordMapper graphRecordMapper;
+    private final ScenarioCatalog scenarioCatalog;
+    private final List<String> properties;
+    private final int defaultLimit;
+    private final int maxLimit;
+
+    private final Object lock = new Object();
+    /**
+     * held while the index is loaded from the database, taken before lock
+     */
+    private final Object loadLock = new Object();
+    /**
+     * entries of nodes added while a load is running, added to the loaded entries once it finished
+     */
+    private List<Entry> replay;
+    /**
+     * held while queued entries are added to the snapshot, taken before lock
+     */
+    private final Object rebuildLock = new Object();
+    private volatile Snapshot snapshot;
+    /**
+     * entries of nodes added since snapshot was built
+     */
+    private List<Entry> queued = new ArrayList<>();
+    /**
+     * set when entries are queued
+     */
+    private volatile boolean stale;
+    /**
+     * set while the index holds the content of a snapshot file instead of the database
+     */
+    private volatile boolean provisional;
+    /**
+     * earliest time in milliseconds a provisional index is loaded again on access
+     */
+    private volatile long retryAt;
+
+    public NodeSearchIndex(QueryExecutor queryExecutor, GraphRecordMapper graphRecordMapper, ScenarioCatalog scenarioCatalog, Environment env) {
+        this.queryExecutor = queryExecutor;
+        this.graphRecordMapper = graphRecordMapper;
+        this.scenarioCatalog = scenarioCatalog;
+        this.properties = List.of(env.getProperty("search.properties", String[].class, new String[]{"name"}));
+        this.defaultLimit = env.getProperty("search.default-limit", Integer.class, 10);
+        this.maxLimit = env.getProperty("search.max-limit", Integer.class, 50);
+    }
+
+    /**
+     * loads the index on startup, failing to reach the database is logged and loading is retried on first use
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        try {
+            reload();
+        } catch (Neo4jException e) {
+            log.warn("could not load search index on startup: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * reads the searchable properties of all nodes from the database and rebuilds the index. Nodes added while the
+     * query runs are kept and added to the loaded ones unless the query returned them as well.
+     */
+    public void reload() {
+        synchronized (loadLock) {
+            synchronized (lock) {
+                replay = new ArrayList<>();
+            }
+
+            List<Entry> entries = new ArrayList<>();
+            try {
+                queryExecutor.forEach("MATCH (n) RETURN ID(n) AS identity, labels(n) AS labels, n.name AS name, [key IN $properties | n[key]] AS values",
+                        Map.of("properties", properties), record -> {
+                            Entry entry = entryOf(record.get("identity").asLong(), graphRecordMapper.orderLabels(record.get("labels").asList(Value::asString)),
+                                    record.get("name").asObject(), record.get("values").asList());
+                            if (entry != null) {
+                                entries.add(entry);
+                            }
+                        });
+            } catch (RuntimeException e) {
+                synchronized (lock) {
+                    replay = null;
+                }
+                retryAt = System.currentTimeMillis() + RETRY_MS;
+                throw e;
+            }
+
+            Snapshot loaded = Snapshot.build(entries, properties.size());
+            synchronized (lock) {
+                Set<Long> identities = new HashSet<>();
+                entries.forEach(entry -> identities.add(entry.identity));
+                List<Entry> missed = replay.stream().filter(entry -> !identities.contains(entry.identity)).toList();
+                replay = null;
+                snapshot = missed.isEmpty() ? loaded : loaded.with(missed);
+                // queued entries were added while the query ran and are replayed
+                queued = new ArrayList<>();
+                stale = false;
+                provisional = false;
+            }
+            log.info("search index built with {} nodes", entries.size());
+        }
+    }
+
+    /**
+     * adds newly created nodes to the index. They are only queued, the snapshot is rebuilt by the next search, so
+     * callbacks of writes don't wait for it.
+     *
+     * @param nodes nodes including identity
+     */
+    public void addAll(List<NodeObject> nodes) {
+        List<Entry> entries = new ArrayList<>(nodes.size());
+        for (NodeObject node : nodes) {
+            Entry entry = entryOf(node);
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        synchronized (lock) {
+            if (replay != null) {
+                replay.addAll(entries);
+            }
+            if (snapshot == null) {
+                // not loaded yet, the nodes are picked up by the next load
+                return;
+            }
+            queued.addAll(entries);
+            stale = true;
+        }
+    }
+
+    /**
+     * fills the index from a snapshot file before it is loaded from the database, does nothing once it is loaded.
+     * Until a load succeeds, access retries loading every RETRY_MS.
+     *
+     * @param entries entries of all nodes, see {@link #entryOf(NodeObject)}
+     */
+    void warm(List<Entry> entries) {
+        Snapshot warmed = Snapshot.build(entries, properties.size());
+        synchronized (lock) {
+            if (snapshot == null) {
+                snapshot = warmed;
+                provisional = true;
+                // the load on startup follows
+                retryAt = System.currentTimeMillis() + RETRY_MS;
+                log.info("search index warmed with {} nodes", entries.size());
+            }
+        }
+    }
+
+    /**
+     * finds nodes by the start of their values, the start of a word of their values or, for queries of at least
+     * three letters, any part of their values. Case, accents and punctuation are ignored.
+     *
+     * @param query    text typed so far
+     * @param type     only nodes with this type label, all nodes if null
+     * @param scenario only nodes of this scenario, all nodes if null
+     * @param limit    number of hits, search.default-limit if null, at most search.max-limit
+     * @return best hits first: exact matches, values starting with the query, words starting with the query, values
+     * containing the query. Hits of the same kind are ordered by property, shorter values first.
+     * @throws IllegalArgumentException if type is no type label
+     */
+    public List<SearchHitObject> search(String query, String type, String scenario, Integer limit) {
+        String label = type == null ? null : NodeObject.TypeLabels.valueOf(type).name();
+        // sorted and cached by the catalog
+        long[] nodes = scenario == null ? null : scenarioCatalog.nodesOf(scenario);
+        Predicate<Entry> filter = entry -> (label == null || entry.labels.contains(label))
+                && (nodes == null || Arrays.binarySearch(nodes, entry.identity) >= 0);
+
+        List<SearchHitObject> hits = new ArrayList<>();
+        for (Hit hit : snapshot().search(normalize(query), filter, limitOf(limit))) {
+            Entry entry = hit.entry();
+            hits.add(new SearchHitObject(String.valueOf(entry.identity), entry.labels, entry.name,
+                    properties.get(hit.property()), entry.values[hit.property()]));
+        }
+        return hits;
+    }
+
+    int limitOf(Integer limit) {
+        return limit == null ? defaultLimit : Math.max(1, Math.min(limit, maxLimit));
+    }
+
+    /**
+     * get current snapshot, loading the index if that did not succeed on startup or it was filled from a snapshot
+     * file
+     */
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current != null && provisional) {
+            retryLoad();
+        } else if (current == null) {
+            synchronized (loadLock) {
+                if (snapshot == null) {
+                    try {
+                        reload();
+                    } catch (Neo4jException e) {
+                        log.warn("could not load search index: {}", e.getMessage());
+                        throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "search index not available");
+                    }
+                }
+            }
+        }
+        return stale ? addQueued() : snapshot;
+    }
+
+    /**
+     * adds the queued entries to the snapshot. The snapshot is built without holding lock, nodes added meanwhile
+     * are queued for the next search.
+     */
+    private Snapshot addQueued() {
+        synchronized (rebuildLock) {
+            Snapshot base;
+            List<Entry> added;
+            synchronized (lock) {
+                if (!stale) {
+                    return snapshot;
+                }
+                base = snapshot;
+                added = queued;
+                queued = new ArrayList<>();
+            }
+
+            Snapshot rebuilt = base.with(added);
+            synchronized (lock) {
+                // a reload replaced the snapshot meanwhile, it contains the added entries
+                if (snapshot == base) {
+                    snapshot = rebuilt;
+                }
+                stale = !queued.isEmpty();
+                return snapshot;
+            }
+        }
+    }
+
+    /**
+     * replaces the content of a snapshot file by the database content, unless a load is running or failed less
+     * than RETRY_MS ago. The snapshot file content is kept while the database can't be reached.
+     */
+    private void retryLoad() {
+        if (System.currentTimeMillis() < retryAt) {
+            return;
+        }
+        synchronized (lock) {
+            if (replay != null) {
+                return;
+            }
+        }
+        synchronized (loadLock) {
+            if (provisional && System.currentTimeMillis() >= retryAt) {
+                try {
+                    reload();
+                } catch (Neo4jException e) {
+                    log.warn("could not load search index, answering from snapshot file: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * @param node node including identity
+     * @return entry, null if the node has no searchable value
+     */
+    Entry entryOf(NodeObject node) {
+        Map<String, Object> props = node.getProps() == null ? Map.of() : node.getProps();
+        return entryOf(Long.parseLong(node.getIdentity()), node.getLabels(), props.get("name"), properties.stream().map(props::get).toList());
+    }
+
+    /**
+     * @param values value per searchable property, only strings are indexed
+     * @return entry, null if the node has no searchable value
+     */
+    static Entry entryOf(long identity, List<String> labels, Object name, List<?> values) {
+        String[] raw = new String[values.size()];
+        String[] normalized = new String[values.size()];
+        boolean searchable = false;
+        for (int i = 0; i < values.size(); i++) {
+            if (values.get(i) instanceof String value) {
+                String text = normalize(value);
+                if (!text.isEmpty()) {
+                    raw[i] = value;
+                    normalized[i] = text;
+                    searchable = true;
+                }
+            }
+        }
+        return searchable ? new Entry(identity, labels == null ? List.of() : labels, name == null ? null : name.toString(), raw, normalized) : null;
+    }
+
+    /**
+     * @return text without accents in lower case, words of letters and digits separated by single spaces
+     */
+    static String normalize(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder normalized = new StringBuilder(decomposed.length());
+        boolean separated = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                if (separated && !normalized.isEmpty()) {
+                    normalized.append(' ');
+                }
+                separated = false;
+                normalized.append(Character.toLowerCase(c));
+            } else {
+                separated = true;
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * @return kind of match of query in value, -1 if value does not contain query
+     */
+    static int rankOf(String value, String query) {
+        if (value.startsWith(query)) {
+            return value.length() == query.length() ? EXACT : PREFIX;
+        }
+        if (value.contains(" " + query)) {
+            return WORD_PREFIX;
+        }
+        return query.length() >= INFIX_LENGTH && value.contains(query) ? INFIX : -1;
+    }
+
+    /**
+     * searchable values of one node
+     */
+    static final class Entry {
+        final long identity;
+        final List<String> labels;
+        final String name;
+        /**
+         * value per searchable property as stored, null if the property is not a string
+         */
+        final String[] values;
+        final String[] normalized;
+
+        Entry(long identity, List<String> labels, String name, String[] values, String[] normalized) {
+            this.identity = identity;
+            this.labels = labels;
+            this.name = name;
+            this.values = values;
+            this.normalized = normalized;
+        }
+    }
+
+    /**
+     * @param property position of the matching property in search.properties
+     * @param rank     kind of match
+     */
+    record Hit(Entry entry, int property, int rank) {
+    }
+
+    /**
+     * Immutable search structures. A field is one value of one entry, its id is entry position times number of
+     * properties plus property position.
+     */
+    static final class Snapshot {
+
+        private final int propertyCount;
+        private final Entry[] entries;
+        /**
+         * normalized values and their suffixes starting at a word, sorted
+         */
+        private final String[] terms;
+        private final int[] termFields;
+        /**
+         * ascending field ids per trigram of the normalized values
+         */
+        private final Map<String, int[]> trigrams;
+        /**
+         * entries added since the snapshot was built
+         */
+        private final List<Entry> recent;
+
+        private Snapshot(int propertyCount, Entry[] entries, String[] terms, int[] termFields, Map<String, int[]> trigrams, List<Entry> recent) {
+            this.propertyCount = propertyCount;
+            this.entries = entries;
+            this.terms = terms;
+            this.termFields = termFields;
+            this.trigrams = trigrams;
+            this.recent = recent;
+        }
+
+        static Snapshot build(List<Entry> entries, int propertyCount) {
+            record Term(String text, int field) {
+            }
+
+            List<Term> termList = new ArrayList<>();
+            Map<String, Postings> postings = new HashMap<>();
+            for (int i = 0; i < entries.size(); i++) {
+                String[] values = entries.get(i).normalized;
+                for (int property = 0; property < values.length; property++) {
+                    String value = values[property];
+                    if (value == null) {
+                        continue;
+                    }
+                    int field = i * propertyCount + property;
+                    termList.add(new Term(value, field));
+                    for (int space = value.indexOf(' '); space != -1; space = value.indexOf(' ', space + 1)) {
+                        termList.add(new Term(value.substring(space + 1), field));
+                    }
+                    for (int start = 0; start + INFIX_LENGTH <= value.length(); start++) {
+                        postings.computeIfAbsent(value.substring(start, start + INFIX_LENGTH), key -> new Postings()).add(field);
+                    }
+                }
+            }
+            Term[] terms = termList.toArray(new Term[0]);
+            Arrays.parallelSort(terms, Comparator.comparing(Term::text));
+
+            String[] termTexts = new String[terms.length];
+            int[] termFields = new int[terms.length];
+            for (int i = 0; i < terms.length; i++) {
+                termTexts[i] = terms[i].text();
+                termFields[i] = terms[i].field();
+            }
+            Map<String, int[]> trigrams = new HashMap<>(postings.size() * 2);
+            postings.forEach((trigram, list) -> trigrams.put(trigram, Arrays.copyOf(list.fields, list.size)));
+
+            return new Snapshot(propertyCount, entries.toArray(new Entry[0]), termTexts, termFields, trigrams, List.of());
+        }
+
+        /**
+         * @return snapshot containing added as well, rebuilt if the list of recent entries grows too large
+         */
+        Snapshot with(List<Entry> added) {
+            List<Entry> merged = new ArrayList<>(recent.size() + added.size());
+            merged.addAll(recent);
+            merged.addAll(added);
+            if (merged.size() > Math.max(MIN_RECENT, entries.length / 16)) {
+                List<Entry> all = new ArrayList<>(entries.length + merged.size());
+                all.addAll(Arrays.asList(entries));
+                all.addAll(merged);
+                return build(all, propertyCount);
+            }
+            return new Snapshot(propertyCount, entries, terms, termFields, trigrams, List.copyOf(merged));
+        }
+
+        /**
+         * @param query  normalized query
+         * @param filter entries that may be returned, applied while scanning so that only matches passing it count
+         *               towards {@link #SCAN_LIMIT}
+         * @param limit  maximum number of hits
+         * @return best hit per entry, best hits first
+         */
+        List<Hit> search(String query, Predicate<Entry> filter, int limit) {
+            if (query.isEmpty()) {
+                return List.of();
+            }
+            Keys matches = new Keys();
+            Keys infixMatches = new Keys();
+
+            for (int i = lowerBound(query); i < terms.length && matches.size < SCAN_LIMIT && terms[i].startsWith(query); i++) {
+                int field = termFields[i];
+                int position = field / propertyCount;
+                if (!filter.test(entries[position])) {
+                    continue;
+                }
+                int property = field % propertyCount;
+                int length = entries[position].normalized[property].length();
+                int rank = terms[i].length() != length ? WORD_PREFIX : length == query.length() ? EXACT : PREFIX;
+                matches.add(keyOf(rank, property, length, position));
+            }
+            for (int i = 0; i < recent.size(); i++) {
+                if (!filter.test(recent.get(i))) {
+                    continue;
+                }
+                String[] values = recent.get(i).normalized;
+                for (int property = 0; property < values.length; property++) {
+                    int rank = values[property] == null ? -1 : rankOf(values[property], query);
+                    if (rank != -1) {
+                        (rank == INFIX ? infixMatches : matches).add(keyOf(rank, property, values[property].length(), entries.length + i));
+                    }
+                }
+            }
+
+            List<Hit> hits = new ArrayList<>(limit);
+            select(matches, limit, hits);
+            if (hits.size() < limit && query.length() >= INFIX_LENGTH) {
+                // fields containing the rarest trigram of query are checked for query itself
+                int[] candidates = rarestPostings(query);
+                int found = 0;
+                for (int i = 0; i < candidates.length && found < SCAN_LIMIT; i++) {
+                    int position = candidates[i] / propertyCount;
+                    int property = candidates[i] % propertyCount;
+                    String value = entries[position].normalized[property];
+                    if (value.contains(query) && filter.test(entries[position])) {
+                        infixMatches.add(keyOf(rankOf(value, query), property, value.length(), position));
+                        found++;
+                    }
+                }
+                select(infixMatches, limit, hits);
+            }
+            return hits;
+        }
+
+        /**
+         * sort key of a match, ordered by rank, property, length of the value and entry position
+         */
+        private static long keyOf(int rank, int property, int length, int position) {
+            return (long) rank << 60 | (long) property << 52 | (long) Math.min(length, 0xFFFFF) << 32 | position;
+        }
+
+        /**
+         * adds the best matches to hits until limit is reached, entries already contained in hits are skipped
+         */
+        private void select(Keys keys, int limit, List<Hit> hits) {
+            long[] sorted = keys.sorted();
+            for (int i = 0; i < sorted.length && hits.size() < limit; i++) {
+                int position = (int) sorted[i];
+                Entry entry = position < entries.length ? entries[position] : recent.get(position - entries.length);
+                if (contains(hits, entry)) {
+                    continue;
+                }
+                hits.add(new Hit(entry, (int) (sorted[i] >>> 52) & 0xFF, (int) (sorted[i] >>> 60)));
+            }
+        }
+
+        private static boolean contains(List<Hit> hits, Entry entry) {
+            for (Hit hit : hits) {
+                if (hit.entry() == entry) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return position of the first term not smaller than query
+         */
+        private int lowerBound(String query) {
+            int low = 0;
+            int high = terms.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (terms[mid].compareTo(query) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * @return ascending ids of the fields containing the rarest trigram of query, empty if one of its trigrams
+         * does not occur at all
+         */
+        private int[] rarestPostings(String query) {
+            int[] rarest = null;
+            for (int start = 0; start + INFIX_LENGTH <= query.length(); start++) {
+                int[] list = trigrams.get(query.substring(start, start + INFIX_LENGTH));
+                if (list == null) {
+                    return new int[0];
+                }
+                if (rarest == null || list.length < rarest.length) {
+                    rarest = list;
+                }
+            }
+            return rarest;
+        }
+    }
+
+    /**
+     * growing list of sort keys
+     */
+    private static final class Keys {
+        long[] values = new long[16];
+        int size;
+
+        void add(long key) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = key;
+        }
+
+        long[] sorted() {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+
+    /**
+     * growing list of field ids, ids are added in ascending order and a field containing a trigram twice is only
+     * added once
+     */
+    private static final class Postings {
+        int[] fields = new int[4];
+        int size;
+
+        void add(int field) {
+            if (size > 0 && fields[size - 1] == field) {
+                return;
+            }
+            if (size == fields.length) {
+                fields = Arrays.copyOf(fields, size * 2);
+            }
+            fields[size++] = field;
+        }
+    }
+}
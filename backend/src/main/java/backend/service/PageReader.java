@@ -0,0 +1,92 @@
+package backend.service;
+
+import backend.entity.NodeObject;
+import backend.entity.PageObject;
+import backend.entity.RelationshipObject;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Reads nodes and relationships page by page. Pages are ordered by identity and continue after the identity of
+ * the last item of the previous page (keyset pagination), so pages stay stable while items are added and no page
+ * has to skip over the items before it.
+ */
+@Component
+public class PageReader {
+
+    private final QueryExecutor queryExecutor;
+    private final GraphRecordMapper graphRecordMapper;
+    private final int defaultSize;
+    private final int maxSize;
+
+    public PageReader(QueryExecutor queryExecutor, GraphRecordMapper graphRecordMapper, Environment env) {
+        this.queryExecutor = queryExecutor;
+        this.graphRecordMapper = graphRecordMapper;
+        this.defaultSize = env.getProperty("page.default-size", Integer.class, 500);
+        this.maxSize = env.getProperty("page.max-size", Integer.class, 5000);
+    }
+
+    /**
+     * reads one page of nodes
+     *
+     * @param after identity of the last node of the previous page, null for the first page
+     * @param size  number of nodes, page.default-size if null, at most page.max-size
+     * @param label only nodes with this label, all nodes if null
+     * @return future of the page
+     * @throws IllegalArgumentException if label is invalid
+     */
+    public CompletableFuture<PageObject<NodeObject>> nodes(Long after, Integer size, String label) {
+        String pattern = label == null ? "(n)" : "(n:" + LabelValidator.nodeLabels(List.of(label)) + ")";
+        int limit = sizeOf(size);
+
+        return queryExecutor.readAsync("MATCH " + pattern + " WHERE ID(n) > $after RETURN n ORDER BY ID(n) LIMIT $limit",
+                        parameters(after, limit), rec -> graphRecordMapper.toNodeObject(rec.get("n").asNode()))
+                .thenApply(nodes -> page(nodes, limit, NodeObject::getIdentity));
+    }
+
+    /**
+     * reads one page of the relationships of scenario
+     *
+     * @param scenario name of scenario
+     * @param after    identity of the last relationship of the previous page, null for the first page
+     * @param size     number of relationships, page.default-size if null, at most page.max-size
+     * @return future of the page
+     */
+    public CompletableFuture<PageObject<RelationshipObject>> relationships(String scenario, Long after, Integer size) {
+        int limit = sizeOf(size);
+        Map<String, Object> params = parameters(after, limit);
+        params.put("scenario", scenario);
+
+        return queryExecutor.readAsync("MATCH (p)-[r]->(q) WHERE $scenario IN r.scenario AND ID(r) > $after RETURN p, r, q ORDER BY ID(r) LIMIT $limit",
+                        params, graphRecordMapper.relationshipMapper())
+                .thenApply(relationships -> page(relationships, limit, RelationshipObject::getIdentity));
+    }
+
+    int sizeOf(Integer size) {
+        return size == null ? defaultSize : Math.max(1, Math.min(size, maxSize));
+    }
+
+    /**
+     * @param limit page size, one more item is read to know whether there is a next page
+     */
+    private static Map<String, Object> parameters(Long after, int limit) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("after", after == null ? -1L : after);
+        params.put("limit", limit + 1);
+        return params;
+    }
+
+    static <T> PageObject<T> page(List<T> items, int size, Function<T, String> identity) {
+        if (items.size() <= size) {
+            return new PageObject<>(items, null);
+        }
+        List<T> page = items.subList(0, size);
+        return new PageObject<>(page, identity.apply(page.get(size - 1)));
+    }
+}
@@ -0,0 +1,83 @@
+package backend.service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Validates property values before they are written with SET n = $props. Neo4j only stores scalars and lists of
+ * scalars of one type, a single value it rejects fails the whole UNWIND query of a chunk, so batches check every
+ * item before it is queued.
+ */
+public final class PropertyValidator {
+
+    private PropertyValidator() {
+    }
+
+    /**
+     * @param props properties of a node or relationship, may be null
+     * @throws IllegalArgumentException naming the first property that can't be stored
+     */
+    public static void validate(Map<String, Object> props) {
+        if (props == null) {
+            return;
+        }
+        for (Map.Entry<String, Object> entry : props.entrySet()) {
+            if (!storable(entry.getValue())) {
+                throw new IllegalArgumentException("property " + entry.getKey() + " can't be stored, values must be strings, numbers, " +
+                        "booleans or lists of one of them");
+            }
+        }
+    }
+
+    /**
+     * @param props properties of a node or relationship, may be null
+     * @return props without the values that can't be stored, props itself if all can be stored
+     */
+    public static Map<String, Object> storable(Map<String, Object> props) {
+        if (props == null || props.values().stream().allMatch(PropertyValidator::storable)) {
+            return props;
+        }
+        Map<String, Object> kept = new LinkedHashMap<>();
+        props.forEach((key, value) -> {
+            if (storable(value)) {
+                kept.put(key, value);
+            }
+        });
+        return kept;
+    }
+
+    /**
+     * @param value property value as read from json, null removes the property and is storable
+     * @return if neo4j stores the value
+     */
+    static boolean storable(Object value) {
+        if (value == null) {
+            return true;
+        }
+        if (value instanceof List<?> list) {
+            if (list.isEmpty()) {
+                return true;
+            }
+            int kind = kindOf(list.get(0));
+            return kind != 0 && list.stream().allMatch(element -> kindOf(element) == kind);
+        }
+        return kindOf(value) != 0;
+    }
+
+    /**
+     * @return kind of scalar, 0 if the value is no storable scalar
+     */
+    private static int kindOf(Object value) {
+        if (value instanceof String) {
+            return 1;
+        } else if (value instanceof Boolean) {
+            return 2;
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return 3;
+        } else if (value instanceof Double || value instanceof Float) {
+            return 4;
+        }
+        return 0;
+    }
+}
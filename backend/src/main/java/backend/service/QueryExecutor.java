@@ -0,0 +1,474 @@
+package backend.service;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.AccessMode;
+import org.neo4j.driver.Bookmark;
+import org.neo4j.driver.BookmarkManager;
+import org.neo4j.driver.BookmarkManagerConfig;
+import org.neo4j.driver.BookmarkManagers;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Result;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.SessionConfig;
+import org.neo4j.driver.TransactionCallback;
+import org.neo4j.driver.async.AsyncSession;
+import org.neo4j.driver.async.ResultCursor;
+import org.neo4j.driver.exceptions.RetryableException;
+import org.neo4j.driver.summary.ResultSummary;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs all queries of the backend. Every execution is recorded in the {@link QueryMetrics} under the endpoint it
+ * was run for, executions slower than query.slow-threshold-ms are logged together with their parameters.
+ * <p>
+ * Reads and writes run as transaction functions, so they are retried on transient errors. The async variants run
+ * on async sessions and don't block the calling thread, endpoints return the futures to spring, which completes
+ * the request asynchronously. Streamed results are read in an auto commit transaction, because records are
+ * written to the client while they are read. They are only retried if they fail before the first record is read.
+ * <p>
+ * Sessions are opened in the access mode of their queries, so reads can be routed to read replicas when connecting
+ * with a neo4j:// uri. Reads of requests only wait for the bookmarks the client sends in the {@link #BOOKMARK_HEADER}
+ * header, clients receive the bookmark of their writes in the same header to read their own writes through any
+ * backend instance. Writes, the loaders of the in memory indexes ({@link #forEach}), queries outside of requests and
+ * reads of cached responses ({@link #readLatestAsync}) share one bookmark manager, they wait for all writes committed
+ * through this backend, which keeps indexes and caches consistent with the graph version.
+ */
+@Component
+@Slf4j
+public class QueryExecutor {
+
+    /**
+     * endpoint name of queries that are not run for a request, e.g. loading the in memory indexes on startup
+     */
+    public static final String BACKGROUND = "background";
+
+    /**
+     * response header carrying the bookmark of a write, request header of bookmarks the queries of a request wait for
+     */
+    public static final String BOOKMARK_HEADER = "X-Neo4j-Bookmark";
+
+    private static final int MAX_LOGGED_PARAMETERS_LENGTH = 1000;
+    private static final int STREAM_ATTEMPTS = 3;
+    private static final long STREAM_RETRY_DELAY_MS = 200;
+
+    private final Driver driver;
+    private final QueryMetrics queryMetrics;
+    private final long slowThresholdNanos;
+    private final boolean logParameters;
+    private final BookmarkManager bookmarkManager = BookmarkManagers.defaultManager(BookmarkManagerConfig.builder().build());
+
+    public QueryExecutor(Driver driver, QueryMetrics queryMetrics, Environment env) {
+        this.driver = driver;
+        this.queryMetrics = queryMetrics;
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(env.getProperty("query.slow-threshold-ms", Long.class, 1000L));
+        this.logParameters = env.getProperty("query.slow-log-parameters", Boolean.class, true);
+    }
+
+    /**
+     * runs read query in a read transaction and maps all records
+     *
+     * @param query      cypher query
+     * @param parameters query parameters
+     * @param mapper     maps one record
+     * @return all mapped records
+     */
+    public <T> List<T> read(String query, Map<String, Object> parameters, Function<Record, T> mapper) {
+        return execute(query, parameters, mapper, false);
+    }
+
+    /**
+     * runs write query in a write transaction and maps all records
+     *
+     * @param query      cypher query
+     * @param parameters query parameters
+     * @param mapper     maps one record
+     * @return all mapped records, after the transaction is committed
+     */
+    public <T> List<T> write(String query, Map<String, Object> parameters, Function<Record, T> mapper) {
+        return execute(query, parameters, mapper, true);
+    }
+
+    /**
+     * runs write query once in an auto commit transaction, without retrying transient errors. Used for schema
+     * changes on startup, which should not wait for an unreachable database.
+     *
+     * @param query      cypher query
+     * @param parameters query parameters
+     */
+    public void writeOnce(String query, Map<String, Object> parameters) {
+        String endpoint = currentEndpoint();
+        long start = System.nanoTime();
+
+        try (Session session = driver.session(sessionConfig(AccessMode.WRITE, true))) {
+            ResultSummary summary = session.run(query, parameters).consume();
+            record(endpoint, query, parameters, start, 0, summary);
+        } catch (RuntimeException e) {
+            record(endpoint, query, parameters, start, 0, null);
+            throw e;
+        }
+    }
+
+    /**
+     * runs read query on an async session and maps all records
+     *
+     * @param query      cypher query
+     * @param parameters query parameters
+     * @param mapper     maps one record
+     * @return future of all mapped records, the session is closed once the result is read
+     */
+    public <T> CompletableFuture<List<T>> readAsync(String query, Map<String, Object> parameters, Function<Record, T> mapper) {
+        return executeAsync(currentEndpoint(), query, parameters, mapper, false, false);
+    }
+
+    /**
+     * runs read query on an async session after all writes committed through this backend, for results that are
+     * cached for the current graph version
+     *
+     * @param query      cypher query
+     * @param parameters query parameters
+     * @param mapper     maps one record
+     * @return future of all mapped records, the session is closed once the result is read
+     */
+    public <T> CompletableFuture<List<T>> readLatestAsync(String query, Map<String, Object> parameters, Function<Record, T> mapper) {
+        return executeAsync(currentEndpoint(), query, parameters, mapper, false, true);
+    }
+
+    /**
+     * runs read query on an async session for endpoint and maps all records, used for queries that are started
+     * from callbacks of earlier queries, where the request is not known
+     *
+     * @param endpoint   endpoint the query is run for, see {@link #currentEndpoint()}
+     * @param query      cypher query
+     * @param parameters query parameters
+     * @param mapper     maps one record
+     * @return future of all mapped records, the session is closed once the result is read
+     */
+    public <T> CompletableFuture<List<T>> readAsync(String endpoint, String query, Map<String, Object> parameters, Function<Record, T> mapper) {
+        return executeAsync(endpoint, query, parameters, mapper, false, false);
+    }
+
+    /**
+     * runs write query on an async session and maps all records
+     *
+     * @param query      cypher query
+     * @param parameters query parameters
+     * @param mapper     maps one record
+     * @return future of all mapped records, the session is closed once the transaction is committed
+     */
+    public <T> CompletableFuture<List<T>> writeAsync(String query, Map<String, Object> parameters, Function<Record, T> mapper) {
+        return executeAsync(currentEndpoint(), query, parameters, mapper, true, true);
+    }
+
+    /**
+     * runs read query and hands the records to handler while they are read. A query failing with a transient error
+     * before handler read the first record is retried.
+     *
+     * @param endpoint   endpoint the query is run for, see {@link #currentEndpoint()}
+     * @param query      cypher query
+     * @param parameters query parameters
+     * @param handler    consumes the records
+     * @return value returned by handler
+     * @throws IOException if handler fails to write the records
+     */
+    public <R> R stream(String endpoint, String query, Map<String, Object> parameters, ResultHandler<R> handler) throws IOException {
+        return stream(endpoint, query, parameters, handler, false);
+    }
+
+    /**
+     * runs read query for the current request and hands the records to handler while they are read
+     *
+     * @param query      cypher query
+     * @param parameters query parameters
+     * @param handler    consumes the records
+     * @return value returned by handler
+     * @throws IOException if handler fails to write the records
+     */
+    public <R> R stream(String query, Map<String, Object> parameters, ResultHandler<R> handler) throws IOException {
+        return stream(currentEndpoint(), query, parameters, handler, false);
+    }
+
+    /**
+     * runs read query after all writes committed through this backend and hands every record to consumer while
+     * they are read, for loading the in memory indexes
+     *
+     * @param query      cypher query
+     * @param parameters query parameters
+     * @param consumer   consumes one record
+     * @return number of records read
+     */
+    public long forEach(String query, Map<String, Object> parameters, Consumer<Record> consumer) {
+        try {
+            return stream(currentEndpoint(), query, parameters, records -> {
+                long count = 0;
+                while (records.hasNext()) {
+                    consumer.accept(records.next());
+                    count++;
+                }
+                return count;
+            }, true);
+        } catch (IOException e) {
+            // the handler above does not do any io
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private <R> R stream(String endpoint, String query, Map<String, Object> parameters, ResultHandler<R> handler, boolean latest) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            long start = System.nanoTime();
+            CountingIterator rows = null;
+
+            try (Session session = driver.session(sessionConfig(AccessMode.READ, latest))) {
+                Result result = session.run(query, parameters);
+                rows = new CountingIterator(result);
+                R value = handler.handle(rows);
+                ResultSummary summary = result.consume();
+
+                record(endpoint, query, parameters, start, rows.count, summary);
+                return value;
+            } catch (IOException | RuntimeException e) {
+                long read = rows == null ? 0 : rows.count;
+                record(endpoint, query, parameters, start, read, null);
+                // nothing was handed to handler yet, so nothing was written to the client
+                if (read > 0 || !(e instanceof RetryableException) || attempt == STREAM_ATTEMPTS) {
+                    throw e;
+                }
+                log.warn("retrying streamed query for {} after transient error: {}", endpoint, e.getMessage());
+                try {
+                    Thread.sleep(STREAM_RETRY_DELAY_MS * attempt);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * get the endpoint of the request handled by the current thread. Streaming response bodies are written on
+     * another thread, they have to resolve the endpoint before returning the body.
+     *
+     * @return http method and request mapping, {@link #BACKGROUND} outside of requests
+     */
+    public static String currentEndpoint() {
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+            return endpointOf(attributes.getRequest());
+        }
+        return BACKGROUND;
+    }
+
+    /**
+     * @param request servlet request
+     * @return http method and request mapping of request
+     */
+    public static String endpointOf(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        // unmapped requests are grouped, so arbitrary paths can't create new entries
+        return request.getMethod() + " " + (pattern == null ? "unmapped" : pattern);
+    }
+
+    private <T> List<T> execute(String query, Map<String, Object> parameters, Function<Record, T> mapper, boolean write) {
+        String endpoint = currentEndpoint();
+        long start = System.nanoTime();
+
+        try (Session session = driver.session(sessionConfig(write ? AccessMode.WRITE : AccessMode.READ, write))) {
+            TransactionCallback<Outcome<T>> work = tx -> {
+                Result result = tx.run(query, parameters);
+                List<T> records = result.list(mapper);
+                return new Outcome<>(records, result.consume());
+            };
+            Outcome<T> outcome = write ? session.executeWrite(work) : session.executeRead(work);
+            if (write) {
+                sendBookmarks(currentResponse(), session.lastBookmarks());
+            }
+
+            record(endpoint, query, parameters, start, outcome.records().size(), outcome.summary());
+            return outcome.records();
+        } catch (RuntimeException e) {
+            record(endpoint, query, parameters, start, 0, null);
+            throw e;
+        }
+    }
+
+    private <T> CompletableFuture<List<T>> executeAsync(String endpoint, String query, Map<String, Object> parameters, Function<Record, T> mapper,
+                                                        boolean write, boolean latest) {
+        long start = System.nanoTime();
+        // resolved on the calling thread, the request is not known on the driver's threads
+        HttpServletResponse response = currentResponse();
+
+        AsyncSession session = driver.session(AsyncSession.class, sessionConfig(write ? AccessMode.WRITE : AccessMode.READ, latest));
+        CompletionStage<Outcome<T>> work;
+        if (write) {
+            work = session.executeWriteAsync(tx -> tx.runAsync(query, parameters).thenCompose(cursor -> readAll(cursor, mapper)))
+                    .thenApply(outcome -> {
+                        // set before the future completes, so the header is sent with the response
+                        sendBookmarks(response, session.lastBookmarks());
+                        return outcome;
+                    });
+        } else {
+            work = session.executeReadAsync(tx -> tx.runAsync(query, parameters).thenCompose(cursor -> readAll(cursor, mapper)));
+        }
+
+        return closeAfter(session, work)
+                .whenComplete((outcome, error) -> record(endpoint, query, parameters, start,
+                        outcome == null ? 0 : outcome.records().size(), outcome == null ? null : outcome.summary()))
+                .thenApply(Outcome::records);
+    }
+
+    /**
+     * @param latest if true the session waits for all writes committed through this backend, otherwise only for the
+     *               bookmarks sent with the request. Queries outside of requests always wait.
+     */
+    private SessionConfig sessionConfig(AccessMode accessMode, boolean latest) {
+        SessionConfig.Builder config = SessionConfig.builder()
+                .withDefaultAccessMode(accessMode)
+                .withBookmarks(requestBookmarks());
+        if (latest || RequestContextHolder.getRequestAttributes() == null) {
+            config.withBookmarkManager(bookmarkManager);
+        }
+        return config.build();
+    }
+
+    /**
+     * @return bookmarks sent with the request handled by the current thread, none outside of requests
+     */
+    private static Set<Bookmark> requestBookmarks() {
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+            return parseBookmarks(attributes.getRequest().getHeaders(BOOKMARK_HEADER));
+        }
+        return Set.of();
+    }
+
+    /**
+     * @param headers values of the bookmark header, every value may contain several comma separated bookmarks
+     * @return bookmarks contained in headers
+     */
+    static Set<Bookmark> parseBookmarks(Enumeration<String> headers) {
+        if (headers == null) {
+            return Set.of();
+        }
+        Set<Bookmark> bookmarks = new LinkedHashSet<>();
+        for (String header : Collections.list(headers)) {
+            for (String value : header.split(",")) {
+                if (!value.isBlank()) {
+                    bookmarks.add(Bookmark.from(value.trim()));
+                }
+            }
+        }
+        return bookmarks;
+    }
+
+    /**
+     * @return response of the request handled by the current thread, null outside of requests
+     */
+    private static HttpServletResponse currentResponse() {
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+            return attributes.getResponse();
+        }
+        return null;
+    }
+
+    /**
+     * sets the bookmark header of response, later writes of the same request replace the bookmarks of earlier ones
+     * since their sessions already waited for them
+     */
+    private static void sendBookmarks(HttpServletResponse response, Set<Bookmark> bookmarks) {
+        if (response == null || response.isCommitted() || bookmarks.isEmpty()) {
+            return;
+        }
+        Set<String> values = new LinkedHashSet<>();
+        for (Bookmark bookmark : bookmarks) {
+            values.add(bookmark.value());
+        }
+        response.setHeader(BOOKMARK_HEADER, String.join(",", values));
+    }
+
+    private <T> CompletionStage<Outcome<T>> readAll(ResultCursor cursor, Function<Record, T> mapper) {
+        return cursor.listAsync(mapper).thenCompose(records -> cursor.consumeAsync().thenApply(summary -> new Outcome<>(records, summary)));
+    }
+
+    private <T> CompletableFuture<T> closeAfter(AsyncSession session, CompletionStage<T> result) {
+        return result.handle((value, error) -> session.closeAsync()
+                        .handle((closed, closeError) -> {
+                            if (error != null) {
+                                throw error instanceof RuntimeException runtime ? runtime : new IllegalStateException(error);
+                            }
+                            return value;
+                        }))
+                .thenCompose(Function.identity())
+                .toCompletableFuture();
+    }
+
+    private void record(String endpoint, String query, Map<String, Object> parameters, long start, long rows, ResultSummary summary) {
+        long nanos = System.nanoTime() - start;
+        queryMetrics.recordQuery(endpoint, query, nanos, rows, summary);
+
+        if (nanos >= slowThresholdNanos) {
+            log.warn("slow query for {} took {} ms and returned {} rows: {} parameters: {}", endpoint,
+                    TimeUnit.NANOSECONDS.toMillis(nanos), rows, query, logParameters ? describe(parameters) : "(not logged)");
+        }
+    }
+
+    private static String describe(Map<String, Object> parameters) {
+        String description = String.valueOf(parameters);
+        return description.length() <= MAX_LOGGED_PARAMETERS_LENGTH
+                ? description
+                : description.substring(0, MAX_LOGGED_PARAMETERS_LENGTH) + "... (" + description.length() + " characters)";
+    }
+
+    /**
+     * consumes the records of a streamed query
+     */
+    @FunctionalInterface
+    public interface ResultHandler<R> {
+        R handle(Iterator<Record> records) throws IOException;
+    }
+
+    private record Outcome<T>(List<T> records, ResultSummary summary) {
+    }
+
+    /**
+     * counts the records pulled by a result handler
+     */
+    private static final class CountingIterator implements Iterator<Record> {
+        private final Iterator<Record> records;
+        private long count = 0;
+
+        CountingIterator(Iterator<Record> records) {
+            this.records = records;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return records.hasNext();
+        }
+
+        @Override
+        public Record next() {
+            Record record = records.next();
+            count++;
+            return record;
+        }
+    }
+}
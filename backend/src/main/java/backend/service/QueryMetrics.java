@@ -0,0 +1,146 @@
+package backend.service;
+
+import backend.entity.QueryStatsObject;
+import backend.entity.ResponseStatsObject;
+import org.neo4j.driver.summary.ResultSummary;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of all queries run through the {@link QueryExecutor}, grouped by endpoint and query, and of the
+ * response sizes per endpoint. Latencies are counted in fixed buckets, so recording never allocates.
+ */
+@Component
+public class QueryMetrics {
+
+    /**
+     * upper bounds of the latency buckets in milliseconds, a last bucket counts everything slower
+     */
+    static final long[] BUCKETS_MS = {1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    private final Map<Key, QueryStats> queries = new ConcurrentHashMap<>();
+    private final Map<String, ResponseStats> responses = new ConcurrentHashMap<>();
+
+    /**
+     * records one query execution
+     *
+     * @param endpoint request mapping the query was run for
+     * @param query    cypher query
+     * @param nanos    time from starting the query until the result was read completely
+     * @param rows     number of records read
+     * @param summary  result summary, null if the query failed
+     */
+    public void recordQuery(String endpoint, String query, long nanos, long rows, ResultSummary summary) {
+        QueryStats stats = queries.computeIfAbsent(new Key(endpoint, query), key -> new QueryStats());
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+
+        stats.count.increment();
+        stats.rows.add(rows);
+        stats.totalNanos.add(nanos);
+        stats.maxNanos.accumulate(nanos);
+        stats.buckets.incrementAndGet(bucketOf(millis));
+        if (summary == null) {
+            stats.errors.increment();
+        } else {
+            stats.availableAfterMillis.add(Math.max(0, summary.resultAvailableAfter(TimeUnit.MILLISECONDS)));
+            stats.consumedAfterMillis.add(Math.max(0, summary.resultConsumedAfter(TimeUnit.MILLISECONDS)));
+        }
+    }
+
+    /**
+     * records the size of one response body
+     *
+     * @param endpoint request mapping that created the response
+     * @param bytes    number of bytes written to the response body
+     */
+    public void recordResponse(String endpoint, long bytes) {
+        ResponseStats stats = responses.computeIfAbsent(endpoint, key -> new ResponseStats());
+        stats.count.increment();
+        stats.totalBytes.add(bytes);
+        stats.maxBytes.accumulate(bytes);
+    }
+
+    /**
+     * @return statistics of all queries, slowest total time first
+     */
+    public List<QueryStatsObject> queries() {
+        List<QueryStatsObject> result = new ArrayList<>();
+        queries.forEach((key, stats) -> {
+            long count = stats.count.sum();
+            long total = TimeUnit.NANOSECONDS.toMillis(stats.totalNanos.sum());
+
+            Map<String, Long> histogram = new LinkedHashMap<>();
+            for (int i = 0; i < BUCKETS_MS.length; i++) {
+                histogram.put("le" + BUCKETS_MS[i] + "ms", stats.buckets.get(i));
+            }
+            histogram.put("inf", stats.buckets.get(BUCKETS_MS.length));
+
+            result.add(new QueryStatsObject(key.endpoint(), key.query(), count, stats.errors.sum(), stats.rows.sum(), total,
+                    count == 0 ? 0 : (double) total / count, TimeUnit.NANOSECONDS.toMillis(stats.maxNanos.get()),
+                    stats.availableAfterMillis.sum(), stats.consumedAfterMillis.sum(), histogram));
+        });
+        result.sort(Comparator.comparingLong(QueryStatsObject::getTotalMillis).reversed());
+        return result;
+    }
+
+    /**
+     * @return response sizes of all endpoints, largest total first
+     */
+    public List<ResponseStatsObject> responses() {
+        List<ResponseStatsObject> result = new ArrayList<>();
+        responses.forEach((endpoint, stats) -> {
+            long count = stats.count.sum();
+            long total = stats.totalBytes.sum();
+            result.add(new ResponseStatsObject(endpoint, count, total, count == 0 ? 0 : (double) total / count, stats.maxBytes.get()));
+        });
+        result.sort(Comparator.comparingLong(ResponseStatsObject::getTotalBytes).reversed());
+        return result;
+    }
+
+    /**
+     * removes all statistics
+     */
+    public void clear() {
+        queries.clear();
+        responses.clear();
+    }
+
+    static int bucketOf(long millis) {
+        for (int i = 0; i < BUCKETS_MS.length; i++) {
+            if (millis <= BUCKETS_MS[i]) {
+                return i;
+            }
+        }
+        return BUCKETS_MS.length;
+    }
+
+    private record Key(String endpoint, String query) {
+    }
+
+    private static final class QueryStats {
+        final LongAdder count = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder rows = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        final LongAdder availableAfterMillis = new LongAdder();
+        final LongAdder consumedAfterMillis = new LongAdder();
+        final AtomicLongArray buckets = new AtomicLongArray(BUCKETS_MS.length + 1);
+    }
+
+    private static final class ResponseStats {
+        final LongAdder count = new LongAdder();
+        final LongAdder totalBytes = new LongAdder();
+        final LongAccumulator maxBytes = new LongAccumulator(Math::max, 0);
+    }
+}
@@ -0,0 +1,147 @@
+package backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Encodes response objects as json or as Smile, a binary json encoding. Smile refers back to property names and
+ * short string values (labels, relationship types, scenario names) that were already written instead of repeating
+ * them, which makes responses containing many similar nodes considerably smaller.
+ * <p>
+ * Endpoints returning objects are encoded by spring, see {@link backend.config.WebConfig}. Endpoints serving
+ * cached bodies select the encoding with {@link #negotiate}.
+ */
+@Component
+public class ResponseEncoder {
+
+    public static final String SMILE_VALUE = "application/x-jackson-smile";
+    public static final MediaType SMILE = MediaType.valueOf(SMILE_VALUE);
+
+    private final ObjectMapper jsonMapper;
+    private final ObjectMapper smileMapper;
+
+    public ResponseEncoder(ObjectMapper objectMapper) {
+        this.jsonMapper = objectMapper;
+        this.smileMapper = objectMapper.copyWith(smileFactory());
+    }
+
+    /**
+     * selects the encoding for an Accept header, Smile is only used if it is requested explicitly and
+     * preferred over json
+     *
+     * @param accept Accept header of the request, may be null
+     * @return {@link #SMILE} or {@link MediaType#APPLICATION_JSON}
+     */
+    public MediaType negotiate(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return MediaType.APPLICATION_JSON;
+        }
+        List<MediaType> accepted;
+        try {
+            accepted = MediaType.parseMediaTypes(accept);
+        } catch (IllegalArgumentException e) {
+            return MediaType.APPLICATION_JSON;
+        }
+
+        double smile = 0;
+        double json = 0;
+        for (MediaType type : accepted) {
+            if (!type.isWildcardType() && !type.isWildcardSubtype() && type.isCompatibleWith(SMILE)) {
+                smile = Math.max(smile, type.getQualityValue());
+            } else if (type.includes(MediaType.APPLICATION_JSON)) {
+                json = Math.max(json, type.getQualityValue());
+            }
+        }
+        return smile > json ? SMILE : MediaType.APPLICATION_JSON;
+    }
+
+    /**
+     * checks whether an Accept-Encoding header allows gzip, either by naming it or by the * wildcard, with a
+     * quality value above 0. An explicit gzip entry takes precedence over the wildcard.
+     *
+     * @param acceptEncoding Accept-Encoding header of the request, may be null
+     * @return if the response may be gzip compressed
+     */
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        double gzip = -1;
+        double wildcard = -1;
+        for (String element : acceptEncoding.split(",")) {
+            String[] parts = element.split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+            double quality = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (coding.equals("gzip")) {
+                gzip = Math.max(gzip, quality);
+            } else if (coding.equals("*")) {
+                wildcard = Math.max(wildcard, quality);
+            }
+        }
+        return (gzip >= 0 ? gzip : wildcard) > 0;
+    }
+
+    /**
+     * @param body response body
+     * @return strong entity tag derived from the body content
+     */
+    public static String etagOf(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, 22) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            // every java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param value     response object
+     * @param mediaType encoding selected by {@link #negotiate}
+     * @return encoded value
+     */
+    public byte[] encode(Object value, MediaType mediaType) {
+        try {
+            return mapperFor(mediaType).writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("could not encode " + value.getClass().getSimpleName() + " as " + mediaType, e);
+        }
+    }
+
+    /**
+     * @param mediaType {@link #SMILE} or json
+     * @return object mapper writing this encoding, configured like the application's json mapper
+     */
+    public ObjectMapper mapperFor(MediaType mediaType) {
+        return SMILE.equalsTypeAndSubtype(mediaType) ? smileMapper : jsonMapper;
+    }
+
+    /**
+     * @return smile factory that also shares repeated string values, property names are shared by default
+     */
+    public static SmileFactory smileFactory() {
+        return SmileFactory.builder()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                .build();
+    }
+}
@@ -0,0 +1,89 @@
+package backend.service;
+
+import backend.entity.GraphObject;
+import backend.entity.NodeObject;
+import backend.entity.ScenarioBundleObject;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the hierarchy maps the frontend needs to open a scenario. The maps are built for the nodes of the scenario
+ * graph they are sent with, so graph and hierarchy always describe the same nodes.
+ */
+@Component
+public class ScenarioBundleBuilder {
+
+    /**
+     * @param graph     normalized scenario graph
+     * @param hierarchy includes hierarchy
+     * @return graph with hierarchy maps of its nodes
+     */
+    public ScenarioBundleObject build(GraphObject graph, HierarchyIndex.Snapshot hierarchy) {
+        long[] nodes = new long[graph.getNodes().size()];
+        int i = 0;
+        for (NodeObject node : graph.getNodes()) {
+            nodes[i++] = Long.parseLong(node.getIdentity());
+        }
+
+        Map<String, List<String>> byParent = byParent(nodes, hierarchy);
+        Map<String, String> byChildren = byChildren(nodes, hierarchy);
+        return new ScenarioBundleObject(graph, byParent, byChildren, rootOf(byParent, byChildren, hierarchy));
+    }
+
+    /**
+     * @param nodes     identities of the nodes of a scenario
+     * @param hierarchy includes hierarchy
+     * @return all ancestors of nodes with the nodes below them
+     */
+    public static Map<String, List<String>> byParent(long[] nodes, HierarchyIndex.Snapshot hierarchy) {
+        Map<String, List<String>> byParent = new HashMap<>();
+        for (long child : nodes) {
+            for (long ancestor : hierarchy.ancestorsOf(child)) {
+                byParent.computeIfAbsent(String.valueOf(ancestor), key -> new ArrayList<>()).add(String.valueOf(child));
+            }
+        }
+        return byParent;
+    }
+
+    /**
+     * @param nodes     identities of the nodes of a scenario
+     * @param hierarchy includes hierarchy
+     * @return nodes having a parent with their direct parent
+     */
+    public static Map<String, String> byChildren(long[] nodes, HierarchyIndex.Snapshot hierarchy) {
+        Map<String, String> byChildren = new HashMap<>();
+        for (long child : nodes) {
+            long parent = hierarchy.parentOf(child);
+            if (parent != -1) {
+                byChildren.put(String.valueOf(child), String.valueOf(parent));
+            }
+        }
+        return byChildren;
+    }
+
+    /**
+     * maps all descendants of the root nodes to their root, the roots are the parents that are not a child within
+     * the scenario. Descendants below several roots are mapped to the topmost one.
+     */
+    static Map<String, String> rootOf(Map<String, List<String>> byParent, Map<String, String> byChildren, HierarchyIndex.Snapshot hierarchy) {
+        List<Long> roots = byParent.keySet().stream()
+                .filter(parent -> !byChildren.containsKey(parent))
+                .map(Long::parseLong)
+                .sorted(Comparator.comparingInt(hierarchy::depthOf))
+                .toList();
+
+        Map<String, String> rootOf = new HashMap<>();
+        for (long root : roots) {
+            String rootIdentity = String.valueOf(root);
+            for (long descendant : hierarchy.descendantsOf(root)) {
+                rootOf.putIfAbsent(String.valueOf(descendant), rootIdentity);
+            }
+        }
+        return rootOf;
+    }
+}
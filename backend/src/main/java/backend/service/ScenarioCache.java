@@ -0,0 +1,103 @@
+package backend.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+
+/**
+ * Cache of serialized scenario responses. Entries are tagged with the {@link GraphVersion} they were read at and
+ * are treated as missing once the graph changed. The cache is bounded by the total size of the cached bodies,
+ * least recently used entries are evicted first.
+ */
+@Component
+@Slf4j
+public class ScenarioCache {
+
+    private final GraphVersion graphVersion;
+    private final long maxBytes;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes = 0;
+
+    public ScenarioCache(GraphVersion graphVersion, Environment env) {
+        this.graphVersion = graphVersion;
+        this.maxBytes = env.getProperty("scenario.cache.max-bytes", Long.class, 64L * 1024 * 1024);
+    }
+
+    /**
+     * get cached body for key or load it asynchronously and cache it, if there is no entry for the current graph
+     * version
+     *
+     * @param key    cache key, including the kind of response and the scenario name
+     * @param loader starts reading and serializing the response body
+     * @return future of entry for the graph version at the time of the call
+     */
+    public CompletableFuture<Entry> getAsync(String key, Supplier<CompletionStage<byte[]>> loader) {
+        long version = graphVersion.current();
+        Entry cached = lookup(key, version);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        return loader.get().thenApply(body -> store(key, new Entry(version, body))).toCompletableFuture();
+    }
+
+    private synchronized Entry lookup(String key, long version) {
+        Entry entry = entries.get(key);
+        return entry != null && entry.version() == version ? entry : null;
+    }
+
+    private synchronized Entry store(String key, Entry entry) {
+        if (entry.body().length <= maxBytes) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                totalBytes -= previous.body().length;
+            }
+            totalBytes += entry.body().length;
+            evict();
+        } else {
+            log.info("response for {} is larger than the scenario cache and is not cached", key);
+        }
+        return entry;
+    }
+
+    /**
+     * removes all entries
+     */
+    public synchronized void clear() {
+        entries.clear();
+        totalBytes = 0;
+    }
+
+    /**
+     * @return total size of cached bodies in bytes
+     */
+    public synchronized long size() {
+        return totalBytes;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            totalBytes -= iterator.next().getValue().body().length;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Cached response body with its strong entity tag, derived from the body content
+     */
+    public record Entry(long version, byte[] body, String etag) {
+
+        Entry(long version, byte[] body) {
+            this(version, body, ResponseEncoder.etagOf(body));
+        }
+    }
+}
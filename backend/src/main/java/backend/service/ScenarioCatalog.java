@@ -0,0 +1,314 @@
+package backend.service;
+
+import backend.entity.ScenarioStatsObject;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.exceptions.Neo4jException;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * In memory catalog of all scenarios, containing the number of relationships and the nodes of every scenario and
+ * the graph version it was last changed at. The catalog is built once the application is ready and updated
+ * whenever relationships are added through the backend, so scenario names and sizes are answered without scanning
+ * all relationships.
+ */
+@Component
+@Slf4j
+public class ScenarioCatalog {
+
+    /**
+     * time between attempts to replace a provisional catalog by the database content
+     */
+    static final long RETRY_MS = 30_000;
+
+    private final QueryExecutor queryExecutor;
+    private final GraphVersion graphVersion;
+
+    private final Object lock = new Object();
+    /**
+     * held while the catalog is loaded from the database, taken before lock
+     */
+    private final Object loadLock = new Object();
+    private Map<String, Entry> scenarios;
+    /**
+     * relationships added while a load is running, added to the loaded catalog once it finished
+     */
+    private List<Added> replay;
+    /**
+     * set while the catalog holds the content of a snapshot file instead of the database
+     */
+    private volatile boolean provisional;
+    /**
+     * earliest time in milliseconds a provisional catalog is loaded again on access
+     */
+    private volatile long retryAt;
+
+    public ScenarioCatalog(QueryExecutor queryExecutor, GraphVersion graphVersion) {
+        this.queryExecutor = queryExecutor;
+        this.graphVersion = graphVersion;
+    }
+
+    /**
+     * builds the catalog on startup, failing to reach the database is logged and loading is retried on first use
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        try {
+            reload();
+        } catch (Neo4jException e) {
+            log.warn("could not load scenario catalog on startup: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * reads the scenarios of all relationships from the database and rebuilds the catalog. Relationships added
+     * while the query runs are kept and added to the loaded ones unless the query returned them as well.
+     */
+    public void reload() {
+        synchronized (loadLock) {
+            synchronized (lock) {
+                replay = new ArrayList<>();
+            }
+
+            long version = graphVersion.current();
+            Map<String, Entry> loaded = new TreeMap<>();
+            Identities identities = new Identities();
+            try {
+                queryExecutor.forEach("MATCH (p)-[r]->(q) WHERE r.scenario IS NOT NULL RETURN ID(r) AS identity, r.scenario AS scenario, ID(p) AS source, ID(q) AS target",
+                        Map.of(), record -> {
+                            identities.add(record.get("identity").asLong());
+                            add(loaded, record.get("scenario").asObject(), record.get("source").asLong(), record.get("target").asLong(), version);
+                        });
+            } catch (RuntimeException e) {
+                synchronized (lock) {
+                    replay = null;
+                }
+                retryAt = System.currentTimeMillis() + RETRY_MS;
+                throw e;
+            }
+
+            synchronized (lock) {
+                if (!replay.isEmpty()) {
+                    identities.sort();
+                    for (Added added : replay) {
+                        if (!identities.contains(added.identity())) {
+                            add(loaded, added.scenario(), added.source(), added.target(), added.version());
+                        }
+                    }
+                }
+                replay = null;
+                scenarios = loaded;
+                provisional = false;
+            }
+            log.info("scenario catalog built with {} scenarios", loaded.size());
+        }
+    }
+
+    /**
+     * fills the catalog from a snapshot file before it is loaded from the database, does nothing once it is loaded.
+     * Until a load succeeds, access retries loading every RETRY_MS.
+     *
+     * @param loaded scenarios by name, see {@link #add}
+     */
+    void warm(Map<String, Entry> loaded) {
+        synchronized (lock) {
+            if (scenarios == null) {
+                scenarios = loaded;
+                provisional = true;
+                // the load on startup follows
+                retryAt = System.currentTimeMillis() + RETRY_MS;
+                log.info("scenario catalog warmed with {} scenarios", loaded.size());
+            }
+        }
+    }
+
+    /**
+     * adds a newly created relationship to the catalog
+     *
+     * @param identity identity of the relationship
+     * @param scenario scenario property of the relationship, list of names or single name
+     * @param source   identity of source node
+     * @param target   identity of target node
+     */
+    public void addRelationship(long identity, Object scenario, long source, long target) {
+        long version = graphVersion.current();
+        synchronized (lock) {
+            if (replay != null) {
+                replay.add(new Added(identity, scenario, source, target, version));
+            }
+            if (scenarios == null) {
+                // not loaded yet, the relationship is picked up by the next load
+                return;
+            }
+            add(scenarios, scenario, source, target, version);
+        }
+    }
+
+    /**
+     * @return names of all scenarios in alphabetical order
+     */
+    public List<String> names() {
+        ensureLoaded();
+        synchronized (lock) {
+            return new ArrayList<>(scenarios.keySet());
+        }
+    }
+
+    /**
+     * @return size and last change of all scenarios in alphabetical order of their names
+     */
+    public List<ScenarioStatsObject> stats() {
+        ensureLoaded();
+        synchronized (lock) {
+            List<ScenarioStatsObject> stats = new ArrayList<>();
+            scenarios.forEach((name, entry) -> stats.add(new ScenarioStatsObject(name, entry.relationships, entry.nodes.size(), entry.lastModified)));
+            return stats;
+        }
+    }
+
+    /**
+     * @param scenario name of scenario
+     * @return ascending identities of all nodes connected to at least one relationship of the scenario. The array
+     * is cached until the scenario changes and shared between callers, it must not be modified.
+     */
+    public long[] nodesOf(String scenario) {
+        ensureLoaded();
+        synchronized (lock) {
+            Entry entry = scenarios.get(scenario);
+            if (entry == null) {
+                return new long[0];
+            }
+            if (entry.sorted == null) {
+                long[] nodes = new long[entry.nodes.size()];
+                int i = 0;
+                for (long node : entry.nodes) {
+                    nodes[i++] = node;
+                }
+                Arrays.sort(nodes);
+                entry.sorted = nodes;
+            }
+            return entry.sorted;
+        }
+    }
+
+    /**
+     * loads the catalog if that did not succeed on startup. A catalog filled from a snapshot file is loaded again
+     * unless a load is running or failed less than RETRY_MS ago. Must not be called holding the lock, the query
+     * runs without it.
+     */
+    private void ensureLoaded() {
+        boolean loaded;
+        boolean loading;
+        synchronized (lock) {
+            loaded = scenarios != null;
+            loading = replay != null;
+        }
+
+        if (!loaded) {
+            synchronized (loadLock) {
+                synchronized (lock) {
+                    loaded = scenarios != null;
+                }
+                if (!loaded) {
+                    try {
+                        reload();
+                    } catch (Neo4jException e) {
+                        log.warn("could not load scenario catalog: {}", e.getMessage());
+                        throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "scenario catalog not available");
+                    }
+                }
+            }
+        } else if (provisional && !loading && System.currentTimeMillis() >= retryAt) {
+            synchronized (loadLock) {
+                if (provisional && System.currentTimeMillis() >= retryAt) {
+                    try {
+                        reload();
+                    } catch (Neo4jException e) {
+                        log.warn("could not load scenario catalog, answering from snapshot file: {}", e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    static void add(Map<String, Entry> scenarios, Object scenario, long source, long target, long version) {
+        for (String name : namesOf(scenario)) {
+            Entry entry = scenarios.computeIfAbsent(name, key -> new Entry());
+            entry.relationships++;
+            if (entry.nodes.add(source) | entry.nodes.add(target)) {
+                entry.sorted = null;
+            }
+            entry.lastModified = Math.max(entry.lastModified, version);
+        }
+    }
+
+    /**
+     * @param scenario scenario property of a relationship, list of names or single name
+     * @return distinct scenario names, a relationship listing a scenario twice is only counted once
+     */
+    static Set<String> namesOf(Object scenario) {
+        Collection<?> names = scenario instanceof Collection<?> list ? list : scenario == null ? List.of() : List.of(scenario);
+        Set<String> distinct = new LinkedHashSet<>();
+        for (Object name : names) {
+            if (name != null) {
+                distinct.add(name.toString());
+            }
+        }
+        return distinct;
+    }
+
+    static final class Entry {
+        long relationships;
+        final Set<Long> nodes = new HashSet<>();
+        /**
+         * nodes in ascending order, built on first use after nodes changed
+         */
+        long[] sorted;
+        long lastModified;
+    }
+
+    /**
+     * relationship added while a load is running
+     */
+    private record Added(long identity, Object scenario, long source, long target, long version) {
+    }
+
+    /**
+     * growable list of the relationship identities read by a load
+     */
+    private static final class Identities {
+        private long[] values = new long[1024];
+        private int count;
+
+        void add(long identity) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = identity;
+        }
+
+        void sort() {
+            Arrays.sort(values, 0, count);
+        }
+
+        /**
+         * must be sorted
+         */
+        boolean contains(long identity) {
+            return Arrays.binarySearch(values, 0, count, identity) >= 0;
+        }
+    }
+}
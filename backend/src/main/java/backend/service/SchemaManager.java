@@ -0,0 +1,206 @@
+package backend.service;
+
+import backend.entity.NodeObject;
+import backend.entity.SchemaObject;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.exceptions.Neo4jException;
+import org.neo4j.driver.exceptions.ServiceUnavailableException;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates the indexes the endpoints depend on once the application is ready and verifies that they are online.
+ * Every node label of {@link NodeObject.TypeLabels} and {@link NodeObject.FunctionalLabel} gets a range index on
+ * the name property, lookups by name are built with {@link #matchByName} so they can use these indexes instead of
+ * scanning all nodes.
+ */
+@Component
+@Slf4j
+public class SchemaManager {
+
+    private static final String NAME_PROPERTY = "name";
+
+    private final QueryExecutor queryExecutor;
+
+    /**
+     * expected index name by label
+     */
+    private final Map<String, String> expected = new LinkedHashMap<>();
+
+    private volatile SchemaObject status;
+
+    public SchemaManager(QueryExecutor queryExecutor) {
+        this.queryExecutor = queryExecutor;
+        for (String label : indexedLabels()) {
+            expected.put(label, "node_name_" + label);
+        }
+    }
+
+    /**
+     * creates missing indexes on startup, every statement is tried once. Failing to reach the database is logged
+     * and the schema is reported as unverified, {@link #status()} verifies it once the database is reachable.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void createOnStartup() {
+        try {
+            createIndexes();
+            verify();
+        } catch (Neo4jException e) {
+            log.warn("could not create indexes on startup: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * creates all expected indexes that don't exist yet, equivalent indexes with another name are kept. An index
+     * that can't be created is logged and reported as missing by {@link #verify()}.
+     *
+     * @throws ServiceUnavailableException if the database can't be reached, the remaining indexes are not tried
+     */
+    public void createIndexes() {
+        int created = 0;
+        for (Map.Entry<String, String> index : expected.entrySet()) {
+            try {
+                // schema changes have to run on the leader, so they are sent as write
+                queryExecutor.writeOnce("CREATE INDEX " + index.getValue() + " IF NOT EXISTS FOR (n:" + index.getKey() + ") ON (n." + NAME_PROPERTY + ")",
+                        Map.of());
+                created++;
+            } catch (ServiceUnavailableException e) {
+                throw e;
+            } catch (Neo4jException e) {
+                log.warn("could not create index {}: {}", index.getValue(), e.getMessage());
+            }
+        }
+        log.info("ensured {} of {} name indexes", created, expected.size());
+    }
+
+    /**
+     * compares the indexes of the database with the expected indexes, missing indexes and indexes that are not
+     * online are logged
+     *
+     * @return verified schema status
+     */
+    public SchemaObject verify() {
+        Map<String, String> stateByLabel = new HashMap<>();
+        List<Record> indexes = queryExecutor.read("SHOW INDEXES YIELD entityType, labelsOrTypes, properties, state " +
+                "WHERE entityType = 'NODE' RETURN labelsOrTypes, properties, state", Map.of(), record -> record);
+
+        for (Record index : indexes) {
+            List<String> labels = index.get("labelsOrTypes").isNull() ? List.of() : index.get("labelsOrTypes").asList(value -> value.asString());
+            List<String> properties = index.get("properties").isNull() ? List.of() : index.get("properties").asList(value -> value.asString());
+            if (labels.size() == 1 && properties.size() == 1 && properties.get(0).equals(NAME_PROPERTY)) {
+                stateByLabel.put(labels.get(0), index.get("state").asString());
+            }
+        }
+
+        List<String> online = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        Map<String, String> notOnline = new LinkedHashMap<>();
+        for (Map.Entry<String, String> index : expected.entrySet()) {
+            String state = stateByLabel.get(index.getKey());
+            if (state == null) {
+                missing.add(index.getValue());
+            } else if (state.equals("ONLINE")) {
+                online.add(index.getValue());
+            } else {
+                notOnline.put(index.getValue(), state);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            log.warn("missing indexes: {}", missing);
+        }
+        if (!notOnline.isEmpty()) {
+            log.warn("indexes not online: {}", notOnline);
+        }
+
+        status = new SchemaObject(true, online, missing, notOnline);
+        return status;
+    }
+
+    /**
+     * get result of the last verification, verifying the schema if that did not succeed on startup
+     *
+     * @return schema status, unverified if the database can't be reached
+     */
+    public SchemaObject status() {
+        SchemaObject current = status;
+        if (current != null) {
+            return current;
+        }
+        try {
+            return verify();
+        } catch (Neo4jException e) {
+            log.warn("could not verify indexes: {}", e.getMessage());
+            return new SchemaObject(false, List.of(), new ArrayList<>(expected.values()), Map.of());
+        }
+    }
+
+    /**
+     * builds a match clause finding a node by name. If labels contain an indexed label, the lookup is done on that
+     * label, otherwise the lookup is done on every indexed label and combined with UNION. Both use the name indexes,
+     * nodes without any indexed label are not found.
+     *
+     * @param variable variable the node is bound to
+     * @param value    parameter or expression containing the name
+     * @param labels   labels of the node as received by client, may be null
+     * @param imported variable the value expression depends on, imported into the union subquery, may be null
+     * @return match clause ending with a space
+     */
+    public String matchByName(String variable, String value, List<String> labels, String imported) {
+        String label = lookupLabel(labels);
+        if (label != null) {
+            return "MATCH (" + variable + ":" + label + ") WHERE " + variable + "." + NAME_PROPERTY + " = " + value + " ";
+        }
+
+        String with = imported == null ? "" : "WITH " + imported + " ";
+        List<String> branches = new ArrayList<>();
+        for (String indexed : expected.keySet()) {
+            branches.add(with + "MATCH (" + variable + ":" + indexed + ") WHERE " + variable + "." + NAME_PROPERTY + " = " + value + " RETURN " + variable);
+        }
+        return "CALL { " + String.join(" UNION ", branches) + " } ";
+    }
+
+    /**
+     * @param labels labels as received by client, may be null
+     * @return first label that has a name index, preferring type labels, null if there is none
+     */
+    public static String lookupLabel(List<String> labels) {
+        if (labels == null) {
+            return null;
+        }
+        for (String label : labels) {
+            for (NodeObject.TypeLabels type : NodeObject.TypeLabels.values()) {
+                if (type.name().equals(label)) {
+                    return label;
+                }
+            }
+        }
+        for (String label : labels) {
+            for (NodeObject.FunctionalLabel functional : NodeObject.FunctionalLabel.values()) {
+                if (functional.name().equals(label)) {
+                    return label;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static List<String> indexedLabels() {
+        List<String> labels = new ArrayList<>();
+        for (NodeObject.TypeLabels label : NodeObject.TypeLabels.values()) {
+            labels.add(label.name());
+        }
+        for (NodeObject.FunctionalLabel label : NodeObject.FunctionalLabel.values()) {
+            labels.add(label.name());
+        }
+        return labels;
+    }
+}
@@ -0,0 +1,542 @@
+package backend.service;
+
+import backend.entity.EdgeObject;
+import backend.entity.NodeObject;
+import backend.entity.RelationshipObject;
+import backend.entity.SnapshotObject;
+import backend.entity.SnapshotRecordObject;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.exceptions.Neo4jException;
+import org.neo4j.driver.types.Relationship;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports the whole graph as gzip compressed newline delimited json and imports such snapshots. A snapshot lists all
+ * nodes followed by all relationships, one {@link SnapshotRecordObject} per line. Both are read by one query, which
+ * only sees committed data as it goes, so relationships created while it runs may connect nodes the snapshot does
+ * not list. Imports write the snapshot into an empty database as it is listed, with new identities, and count such
+ * relationships as failed. Snapshots saved to snapshot.directory can warm the in memory indexes on startup, before
+ * they are loaded from the database.
+ */
+@Component
+@Slf4j
+public class SnapshotStore {
+
+    public static final String MEDIA_TYPE = "application/gzip";
+
+    private static final String PREFIX = "graph-";
+    private static final String SUFFIX = ".ndjson.gz";
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmssSSS").withZone(ZoneOffset.UTC);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /**
+     * file in snapshot.directory holding the file name a snapshot taken at the start of the last import would get
+     */
+    static final String IMPORTED = "imported";
+
+    static final String EXPORT_QUERY = "MATCH (n) RETURN n, null AS r, null AS source, null AS target " +
+            "UNION ALL MATCH (p)-[r]->(q) RETURN null AS n, r, ID(p) AS source, ID(q) AS target";
+
+    private final QueryExecutor queryExecutor;
+    private final GraphRecordMapper graphRecordMapper;
+    private final NdjsonWriter ndjsonWriter;
+    private final ObjectMapper objectMapper;
+    private final ChangeFeed changeFeed;
+    private final HierarchyIndex hierarchyIndex;
+    private final LineageIndex lineageIndex;
+    private final ScenarioCatalog scenarioCatalog;
+    private final NodeSearchIndex nodeSearchIndex;
+    private final GraphVersion graphVersion;
+    private final Path directory;
+    private final int keep;
+    private final int chunkSize;
+    private final boolean warmStart;
+
+    public SnapshotStore(QueryExecutor queryExecutor, GraphRecordMapper graphRecordMapper, NdjsonWriter ndjsonWriter, ObjectMapper objectMapper,
+                         ChangeFeed changeFeed, HierarchyIndex hierarchyIndex, LineageIndex lineageIndex, ScenarioCatalog scenarioCatalog,
+                         NodeSearchIndex nodeSearchIndex, GraphVersion graphVersion, Environment env) {
+        this.queryExecutor = queryExecutor;
+        this.graphRecordMapper = graphRecordMapper;
+        this.ndjsonWriter = ndjsonWriter;
+        this.objectMapper = objectMapper;
+        this.changeFeed = changeFeed;
+        this.hierarchyIndex = hierarchyIndex;
+        this.lineageIndex = lineageIndex;
+        this.scenarioCatalog = scenarioCatalog;
+        this.nodeSearchIndex = nodeSearchIndex;
+        this.graphVersion = graphVersion;
+        this.directory = Path.of(env.getProperty("snapshot.directory", "snapshots"));
+        this.keep = Math.max(1, env.getProperty("snapshot.keep", Integer.class, 5));
+        this.chunkSize = Math.max(1, env.getProperty("batch.chunk-size", Integer.class, 1000));
+        this.warmStart = env.getProperty("snapshot.warm-start", Boolean.class, false);
+    }
+
+    /**
+     * @param created time the snapshot is taken
+     * @return file name of snapshot, ordered like the times they were taken
+     */
+    public static String fileName(Instant created) {
+        return PREFIX + TIMESTAMP.format(created) + SUFFIX;
+    }
+
+    /**
+     * writes a compressed snapshot of the graph while it is read from the database
+     *
+     * @param endpoint endpoint the query is recorded for, see {@link QueryExecutor#currentEndpoint()}
+     * @param out      stream the snapshot is written to, is not closed
+     * @return number of nodes and relationships written
+     * @throws IOException if writing to the stream fails
+     */
+    public SnapshotObject export(String endpoint, OutputStream out) throws IOException {
+        long[] counts = new long[2];
+        GZIPOutputStream gzip = new GZIPOutputStream(out, BUFFER_SIZE);
+        queryExecutor.stream(endpoint, EXPORT_QUERY, Map.of(), records -> ndjsonWriter.write(gzip, records, rec -> toSnapshotRecord(rec, counts)));
+        // finish instead of close, out belongs to the caller
+        gzip.finish();
+        return new SnapshotObject(null, counts[0], counts[1], 0);
+    }
+
+    /**
+     * writes a snapshot to snapshot.directory, only the latest snapshot.keep snapshots are kept
+     *
+     * @param endpoint endpoint the query is recorded for
+     * @return file name and number of nodes and relationships written
+     * @throws IOException if writing the file fails
+     */
+    public SnapshotObject save(String endpoint) throws IOException {
+        Files.createDirectories(directory);
+        String name = fileName(Instant.now());
+        Path temporary = directory.resolve(name + ".tmp");
+
+        SnapshotObject written;
+        try (OutputStream out = Files.newOutputStream(temporary)) {
+            written = export(endpoint, out);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        // readers never see a partially written snapshot
+        Files.move(temporary, directory.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+        written.setName(name);
+        log.info("saved snapshot {} with {} nodes and {} relationships", name, written.getNodes(), written.getRelationships());
+
+        List<Path> snapshots = snapshots();
+        for (Path old : snapshots.subList(Math.min(keep, snapshots.size()), snapshots.size())) {
+            Files.deleteIfExists(old);
+        }
+        return written;
+    }
+
+    /**
+     * @return snapshots in snapshot.directory, latest first
+     * @throws IOException if the directory can't be read
+     */
+    public List<Path> snapshots() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                        String name = file.getFileName().toString();
+                        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .sorted(Comparator.comparing((Path file) -> file.getFileName().toString()).reversed())
+                    .toList();
+        }
+    }
+
+    /**
+     * writes the nodes and relationships of a snapshot into an empty database, in chunks of batch.chunk-size per
+     * label combination or relationship type. Labels, types and properties are written as they are listed in the
+     * snapshot without validation. Nodes receive new identities, relationships are connected to the nodes created
+     * for their source and target. Property values are restored from their json representation, so temporal values
+     * are written as strings. Values neo4j can't store, such as the maps spatial values are exported as, are left
+     * out and their item is written without them but counted as failed.
+     *
+     * @param body       snapshot, nodes before relationships
+     * @param compressed if body is gzip compressed
+     * @return number of nodes and relationships created and of lines that could not be imported, 409 if the
+     * database is not empty and 422 if the snapshot is truncated or malformed. Items written before are kept.
+     */
+    public SnapshotObject importSnapshot(InputStream body, boolean compressed) {
+        if (!queryExecutor.read("MATCH (n) RETURN ID(n) LIMIT 1", Map.of(), Function.identity()).isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "database is not empty");
+        }
+
+        markImport();
+        Import progress = new Import();
+        try (InputStream in = compressed ? new GZIPInputStream(body, BUFFER_SIZE) : body;
+             MappingIterator<SnapshotRecordObject> records = objectMapper.readerFor(SnapshotRecordObject.class).readValues(in)) {
+            Lines lines = new Lines(records);
+
+            Map<List<String>, List<Map<String, Object>>> nodes = new HashMap<>();
+            while (lines.peek() != null && lines.peek().getNode() != null) {
+                NodeObject node = lines.take().getNode();
+                List<String> labels = node.getLabels() == null ? List.of() : node.getLabels();
+                List<Map<String, Object>> rows = nodes.computeIfAbsent(labels, key -> new ArrayList<>());
+                rows.add(row(node.getIdentity(), node.getProps(), progress));
+                if (rows.size() >= chunkSize) {
+                    writeNodes(labels, rows, progress);
+                    rows.clear();
+                }
+            }
+            for (Map.Entry<List<String>, List<Map<String, Object>>> entry : nodes.entrySet()) {
+                if (!entry.getValue().isEmpty()) {
+                    writeNodes(entry.getKey(), entry.getValue(), progress);
+                }
+            }
+
+            Map<String, List<Map<String, Object>>> relationships = new HashMap<>();
+            while (lines.peek() != null && lines.peek().getEdge() != null) {
+                EdgeObject edge = lines.take().getEdge();
+                Long source = progress.identities.get(edge.getSource());
+                Long target = progress.identities.get(edge.getTarget());
+                if (source == null || target == null || edge.getLabels() == null) {
+                    // source or target was not created
+                    progress.failed++;
+                    continue;
+                }
+                Map<String, Object> row = row(edge.getIdentity(), edge.getProps(), progress);
+                row.put("source", source);
+                row.put("target", target);
+                List<Map<String, Object>> rows = relationships.computeIfAbsent(edge.getLabels(), key -> new ArrayList<>());
+                rows.add(row);
+                if (rows.size() >= chunkSize) {
+                    writeRelationships(edge.getLabels(), rows, progress);
+                    rows.clear();
+                }
+            }
+            for (Map.Entry<String, List<Map<String, Object>>> entry : relationships.entrySet()) {
+                if (!entry.getValue().isEmpty()) {
+                    writeRelationships(entry.getKey(), entry.getValue(), progress);
+                }
+            }
+
+            long skipped = 0;
+            while (lines.peek() != null) {
+                lines.take();
+                skipped++;
+            }
+            if (skipped > 0) {
+                log.warn("skipped {} lines of snapshot following the relationships", skipped);
+            }
+            progress.failed += skipped;
+            if (progress.incomplete > 0) {
+                log.warn("imported {} items without properties that can't be stored", progress.incomplete);
+            }
+        } catch (IOException e) {
+            // truncated gzip streams and json syntax errors
+            throw stopped(progress, e);
+        } catch (RuntimeException e) {
+            // lines not matching SnapshotRecordObject, read errors are wrapped by MappingIterator
+            if (e instanceof RuntimeJsonMappingException || e.getCause() instanceof IOException) {
+                throw stopped(progress, e);
+            }
+            throw e;
+        } finally {
+            if (progress.nodes > 0) {
+                changeFeed.nodesAdded(progress.addedNodes.items());
+            }
+            if (progress.relationships > 0) {
+                changeFeed.relationshipsAdded(progress.addedEdges.items());
+            }
+        }
+
+        log.info("imported snapshot with {} nodes and {} relationships, {} failed", progress.nodes, progress.relationships, progress.failed);
+        return new SnapshotObject(null, progress.nodes, progress.relationships, progress.failed);
+    }
+
+    /**
+     * records the start of an import, snapshots saved before list identities that no longer exist and are not used
+     * to warm the indexes
+     */
+    private void markImport() {
+        try {
+            Files.createDirectories(directory);
+            Files.writeString(directory.resolve(IMPORTED), fileName(Instant.now()));
+        } catch (IOException e) {
+            log.warn("could not record import in {}: {}", directory.toAbsolutePath(), e.getMessage());
+        }
+    }
+
+    private static ResponseStatusException stopped(Import progress, Exception e) {
+        log.warn("import of snapshot stopped after {} nodes and {} relationships: {}", progress.nodes, progress.relationships, e.getMessage());
+        return new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, "malformed snapshot, import stopped after "
+                + progress.nodes + " nodes and " + progress.relationships + " relationships: " + e.getMessage());
+    }
+
+    private void writeNodes(List<String> labels, List<Map<String, Object>> rows, Import progress) {
+        for (int i = 0; i < rows.size(); i++) {
+            rows.get(i).put("index", i);
+        }
+        try {
+            List<Record> created = queryExecutor.write("UNWIND $rows AS row CREATE (n" + escape(labels) + ") SET n = row.props RETURN row.index AS index, ID(n) AS identity",
+                    Map.of("rows", rows), Function.identity());
+
+            List<String> labelList = graphRecordMapper.orderLabels(labels);
+            List<NodeObject> nodes = new ArrayList<>(created.size());
+            for (Record record : created) {
+                Map<String, Object> row = rows.get(record.get("index").asInt());
+                long identity = record.get("identity").asLong();
+                if (row.get("identity") != null) {
+                    progress.identities.put((String) row.get("identity"), identity);
+                }
+                @SuppressWarnings("unchecked")
+                NodeObject node = new NodeObject(String.valueOf(identity), labelList, (Map<String, Object>) row.get("props"));
+                nodes.add(node);
+                progress.addedNodes.add(node);
+            }
+            nodeSearchIndex.addAll(nodes);
+            progress.nodes += created.size();
+            progress.failed += rows.size() - created.size();
+        } catch (Neo4jException e) {
+            log.warn("failed to import chunk of {} nodes: {}", rows.size(), e.getMessage());
+            progress.failed += rows.size();
+        }
+    }
+
+    private void writeRelationships(String type, List<Map<String, Object>> rows, Import progress) {
+        for (int i = 0; i < rows.size(); i++) {
+            rows.get(i).put("index", i);
+        }
+        try {
+            List<Record> created = queryExecutor.write("UNWIND $rows AS row MATCH (s) WHERE ID(s) = row.source MATCH (t) WHERE ID(t) = row.target " +
+                    "CREATE (s)-[r" + escape(List.of(type)) + "]->(t) SET r = row.props RETURN row.index AS index, ID(r) AS identity", Map.of("rows", rows), Function.identity());
+
+            List<EdgeObject> edges = new ArrayList<>(created.size());
+            for (Record record : created) {
+                Map<String, Object> row = rows.get(record.get("index").asInt());
+                @SuppressWarnings("unchecked")
+                EdgeObject edge = new EdgeObject(String.valueOf(record.get("identity").asLong()), type, (Map<String, Object>) row.get("props"),
+                        String.valueOf(row.get("source")), String.valueOf(row.get("target")));
+                edges.add(edge);
+                progress.addedEdges.add(edge);
+            }
+            addToIndexes(type, edges);
+            progress.relationships += created.size();
+            progress.failed += rows.size() - created.size();
+        } catch (Neo4jException e) {
+            log.warn("failed to import chunk of {} {} relationships: {}", rows.size(), type, e.getMessage());
+            progress.failed += rows.size();
+        }
+    }
+
+    /**
+     * updates hierarchy, lineage and scenario catalog, like {@link BatchWriter} does for relationships it creates
+     */
+    private void addToIndexes(String type, List<EdgeObject> edges) {
+        if (RelationshipObject.RelationshipLabels.includes.name().equals(type)) {
+            long[] parents = new long[edges.size()];
+            long[] children = new long[edges.size()];
+            for (int i = 0; i < edges.size(); i++) {
+                parents[i] = Long.parseLong(edges.get(i).getSource());
+                children[i] = Long.parseLong(edges.get(i).getTarget());
+            }
+            hierarchyIndex.addEdges(parents, children);
+        } else if (LineageIndex.LABELS.stream().anyMatch(label -> label.name().equals(type))) {
+            lineageIndex.addEdges(edges);
+        }
+        for (EdgeObject edge : edges) {
+            Object scenario = edge.getProps().get("scenario");
+            if (scenario != null) {
+                scenarioCatalog.addRelationship(Long.parseLong(edge.getIdentity()), scenario, Long.parseLong(edge.getSource()), Long.parseLong(edge.getTarget()));
+            }
+        }
+    }
+
+    /**
+     * @return row of an UNWIND query, the position of the row in its chunk is added as index when it is written.
+     * Values that can't be stored are left out of props, a single one would fail the whole chunk.
+     */
+    private static Map<String, Object> row(String identity, Map<String, Object> props, Import progress) {
+        Map<String, Object> stored = PropertyValidator.storable(props);
+        if (stored != props) {
+            progress.incomplete++;
+            progress.failed++;
+        }
+        Map<String, Object> row = new HashMap<>();
+        row.put("identity", identity);
+        row.put("props", stored == null ? Map.of() : stored);
+        return row;
+    }
+
+    /**
+     * @param labels labels or relationship type as listed in a snapshot
+     * @return labels quoted with backticks, each preceded by a colon
+     */
+    static String escape(List<String> labels) {
+        StringBuilder escaped = new StringBuilder();
+        for (String label : labels) {
+            escaped.append(":`").append(label.replace("`", "``")).append('`');
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * fills the in memory indexes from the latest snapshot if snapshot.warm-start is set. This runs before the
+     * indexes are loaded from the database once the application is ready, so requests arriving meanwhile are
+     * answered from the snapshot instead of waiting for the database. Snapshots saved before the last import are not
+     * used, the import assigned new identities. The warmed indexes are replaced as soon as a load from the database
+     * succeeds.
+     */
+    @EventListener(ApplicationStartedEvent.class)
+    public void warmOnStartup() {
+        if (!warmStart) {
+            return;
+        }
+        try {
+            List<Path> snapshots = snapshots();
+            if (snapshots.isEmpty()) {
+                log.info("no snapshot in {} to warm indexes from", directory.toAbsolutePath());
+                return;
+            }
+            Path latest = snapshots.get(0);
+            Path imported = directory.resolve(IMPORTED);
+            if (Files.exists(imported) && latest.getFileName().toString().compareTo(Files.readString(imported).trim()) < 0) {
+                log.info("latest snapshot {} was saved before the last import, not warming indexes", latest.getFileName());
+                return;
+            }
+            warm(latest);
+        } catch (IOException | RuntimeException e) {
+            log.warn("could not warm indexes from snapshot: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * fills hierarchy, lineage, scenario catalog and search index from a snapshot, indexes that were already
+     * loaded from the database are left unchanged
+     *
+     * @param file compressed snapshot
+     * @throws IOException if reading the snapshot fails
+     */
+    void warm(Path file) throws IOException {
+        long version = graphVersion.current();
+        List<NodeSearchIndex.Entry> entries = new ArrayList<>();
+        long[] parents = new long[1024];
+        long[] children = new long[1024];
+        int includes = 0;
+        LineageIndex.EdgeList lineage = new LineageIndex.EdgeList();
+        Map<String, ScenarioCatalog.Entry> scenarios = new TreeMap<>();
+
+        try (InputStream in = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file)), BUFFER_SIZE);
+             MappingIterator<SnapshotRecordObject> records = objectMapper.readerFor(SnapshotRecordObject.class).readValues(in)) {
+            while (records.hasNext()) {
+                SnapshotRecordObject record = records.next();
+                if (record.getNode() != null) {
+                    NodeSearchIndex.Entry entry = nodeSearchIndex.entryOf(record.getNode());
+                    if (entry != null) {
+                        entries.add(entry);
+                    }
+                    continue;
+                }
+
+                EdgeObject edge = record.getEdge();
+                long source = Long.parseLong(edge.getSource());
+                long target = Long.parseLong(edge.getTarget());
+                Object scenario = edge.getProps() == null ? null : edge.getProps().get("scenario");
+                if (RelationshipObject.RelationshipLabels.includes.name().equals(edge.getLabels())) {
+                    if (includes == parents.length) {
+                        parents = Arrays.copyOf(parents, includes * 2);
+                        children = Arrays.copyOf(children, includes * 2);
+                    }
+                    parents[includes] = source;
+                    children[includes] = target;
+                    includes++;
+                } else if (LineageIndex.LABELS.stream().anyMatch(label -> label.name().equals(edge.getLabels()))) {
+                    lineage.add(Long.parseLong(edge.getIdentity()), RelationshipObject.RelationshipLabels.valueOf(edge.getLabels()), source, target, scenario);
+                }
+                if (scenario != null) {
+                    ScenarioCatalog.add(scenarios, scenario, source, target, version);
+                }
+            }
+        }
+
+        hierarchyIndex.warm(Arrays.copyOf(parents, includes), Arrays.copyOf(children, includes));
+        lineageIndex.warm(lineage);
+        scenarioCatalog.warm(scenarios);
+        nodeSearchIndex.warm(entries);
+        log.info("warmed indexes from snapshot {}", file.getFileName());
+    }
+
+    private SnapshotRecordObject toSnapshotRecord(Record rec, long[] counts) {
+        if (!rec.get("n").isNull()) {
+            counts[0]++;
+            return new SnapshotRecordObject(graphRecordMapper.toNodeObject(rec.get("n").asNode()), null);
+        }
+        counts[1]++;
+        Relationship relationship = rec.get("r").asRelationship();
+        return new SnapshotRecordObject(null, new EdgeObject(graphRecordMapper.identityOf(relationship), relationship.type(), relationship.asMap(),
+                String.valueOf(rec.get("source").asLong()), String.valueOf(rec.get("target").asLong())));
+    }
+
+    /**
+     * snapshot lines with one line look ahead, so reading nodes stops at the first relationship
+     */
+    private static final class Lines {
+        private final MappingIterator<SnapshotRecordObject> records;
+        private SnapshotRecordObject next;
+
+        Lines(MappingIterator<SnapshotRecordObject> records) {
+            this.records = records;
+        }
+
+        SnapshotRecordObject peek() {
+            if (next == null && records.hasNext()) {
+                next = records.next();
+            }
+            return next;
+        }
+
+        SnapshotRecordObject take() {
+            SnapshotRecordObject current = peek();
+            next = null;
+            return current;
+        }
+    }
+
+    /**
+     * progress of an import, identities maps the identities listed in the snapshot to the created nodes
+     */
+    private final class Import {
+        final Map<String, Long> identities = new HashMap<>();
+        final ChangeFeed.Collector<NodeObject> addedNodes = changeFeed.collector();
+        final ChangeFeed.Collector<EdgeObject> addedEdges = changeFeed.collector();
+        long nodes;
+        long relationships;
+        long failed;
+        /**
+         * items written without some of their properties, counted in failed as well
+         */
+        long incomplete;
+    }
+}
@@ -0,0 +1,132 @@
+package backend.service;
+
+import backend.entity.NodeObject;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Immutable in memory store of the node symbols. All SVGs of the symbol directory are read once on startup and
+ * kept together with their gzip compressed form and an entity tag derived from their content, so requests for
+ * symbols never touch the file system. The bundle contains all symbols in one json object.
+ */
+@Component
+@Slf4j
+public class SymbolStore {
+
+    private static final String EXTENSION = ".svg";
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_-]+");
+
+    private final Map<String, Asset> symbols;
+    private final Asset bundle;
+
+    public SymbolStore(Environment env, ObjectMapper objectMapper) {
+        Path directory = Paths.get(env.getProperty("symbol.directory", "../images"));
+        Map<String, String> svgs = read(directory);
+
+        Map<String, Asset> loaded = new TreeMap<>();
+        svgs.forEach((name, svg) -> loaded.put(name, Asset.of(svg.getBytes(StandardCharsets.UTF_8))));
+        this.symbols = Map.copyOf(loaded);
+
+        try {
+            this.bundle = Asset.of(objectMapper.writeValueAsBytes(svgs));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("could not serialize symbol bundle", e);
+        }
+
+        List<String> missing = new ArrayList<>();
+        for (NodeObject.TypeLabels label : NodeObject.TypeLabels.values()) {
+            if (!symbols.containsKey(label.name())) {
+                missing.add(label.name());
+            }
+        }
+        if (!missing.isEmpty()) {
+            log.warn("no symbol for type labels {} in {}", missing, directory.toAbsolutePath());
+        }
+        log.info("loaded {} symbols from {}", symbols.size(), directory.toAbsolutePath());
+    }
+
+    /**
+     * @param name symbol name, usually a type label, without file extension
+     * @return symbol, empty if there is no symbol with this name
+     */
+    public Optional<Asset> symbol(String name) {
+        return Optional.ofNullable(symbols.get(name));
+    }
+
+    /**
+     * @return json object containing the svg source of every symbol by name
+     */
+    public Asset bundle() {
+        return bundle;
+    }
+
+    private static Map<String, String> read(Path directory) {
+        Map<String, String> svgs = new TreeMap<>();
+        if (!Files.isDirectory(directory)) {
+            log.warn("symbol directory {} does not exist", directory.toAbsolutePath());
+            return svgs;
+        }
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                String name = fileName.substring(0, fileName.length() - EXTENSION.length());
+                if (NAME.matcher(name).matches()) {
+                    svgs.put(name, Files.readString(file, StandardCharsets.UTF_8));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("could not read symbols from " + directory.toAbsolutePath(), e);
+        }
+        return svgs;
+    }
+
+    /**
+     * Response body in plain and gzip compressed form with the strong entity tag of each
+     *
+     * @param body        uncompressed content
+     * @param gzipped     gzip compressed content, null if compressing does not make it smaller
+     * @param etag        entity tag of the uncompressed content
+     * @param gzippedEtag entity tag of the compressed content
+     */
+    public record Asset(byte[] body, byte[] gzipped, String etag, String gzippedEtag) {
+
+        static Asset of(byte[] body) {
+            byte[] gzipped = gzip(body);
+            if (gzipped.length >= body.length) {
+                return new Asset(body, null, ResponseEncoder.etagOf(body), null);
+            }
+            return new Asset(body, gzipped, ResponseEncoder.etagOf(body), ResponseEncoder.etagOf(gzipped));
+        }
+
+        private static byte[] gzip(byte[] body) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(body.length);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                gzip.write(body);
+            } catch (IOException e) {
+                // writing to memory does not fail
+                throw new UncheckedIOException(e);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package backend.service;
+
+import backend.entity.BatchResultObject;
+import backend.entity.NodeObject;
+import backend.entity.RelationshipObject;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
+import org.neo4j.driver.internal.InternalRecord;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchWriterTests {
+
+    private final List<Map<String, Object>> results = new ArrayList<>();
+    private final GraphVersion graphVersion = new GraphVersion();
+    private final ChangeFeed changeFeed = new ChangeFeed(graphVersion, new MockEnvironment());
+    private final ScenarioCatalog scenarioCatalog = new ScenarioCatalog(null, graphVersion);
+    private final QueryExecutor queryExecutor = new QueryExecutor(null, new QueryMetrics(), new MockEnvironment()) {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> write(String query, Map<String, Object> parameters, Function<Record, T> mapper) {
+            List<T> records = new ArrayList<>();
+            for (Map<String, Object> row : (List<Map<String, Object>>) parameters.get("rows")) {
+                long index = ((Number) row.get("index")).longValue();
+                Map<String, Object> result = results.isEmpty() ? Map.of("index", index, "identity", 100 + index) : results.remove(0);
+                List<String> keys = new ArrayList<>(result.keySet());
+                records.add(mapper.apply(new InternalRecord(keys, keys.stream().map(key -> Values.value(result.get(key))).toArray(Value[]::new))));
+            }
+            return records;
+        }
+    };
+    private final BatchWriter batchWriter = new BatchWriter(queryExecutor, new HierarchyIndex(null), new LineageIndex(null),
+            new NodeSearchIndex(null, new GraphRecordMapper(), scenarioCatalog, new MockEnvironment()), changeFeed, new ObjectMapper(),
+            new SchemaManager(null), scenarioCatalog, new GraphRecordMapper(), new MockEnvironment());
+
+    @AfterEach
+    void shutdown() {
+        changeFeed.shutdown();
+    }
+
+    @Test
+    void truncatedInputKeepsWrittenItems() throws IOException {
+        String ndjson = "{\"labels\":[\"process\"],\"props\":{\"name\":\"a\"}}\n{\"labels\":[\"process\"],\"props\":{\"name\":";
+        BatchResultObject result = batchWriter.writeNodes(new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(2, result.getReceived());
+        assertEquals(1, result.getCreated());
+        assertEquals(Arrays.asList("100", null), result.getIdentities());
+        assertEquals(1, result.getErrors().size());
+        assertEquals(1, result.getErrors().get(0).getIndex());
+        assertTrue(result.getErrors().get(0).getMessage().startsWith("malformed input"));
+    }
+
+    @Test
+    void unstorablePropertiesOnlyFailTheirItem() {
+        BatchResultObject result = batchWriter.writeNodes(List.of(
+                new NodeObject(null, List.of("process"), Map.of("name", "a")),
+                new NodeObject(null, List.of("process"), Map.of("name", "b", "location", Map.of("x", 1))),
+                new NodeObject(null, List.of("process"), Map.of("name", "c", "tags", List.of("x", 1))),
+                new NodeObject(null, List.of("process"), Map.of("name", "d", "tags", List.of("x", "y")))).iterator());
+
+        assertEquals(2, result.getCreated());
+        assertEquals(Arrays.asList("100", null, null, "103"), result.getIdentities());
+        assertEquals(List.of(1, 2), result.getErrors().stream().map(BatchResultObject.ItemError::getIndex).toList());
+        assertTrue(result.getErrors().get(0).getMessage().startsWith("property location"));
+    }
+
+    @Test
+    void ambiguousNamesAreReported() {
+        results.add(Map.of("index", 0, "sources", 1, "targets", 1, "identity", 7L, "source", 1L, "target", 2L));
+        results.add(Map.of("index", 1, "sources", 2, "targets", 1));
+        results.add(Map.of("index", 2, "sources", 1, "targets", 0));
+
+        BatchResultObject result = batchWriter.writeRelationships(List.of(
+                relationship("a", "b"), relationship("duplicate", "b"), relationship("a", "missing")).iterator());
+
+        assertEquals(1, result.getCreated());
+        assertEquals(Arrays.asList("7", null, null), result.getIdentities());
+        assertEquals(List.of("source or target name is ambiguous", "source or target node not found"),
+                result.getErrors().stream().map(BatchResultObject.ItemError::getMessage).toList());
+    }
+
+    private static RelationshipObject relationship(String source, String target) {
+        return new RelationshipObject(null, "transfers", Map.of(),
+                new NodeObject(null, List.of("process"), Map.of("name", source)), new NodeObject(null, List.of("database"), Map.of("name", target)));
+    }
+}
@@ -0,0 +1,52 @@
+package backend.service;
+
+import backend.entity.ChangeObject;
+import backend.entity.EdgeObject;
+import backend.entity.NodeObject;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ChangeFeedTests {
+
+    @Test
+    void changesAfterVersionAreReplayedWhileBuffered() {
+        ChangeFeed.ChangeLog log = new ChangeFeed.ChangeLog(3);
+        for (long version = 1; version <= 5; version++) {
+            log.append(new ChangeObject(version, ChangeObject.Type.nodesAdded, List.of(), List.of(), List.of()));
+        }
+
+        assertEquals(List.of(4L, 5L), log.since(3, 5).stream().map(ChangeObject::getVersion).toList());
+        assertEquals(List.of(3L, 4L, 5L), log.since(2, 5).stream().map(ChangeObject::getVersion).toList());
+        assertEquals(List.of(), log.since(5, 5));
+        // version 2 was overwritten
+        assertNull(log.since(1, 5));
+        // versions of a graph before the backend was restarted
+        assertNull(log.since(8, 5));
+    }
+
+    @Test
+    void largeBatchesArePublishedAsReset() {
+        GraphVersion graphVersion = new GraphVersion();
+        ChangeFeed feed = new ChangeFeed(graphVersion, new MockEnvironment().withProperty("changes.max-items", "2"));
+        try {
+            ChangeFeed.Collector<NodeObject> nodes = feed.collector();
+            for (int i = 0; i < 10; i++) {
+                nodes.add(new NodeObject(String.valueOf(i), List.of("process"), Map.of("name", "p" + i)));
+            }
+            assertEquals(3, nodes.items().size());
+            assertEquals(1, feed.nodesAdded(nodes.items()));
+
+            EdgeObject edge = new EdgeObject("7", "transfers", Map.of("scenario", List.of("a", "b")), "1", "2");
+            assertEquals(2, feed.relationshipsAdded(List.of(edge)));
+            assertEquals(2, graphVersion.current());
+        } finally {
+            feed.shutdown();
+        }
+    }
+}
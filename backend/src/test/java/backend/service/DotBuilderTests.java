@@ -0,0 +1,66 @@
+package backend.service;
+
+import backend.entity.EdgeObject;
+import backend.entity.GraphObject;
+import backend.entity.NodeObject;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DotBuilderTests {
+
+    private final DotBuilder dotBuilder = new DotBuilder(new MockEnvironment());
+
+    // 1 includes 2, 2 transfers twice to 3
+    private final GraphObject graph = new GraphObject(List.of(
+            new NodeObject("1", List.of("processes", "parent"), Map.of("name", "all processes", "institution", "ELGA")),
+            new NodeObject("2", List.of("process"), Map.of("name", "process", "nameShort", "proc", "institution", "ELGA")),
+            new NodeObject("3", List.of("database", "origin"), Map.of("name", "db", "institution", "Gemeinde/Magistrat"))
+    ), List.of(
+            new EdgeObject("10", "includes", Map.of(), "1", "2"),
+            new EdgeObject("11", "transfers", Map.of(), "2", "3"),
+            new EdgeObject("12", "conditional", Map.of(), "2", "3")
+    ));
+
+    private final HierarchyIndex.Snapshot hierarchy = HierarchyIndex.Snapshot.build(new long[]{1}, new long[]{2}, 1);
+
+    @Test
+    void buildsClustersNodesAndMergedEdges() {
+        String dot = dotBuilder.build(graph, hierarchy, false);
+
+        assertTrue(dot.startsWith("digraph G{\n"));
+        assertTrue(dot.contains("subgraph cluster_ELGA{"));
+        assertTrue(dot.contains("subgraph cluster_GemeindeMagistrat{"));
+        assertTrue(dot.contains("2 [id = \"2\", label = \"proc\", type = \"process\", image = \"process.svg\", ]"));
+        assertFalse(dot.contains("1 [ class"));
+        assertFalse(dot.contains("1 -> 2"));
+        assertTrue(dot.contains("2 -> 3 [id = \"11,12\", style=\"dashed\" ];"));
+        assertTrue(dot.contains("{rank=source; 3}"));
+    }
+
+    @Test
+    void collapsedGraphAttachesEdgesToRoot() {
+        String dot = dotBuilder.build(graph, hierarchy, true);
+
+        assertTrue(dot.contains("1 [ class = \"parent\", id = \"1\""));
+        assertFalse(dot.contains("2 [id"));
+        assertTrue(dot.contains("1 -> 3 [id = \"11,12\""));
+    }
+
+    @Test
+    void collapsedGraphOnlyUsesAncestorsInGraph() {
+        // 0 includes 1, but 0 is not part of the scenario graph
+        HierarchyIndex.Snapshot deeper = HierarchyIndex.Snapshot.build(new long[]{0, 1}, new long[]{1, 2}, 2);
+        String dot = dotBuilder.build(graph, deeper, true);
+
+        assertTrue(dot.contains("1 [ class = \"parent\", id = \"1\""));
+        assertFalse(dot.contains("0 ["));
+        assertFalse(dot.contains("0 -> 3"));
+        assertTrue(dot.contains("1 -> 3 [id = \"11,12\""));
+    }
+}
@@ -0,0 +1,63 @@
+package backend.service;
+
+import backend.entity.CollapsedGraphObject;
+import backend.entity.EdgeObject;
+import backend.entity.GraphObject;
+import backend.entity.NodeObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class GraphCollapserTests {
+
+    // 1 -> 2 -> 4, 2 -> 5, 1 -> 3
+    private final HierarchyIndex.Snapshot hierarchy = HierarchyIndex.Snapshot.build(
+            new long[]{1, 2, 2, 1}, new long[]{2, 4, 5, 3}, 4);
+
+    // node 1 is not part of the scenario
+    private final GraphObject graph = new GraphObject(List.of(
+            node("2"), node("3"), node("4"), node("5"), node("6")
+    ), List.of(
+            new EdgeObject("10", "transfers", Map.of(), "4", "6"),
+            new EdgeObject("11", "transfers", Map.of(), "5", "6"),
+            new EdgeObject("12", "conditional", Map.of(), "3", "6"),
+            new EdgeObject("13", "transfers", Map.of(), "4", "5"),
+            new EdgeObject("14", "includes", Map.of(), "2", "4")
+    ));
+
+    @Test
+    void rootsStandInForTheirSubtrees() {
+        assertEquals(Set.of(1L), GraphCollapser.missingNodes(graph, hierarchy, 0));
+
+        CollapsedGraphObject collapsed = GraphCollapser.collapse(graph, hierarchy, 0, List.of(node("1")));
+        assertEquals(List.of("6", "1"), collapsed.getNodes().stream().map(NodeObject::getIdentity).toList());
+        assertEquals(List.of(
+                new CollapsedGraphObject.AggregatedEdge("1", "6", "transfers", 2),
+                new CollapsedGraphObject.AggregatedEdge("1", "6", "conditional", 1)
+        ), collapsed.getEdges());
+        assertEquals(Map.of("1", 4), collapsed.getHidden());
+    }
+
+    @Test
+    void nodesUpToDepthStayVisible() {
+        assertEquals(Set.of(), GraphCollapser.missingNodes(graph, hierarchy, 1));
+
+        CollapsedGraphObject collapsed = GraphCollapser.collapse(graph, hierarchy, 1, List.of());
+        assertEquals(List.of("2", "3", "6"), collapsed.getNodes().stream().map(NodeObject::getIdentity).toList());
+        assertEquals(List.of(
+                new CollapsedGraphObject.AggregatedEdge("2", "6", "transfers", 2),
+                new CollapsedGraphObject.AggregatedEdge("3", "6", "conditional", 1)
+        ), collapsed.getEdges());
+        assertEquals(Map.of("2", 2), collapsed.getHidden());
+
+        assertEquals(graph.getNodes().size(), GraphCollapser.collapse(graph, hierarchy, 2, List.of()).getNodes().size());
+    }
+
+    private static NodeObject node(String identity) {
+        return new NodeObject(identity, List.of("process"), Map.of("name", "node " + identity));
+    }
+}
@@ -0,0 +1,66 @@
+package backend.service;
+
+import backend.entity.GraphObject;
+import backend.entity.RelationshipObject;
+import org.junit.jupiter.api.Test;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
+import org.neo4j.driver.internal.InternalNode;
+import org.neo4j.driver.internal.InternalRecord;
+import org.neo4j.driver.internal.InternalRelationship;
+import org.neo4j.driver.internal.value.NodeValue;
+import org.neo4j.driver.internal.value.RelationshipValue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class GraphRecordMapperTests {
+
+    private final GraphRecordMapper mapper = new GraphRecordMapper();
+
+    @Test
+    void typeLabelsComeFirstAndListsAreShared() {
+        List<String> ordered = mapper.orderLabels(List.of("origin", "process"));
+        assertEquals(List.of("process", "origin"), ordered);
+        assertSame(ordered, mapper.orderLabels(List.of("origin", "process")));
+        assertEquals(List.of("database", "parent"), mapper.orderLabels(Set.of("parent", "database")));
+    }
+
+    @Test
+    void identityIsLastPartOfElementId() {
+        assertEquals("42", mapper.identityOf(new InternalNode(42, "4:db:42", List.of(), Map.of())));
+    }
+
+    @Test
+    void nodesAreMappedOncePerResult() {
+        NodeValue a = node(1, "process");
+        NodeValue b = node(2, "database");
+        List<Record> records = List.of(record(10, a, b), record(11, b, a));
+
+        Function<Record, RelationshipObject> relationships = mapper.relationshipMapper();
+        RelationshipObject first = relationships.apply(records.get(0));
+        RelationshipObject second = relationships.apply(records.get(1));
+        assertSame(first.getSource(), second.getTarget());
+        assertEquals("2", second.getSource().getIdentity());
+
+        GraphObject graph = mapper.toGraphObject(records);
+        assertEquals(2, graph.getNodes().size());
+        assertEquals("1", graph.getEdges().get(1).getTarget());
+    }
+
+    private static NodeValue node(long id, String label) {
+        return new NodeValue(new InternalNode(id, "4:db:" + id, List.of(label), Map.of("name", Values.value("node " + id))));
+    }
+
+    private static Record record(long id, NodeValue source, NodeValue target) {
+        InternalRelationship relationship = new InternalRelationship(id, "5:db:" + id, source.asNode().id(), source.asNode().elementId(),
+                target.asNode().id(), target.asNode().elementId(), "transfers", Map.of());
+        return new InternalRecord(List.of("p", "r", "q"), new Value[]{source, new RelationshipValue(relationship), target});
+    }
+}
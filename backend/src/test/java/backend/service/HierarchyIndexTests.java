@@ -0,0 +1,113 @@
+package backend.service;
+
+import org.junit.jupiter.api.Test;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
+import org.neo4j.driver.exceptions.ServiceUnavailableException;
+import org.neo4j.driver.internal.InternalRecord;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HierarchyIndexTests {
+
+    // 1 -> 2 -> 4, 1 -> 3, 10 -> 11
+    private final HierarchyIndex.Snapshot snapshot = HierarchyIndex.Snapshot.build(
+            new long[]{1, 2, 1, 10}, new long[]{2, 4, 3, 11}, 4);
+
+    @Test
+    void parentLookup() {
+        assertEquals(2, snapshot.parentOf(4));
+        assertEquals(1, snapshot.parentOf(3));
+        assertEquals(-1, snapshot.parentOf(1));
+        assertEquals(-1, snapshot.parentOf(99));
+    }
+
+    @Test
+    void descendantsAndAncestors() {
+        long[] descendants = snapshot.descendantsOf(1);
+        Arrays.sort(descendants);
+        assertArrayEquals(new long[]{2, 3, 4}, descendants);
+        assertArrayEquals(new long[]{11}, snapshot.descendantsOf(10));
+        assertArrayEquals(new long[0], snapshot.descendantsOf(4));
+        assertArrayEquals(new long[]{2, 1}, snapshot.ancestorsOf(4));
+
+        assertTrue(snapshot.isAncestor(1, 4));
+        assertFalse(snapshot.isAncestor(4, 1));
+        assertFalse(snapshot.isAncestor(10, 4));
+        assertEquals(2, snapshot.depthOf(4));
+    }
+
+    @Test
+    void cycleDoesNotLoop() {
+        HierarchyIndex.Snapshot cyclic = HierarchyIndex.Snapshot.build(new long[]{1, 2}, new long[]{2, 1}, 2);
+
+        assertEquals(2, cyclic.size());
+        assertEquals(1, cyclic.descendantsOf(1).length + cyclic.descendantsOf(2).length);
+        assertTrue(cyclic.ancestorsOf(1).length <= 2);
+    }
+
+    @Test
+    void addedEdgesAreVisibleInNextSnapshot() {
+        HierarchyIndex index = new HierarchyIndex(null);
+        index.rebuild(new long[]{1}, new long[]{2});
+        index.addEdges(new long[]{2, 5}, new long[]{3, 6});
+
+        HierarchyIndex.Snapshot updated = index.snapshot();
+        assertArrayEquals(new long[]{2, 1}, updated.ancestorsOf(3));
+        assertEquals(5, updated.parentOf(6));
+        assertEquals(5, updated.size());
+    }
+
+    @Test
+    void warmedIndexIsKeptUntilLoadSucceeds() {
+        boolean[] reachable = new boolean[1];
+        QueryExecutor queryExecutor = new QueryExecutor(null, new QueryMetrics(), new MockEnvironment()) {
+            @Override
+            public long forEach(String query, Map<String, Object> parameters, Consumer<Record> consumer) {
+                if (!reachable[0]) {
+                    throw new ServiceUnavailableException("database not reachable");
+                }
+                consumer.accept(new InternalRecord(List.of("ID(p)", "ID(c)"), new Value[]{Values.value(5), Values.value(6)}));
+                return 1;
+            }
+        };
+        HierarchyIndex index = new HierarchyIndex(queryExecutor);
+        index.warm(new long[]{1}, new long[]{2});
+
+        index.loadOnStartup();
+        assertEquals(1, index.snapshot().parentOf(2));
+
+        reachable[0] = true;
+        index.loadOnStartup();
+        assertEquals(-1, index.snapshot().parentOf(2));
+        assertEquals(5, index.snapshot().parentOf(6));
+    }
+
+    @Test
+    void edgesAddedWhileLoadingAreKept() {
+        HierarchyIndex[] index = new HierarchyIndex[1];
+        QueryExecutor queryExecutor = new QueryExecutor(null, new QueryMetrics(), new MockEnvironment()) {
+            @Override
+            public long forEach(String query, Map<String, Object> parameters, Consumer<Record> consumer) {
+                consumer.accept(new InternalRecord(List.of("ID(p)", "ID(c)"), new Value[]{Values.value(1), Values.value(2)}));
+                // committed after the query started reading, not part of its result
+                index[0].addEdge(2, 3);
+                return 1;
+            }
+        };
+        index[0] = new HierarchyIndex(queryExecutor);
+        index[0].reload();
+
+        assertArrayEquals(new long[]{2, 1}, index[0].snapshot().ancestorsOf(3));
+    }
+}
@@ -0,0 +1,68 @@
+package backend.service;
+
+import backend.entity.EdgeObject;
+import backend.entity.GraphObject;
+import backend.entity.LayoutObject;
+import backend.entity.NodeObject;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LayeredLayoutTests {
+
+    private final LayeredLayout layout = new LayeredLayout(new MockEnvironment());
+
+    private NodeObject node(String identity) {
+        return new NodeObject(identity, List.of("process"), Map.of("name", identity));
+    }
+
+    @Test
+    void layersFollowEdgesAndCyclesAreBroken() {
+        // 1 -> 2 -> 3 -> 1 (cycle), 1 -> 4, 4 -> 3 (long edge through dummy)
+        GraphObject graph = new GraphObject(List.of(node("1"), node("2"), node("3"), node("4")), List.of(
+                new EdgeObject("10", "transfers", Map.of(), "1", "2"),
+                new EdgeObject("11", "transfers", Map.of(), "2", "3"),
+                new EdgeObject("12", "transfers", Map.of(), "3", "1"),
+                new EdgeObject("13", "produces", Map.of(), "1", "4")
+        ));
+        LayoutObject result = layout.layout(graph, HierarchyIndex.Snapshot.build(new long[0], new long[0], 0));
+        Map<String, LayoutObject.NodeLayout> nodes = result.getNodes().stream()
+                .collect(Collectors.toMap(LayoutObject.NodeLayout::getIdentity, Function.identity()));
+
+        assertEquals(0, nodes.get("1").getLayer());
+        assertEquals(1, nodes.get("2").getLayer());
+        assertEquals(2, nodes.get("3").getLayer());
+        assertEquals(4, result.getEdges().size());
+
+        // reversed edge is still routed from its source to its target
+        LayoutObject.EdgeLayout back = result.getEdges().stream().filter(e -> e.getIdentity().equals("12")).findFirst().orElseThrow();
+        assertTrue(back.getPoints().get(0)[0] > back.getPoints().get(back.getPoints().size() - 1)[0]);
+    }
+
+    @Test
+    void nodesInSameLayerDoNotOverlap() {
+        GraphObject graph = new GraphObject(List.of(node("1"), node("2"), node("3"), node("4")), List.of(
+                new EdgeObject("10", "transfers", Map.of(), "1", "2"),
+                new EdgeObject("11", "transfers", Map.of(), "1", "3"),
+                new EdgeObject("12", "transfers", Map.of(), "1", "4")
+        ));
+        // 2 and 4 are included by 1 and form one cluster
+        LayoutObject result = layout.layout(graph, HierarchyIndex.Snapshot.build(new long[]{1, 1}, new long[]{2, 4}, 2));
+
+        List<LayoutObject.NodeLayout> second = result.getNodes().stream().filter(n -> n.getLayer() == 1)
+                .sorted((a, b) -> Double.compare(a.getY(), b.getY())).toList();
+        assertEquals(3, second.size());
+        for (int i = 1; i < second.size(); i++) {
+            assertTrue(second.get(i).getY() - second.get(i - 1).getY() >= second.get(i).getHeight());
+        }
+        assertEquals(1, result.getClusters().size());
+        assertEquals(List.of("1", "2", "4"), result.getClusters().get(0).getNodes());
+    }
+}
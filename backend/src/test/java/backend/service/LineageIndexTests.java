@@ -0,0 +1,127 @@
+package backend.service;
+
+import backend.entity.EdgeObject;
+import backend.entity.GraphObject;
+import backend.entity.NodeObject;
+import backend.entity.PathObject;
+import backend.entity.RelationshipObject.RelationshipLabels;
+import org.junit.jupiter.api.Test;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
+import org.neo4j.driver.internal.InternalRecord;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LineageIndexTests {
+
+    private final int all = LineageIndex.typeMask(null);
+    private final LineageIndex.Snapshot snapshot = snapshot();
+
+    // relationship identity = 100 + source * 10 + target
+    // 1 -transfers-> 2 -transfers-> 3 -produces-> 4, 1 -conditional-> 4, 4 -transfers-> 2 (cycle)
+    private static LineageIndex.Snapshot snapshot() {
+        LineageIndex.EdgeList edges = new LineageIndex.EdgeList();
+        edges.add(112, RelationshipLabels.transfers, 1, 2, List.of("a"));
+        edges.add(123, RelationshipLabels.transfers, 2, 3, List.of("a", "b"));
+        edges.add(134, RelationshipLabels.produces, 3, 4, "b");
+        edges.add(114, RelationshipLabels.conditional, 1, 4, List.of("b"));
+        edges.add(142, RelationshipLabels.transfers, 4, 2, null);
+        return edges.snapshot();
+    }
+
+    @Test
+    void downstreamAndUpstream() {
+        LineageIndex.Reach downstream = snapshot.reach(1, true, 10, all, null, 100);
+        assertEquals(Map.of(1L, 0, 2L, 1, 4L, 1, 3L, 2), downstream.distances());
+        assertEquals(5, downstream.edges().length);
+        assertEquals(3, downstream.depth());
+
+        LineageIndex.Reach upstream = snapshot.reach(3, false, 10, all, null, 100);
+        assertEquals(Map.of(3L, 0, 2L, 1, 1L, 2, 4L, 2), upstream.distances());
+
+        LineageIndex.Reach oneHop = snapshot.reach(1, true, 1, all, null, 100);
+        assertArrayEquals(new long[]{112, 114}, oneHop.edges());
+
+        LineageIndex.Reach unknown = snapshot.reach(99, true, 10, all, null, 100);
+        assertEquals(Map.of(99L, 0), unknown.distances());
+        assertEquals(0, unknown.edges().length);
+    }
+
+    @Test
+    void typesScenarioAndLimit() {
+        int transfers = LineageIndex.typeMask(List.of("transfers"));
+        assertEquals(Map.of(1L, 0, 2L, 1, 3L, 2), snapshot.reach(1, true, 10, transfers, null, 100).distances());
+        assertEquals(Map.of(1L, 0, 4L, 1), snapshot.reach(1, true, 10, all, "b", 100).distances());
+        assertEquals(Map.of(1L, 0), snapshot.reach(1, true, 10, all, "unknown", 100).distances());
+
+        LineageIndex.Reach truncated = snapshot.reach(1, true, 10, all, null, 2);
+        assertTrue(truncated.truncated());
+        assertEquals(2, truncated.edges().length);
+
+        assertThrows(IllegalArgumentException.class, () -> LineageIndex.typeMask(List.of("includes")));
+        assertThrows(IllegalArgumentException.class, () -> LineageIndex.typeMask(List.of("unknown")));
+    }
+
+    @Test
+    void shortestPath() {
+        assertArrayEquals(new long[]{142, 123}, snapshot.shortestPath(4, 3, 10, all, null));
+        // 4 -> 2 belongs to no scenario
+        assertNull(snapshot.shortestPath(4, 3, 10, all, "b"));
+        assertArrayEquals(new long[]{112, 123}, snapshot.shortestPath(1, 3, 10, all, null));
+        assertArrayEquals(new long[]{114}, snapshot.shortestPath(1, 4, 10, all, null));
+        assertArrayEquals(new long[0], snapshot.shortestPath(1, 1, 10, all, null));
+        assertNull(snapshot.shortestPath(3, 1, 10, all, null));
+        assertNull(snapshot.shortestPath(1, 3, 1, all, null));
+    }
+
+    @Test
+    void pathIsReturnedInOrder() {
+        GraphObject graph = new GraphObject(List.of(node("3"), node("1"), node("2")), List.of(
+                new EdgeObject("123", "transfers", Map.of(), "2", "3"),
+                new EdgeObject("112", "transfers", Map.of(), "1", "2")
+        ));
+
+        PathObject path = LineageReader.inPathOrder(graph, 1, 3, new long[]{112, 123});
+        assertEquals(List.of("1", "2", "3"), path.getNodes().stream().map(NodeObject::getIdentity).toList());
+        assertEquals(List.of("112", "123"), path.getEdges().stream().map(EdgeObject::getIdentity).toList());
+    }
+
+    @Test
+    void relationshipsAddedWhileLoadingAreKept() {
+        LineageIndex[] index = new LineageIndex[1];
+        QueryExecutor queryExecutor = new QueryExecutor(null, new QueryMetrics(), new MockEnvironment()) {
+            @Override
+            public long forEach(String query, Map<String, Object> parameters, Consumer<Record> consumer) {
+                consumer.accept(new InternalRecord(List.of("identity", "type", "source", "target", "scenario"), new Value[]{
+                        Values.value(112), Values.value("transfers"), Values.value(1), Values.value(2), Values.value(List.of("a"))}));
+                // 112 was read by the query as well, 123 was committed after the query started reading
+                index[0].addEdges(List.of(new EdgeObject("112", "transfers", Map.of("scenario", List.of("a")), "1", "2"),
+                        new EdgeObject("123", "transfers", Map.of(), "2", "3")));
+                return 1;
+            }
+        };
+        index[0] = new LineageIndex(queryExecutor);
+        index[0].reload();
+
+        LineageIndex.Reach downstream = index[0].snapshot().reach(1, true, 10, all, null, 100);
+        assertEquals(Map.of(1L, 0, 2L, 1, 3L, 2), downstream.distances());
+        assertEquals(2, downstream.edges().length);
+
+        index[0].addEdges(List.of(new EdgeObject("134", "produces", Map.of(), "3", "4")));
+        assertArrayEquals(new long[]{112, 123, 134}, index[0].snapshot().shortestPath(1, 4, 10, all, null));
+    }
+
+    private static NodeObject node(String identity) {
+        return new NodeObject(identity, List.of("database"), Map.of("name", "node " + identity));
+    }
+}
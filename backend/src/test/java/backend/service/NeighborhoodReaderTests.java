@@ -0,0 +1,31 @@
+package backend.service;
+
+import backend.entity.NeighborhoodObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NeighborhoodReaderTests {
+
+    @Test
+    void typesAreValidatedAndCombined() {
+        assertEquals("", NeighborhoodReader.relationshipTypes(null));
+        assertEquals(":transfers|includes", NeighborhoodReader.relationshipTypes(List.of("transfers", "includes", "transfers")));
+        assertThrows(IllegalArgumentException.class, () -> NeighborhoodReader.relationshipTypes(List.of("transfers]->() DETACH DELETE (x)<-[")));
+    }
+
+    @Test
+    void bothDirectionsAreCombinedWithUnion() {
+        String query = NeighborhoodReader.hopQuery(NeighborhoodObject.Direction.both, ":produces", true);
+        assertTrue(query.startsWith("CALL { MATCH (p)-[r:produces]->(q) WHERE ID(p) IN $frontier"));
+        assertTrue(query.contains(" UNION MATCH (p)-[r:produces]->(q) WHERE ID(q) IN $frontier AND NOT ID(p) IN $visited AND $scenario IN r.scenario"));
+        assertTrue(query.endsWith(" LIMIT $limit"));
+
+        assertEquals("MATCH (p)-[r]->(q) WHERE ID(q) IN $frontier AND NOT ID(p) IN $visited RETURN p, r, q LIMIT $limit",
+                NeighborhoodReader.hopQuery(NeighborhoodObject.Direction.incoming, "", false));
+    }
+}
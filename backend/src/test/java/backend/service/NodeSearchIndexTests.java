@@ -0,0 +1,136 @@
+package backend.service;
+
+import backend.entity.NodeObject;
+import backend.entity.SearchHitObject;
+import org.junit.jupiter.api.Test;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
+import org.neo4j.driver.internal.InternalRecord;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class NodeSearchIndexTests {
+
+    // properties name, nameShort
+    private final List<NodeSearchIndex.Entry> entries = List.of(
+            entry(1, "process", "Customer data export", "export"),
+            entry(2, "database", "Customer database", "crm"),
+            entry(3, "process", "Data", null),
+            entry(4, "document", "Newsletter: Kündigung", "Kündigung"),
+            entry(5, "process", "Metadata cleanup", null)
+    );
+
+    @Test
+    void valuesAreNormalized() {
+        assertEquals("newsletter kundigung", NodeSearchIndex.normalize("  Newsletter:  Kündigung!"));
+        assertEquals("", NodeSearchIndex.normalize("--"));
+        assertNull(NodeSearchIndex.entryOf(6, List.of("process"), "--", List.of("--", 7)));
+    }
+
+    @Test
+    void exactMatchesComeBeforePrefixAndWordAndInfixMatches() {
+        NodeSearchIndex.Snapshot snapshot = NodeSearchIndex.Snapshot.build(entries, 2);
+
+        // hits of the same kind of match are ordered by length
+        assertEquals(List.of(3L, 2L, 1L, 5L), identities(snapshot.search("data", entry -> true, 10)));
+        assertEquals(List.of(NodeSearchIndex.EXACT, NodeSearchIndex.WORD_PREFIX, NodeSearchIndex.WORD_PREFIX, NodeSearchIndex.INFIX),
+                snapshot.search("data", entry -> true, 10).stream().map(NodeSearchIndex.Hit::rank).toList());
+        assertEquals(List.of(2L, 1L), identities(snapshot.search("customer d", entry -> true, 10)));
+        assertEquals(List.of(4L), identities(snapshot.search("kundig", entry -> true, 10)));
+        // infix matches need three letters
+        assertEquals(List.of(), identities(snapshot.search("at", entry -> true, 10)));
+        assertEquals(List.of(3L), identities(snapshot.search("data", entry -> true, 1)));
+    }
+
+    @Test
+    void filterAndPropertyOfHit() {
+        NodeSearchIndex.Snapshot snapshot = NodeSearchIndex.Snapshot.build(entries, 2);
+
+        List<NodeSearchIndex.Hit> hits = snapshot.search("export", entry -> entry.labels.contains("process"), 10);
+        assertEquals(List.of(1L), identities(hits));
+        // exact match of nameShort is better than word prefix of name
+        assertEquals(1, hits.get(0).property());
+        assertEquals(List.of(1L, 2L, 3L), identities(snapshot.search("data", entry -> entry.identity != 5, 10)).stream().sorted().toList());
+    }
+
+    @Test
+    void addedEntriesAreFoundBeforeAndAfterMerging() {
+        NodeSearchIndex.Snapshot snapshot = NodeSearchIndex.Snapshot.build(entries, 2)
+                .with(List.of(entry(10, "event", "Data breach", null)));
+        assertEquals(List.of(3L, 10L, 2L, 1L, 5L), identities(snapshot.search("data", entry -> true, 10)));
+
+        List<NodeSearchIndex.Entry> added = new ArrayList<>();
+        for (int i = 0; i <= NodeSearchIndex.MIN_RECENT; i++) {
+            added.add(entry(100 + i, "event", "event " + i, null));
+        }
+        snapshot = snapshot.with(added);
+        assertEquals(List.of(3L, 10L, 2L, 1L, 5L), identities(snapshot.search("data", entry -> true, 10)));
+        assertEquals(List.of(1124L), identities(snapshot.search("event 1024", entry -> true, 10)));
+    }
+
+    @Test
+    void filterIsAppliedBeforeScanLimit() {
+        List<NodeSearchIndex.Entry> many = new ArrayList<>();
+        for (int i = 0; i < 2 * NodeSearchIndex.SCAN_LIMIT; i++) {
+            many.add(entry(i, "process", String.format("item %04d", i), null));
+        }
+        many.add(entry(9999, "database", "item zzz", "itemizer"));
+        NodeSearchIndex.Snapshot snapshot = NodeSearchIndex.Snapshot.build(many, 2);
+
+        assertEquals(List.of(9999L), identities(snapshot.search("item", entry -> entry.labels.contains("database"), 10)));
+        assertEquals(List.of(9999L), identities(snapshot.search("tem", entry -> entry.labels.contains("database"), 10)));
+    }
+
+    @Test
+    void nodesAddedWhileLoadingAreKept() {
+        NodeSearchIndex[] index = new NodeSearchIndex[1];
+        QueryExecutor queryExecutor = new QueryExecutor(null, new QueryMetrics(), new MockEnvironment()) {
+            @Override
+            public long forEach(String query, Map<String, Object> parameters, Consumer<Record> consumer) {
+                consumer.accept(new InternalRecord(List.of("identity", "labels", "name", "values"), new Value[]{
+                        Values.value(1), Values.value(List.of("process")), Values.value("loaded"), Values.value(List.of("loaded"))}));
+                // committed while the query runs, read by it or not
+                index[0].addAll(List.of(new NodeObject("1", List.of("process"), Map.of("name", "loaded")),
+                        new NodeObject("2", List.of("process"), Map.of("name", "loaded later"))));
+                return 1;
+            }
+        };
+        index[0] = new NodeSearchIndex(queryExecutor, new GraphRecordMapper(), null, new MockEnvironment());
+        index[0].reload();
+
+        assertEquals(List.of("1", "2"), index[0].search("loaded", null, null, null).stream().map(SearchHitObject::getIdentity).toList());
+
+        // queued and added by the next search
+        index[0].addAll(List.of(new NodeObject("3", List.of("process"), Map.of("name", "loaded last"))));
+        assertEquals(List.of("1", "3", "2"), index[0].search("loaded", null, null, null).stream().map(SearchHitObject::getIdentity).toList());
+    }
+
+    @Test
+    void limitIsCapped() {
+        NodeSearchIndex index = new NodeSearchIndex(null, null, null, new MockEnvironment()
+                .withProperty("search.default-limit", "5")
+                .withProperty("search.max-limit", "20"));
+        assertEquals(5, index.limitOf(null));
+        assertEquals(20, index.limitOf(1000));
+        assertEquals(1, index.limitOf(0));
+    }
+
+    private static NodeSearchIndex.Entry entry(long identity, String label, String name, String nameShort) {
+        List<Object> values = new ArrayList<>();
+        values.add(name);
+        values.add(nameShort);
+        return NodeSearchIndex.entryOf(identity, List.of(label), name, values);
+    }
+
+    private static List<Long> identities(List<NodeSearchIndex.Hit> hits) {
+        return hits.stream().map(hit -> hit.entry().identity).toList();
+    }
+}
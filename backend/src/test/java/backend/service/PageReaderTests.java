@@ -0,0 +1,32 @@
+package backend.service;
+
+import backend.entity.PageObject;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PageReaderTests {
+
+    @Test
+    void nextCursorIsLastItemOfFullPage() {
+        PageObject<String> page = PageReader.page(List.of("3", "5", "8"), 2, item -> item);
+        assertEquals(List.of("3", "5"), page.getItems());
+        assertEquals("5", page.getNext());
+
+        PageObject<String> last = PageReader.page(List.of("13", "21"), 2, item -> item);
+        assertEquals(List.of("13", "21"), last.getItems());
+        assertNull(last.getNext());
+    }
+
+    @Test
+    void sizeIsClamped() {
+        PageReader reader = new PageReader(null, null, new MockEnvironment().withProperty("page.max-size", "100"));
+        assertEquals(500, reader.sizeOf(null));
+        assertEquals(100, reader.sizeOf(1000));
+        assertEquals(1, reader.sizeOf(0));
+    }
+}
@@ -0,0 +1,160 @@
+package backend.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.neo4j.driver.AccessMode;
+import org.neo4j.driver.Bookmark;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Result;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.SessionConfig;
+import org.neo4j.driver.TransactionCallback;
+import org.neo4j.driver.TransactionContext;
+import org.neo4j.driver.async.AsyncSession;
+import org.neo4j.driver.async.AsyncTransactionCallback;
+import org.neo4j.driver.async.AsyncTransactionContext;
+import org.neo4j.driver.async.ResultCursor;
+import org.neo4j.driver.summary.ResultSummary;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class QueryExecutorTests {
+
+    private final Driver driver = mock(Driver.class);
+    private final Session session = mock(Session.class);
+    private final AsyncSession asyncSession = mock(AsyncSession.class);
+    private final QueryExecutor queryExecutor = new QueryExecutor(driver, new QueryMetrics(), new MockEnvironment());
+    private final MockHttpServletRequest request = new MockHttpServletRequest();
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    @SuppressWarnings("unchecked")
+    QueryExecutorTests() {
+        when(driver.session(any(SessionConfig.class))).thenReturn(session);
+        when(driver.session(eq(AsyncSession.class), any(SessionConfig.class))).thenReturn(asyncSession);
+
+        // transaction functions run their work on a transaction returning one record
+        TransactionContext tx = mock(TransactionContext.class);
+        Result result = mock(Result.class);
+        when(tx.run(anyString(), anyMap())).thenReturn(result);
+        when(result.list(any(Function.class))).thenAnswer(invocation -> List.of(invocation.getArgument(0, Function.class).apply(mock(Record.class))));
+        when(result.consume()).thenReturn(mock(ResultSummary.class));
+        when(session.executeRead(any())).thenAnswer(invocation -> invocation.getArgument(0, TransactionCallback.class).execute(tx));
+        when(session.executeWrite(any())).thenAnswer(invocation -> invocation.getArgument(0, TransactionCallback.class).execute(tx));
+        when(session.lastBookmarks()).thenReturn(Set.of(Bookmark.from("FB:write")));
+
+        AsyncTransactionContext asyncTx = mock(AsyncTransactionContext.class);
+        ResultCursor cursor = mock(ResultCursor.class);
+        when(asyncTx.runAsync(anyString(), anyMap())).thenReturn(CompletableFuture.completedFuture(cursor));
+        when(cursor.listAsync(any(Function.class))).thenReturn(CompletableFuture.completedFuture(List.of("record")));
+        when(cursor.consumeAsync()).thenReturn(CompletableFuture.completedFuture(mock(ResultSummary.class)));
+        when(asyncSession.executeReadAsync(any())).thenAnswer(invocation -> invocation.getArgument(0, AsyncTransactionCallback.class).execute(asyncTx));
+        when(asyncSession.closeAsync()).thenReturn(CompletableFuture.completedFuture(null));
+
+        request.addHeader(QueryExecutor.BOOKMARK_HEADER, "FB:client");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, response));
+    }
+
+    @AfterEach
+    void resetRequest() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void readsRunInReadTransactionsWaitingForClientBookmarks() {
+        assertEquals(List.of("mapped"), queryExecutor.read("MATCH (n) RETURN n", Map.of(), record -> "mapped"));
+
+        verify(session).executeRead(any());
+        verify(session, never()).executeWrite(any());
+        SessionConfig config = sessionConfig();
+        assertEquals(AccessMode.READ, config.defaultAccessMode());
+        assertEquals(List.of("FB:client"), bookmarkValues(config));
+        assertTrue(config.bookmarkManager().isEmpty());
+    }
+
+    @Test
+    void writesRunInWriteTransactionsAndSendTheirBookmark() {
+        assertEquals(List.of("mapped"), queryExecutor.write("CREATE (n) RETURN n", Map.of(), record -> "mapped"));
+
+        // executeWrite retries transient errors
+        verify(session).executeWrite(any());
+        verify(session, never()).executeRead(any());
+        SessionConfig config = sessionConfig();
+        assertEquals(AccessMode.WRITE, config.defaultAccessMode());
+        assertTrue(config.bookmarkManager().isPresent());
+        assertEquals("FB:write", response.getHeader(QueryExecutor.BOOKMARK_HEADER));
+    }
+
+    @Test
+    void readLatestAsyncWaitsForWritesOfThisBackend() {
+        assertEquals(List.of("record"), queryExecutor.readLatestAsync("MATCH (n) RETURN n", Map.of(), record -> "mapped").join());
+        SessionConfig latest = asyncSessionConfig();
+        assertEquals(AccessMode.READ, latest.defaultAccessMode());
+        assertTrue(latest.bookmarkManager().isPresent());
+        assertEquals(List.of("FB:client"), bookmarkValues(latest));
+
+        queryExecutor.readAsync("MATCH (n) RETURN n", Map.of(), record -> "mapped").join();
+        assertFalse(asyncSessionConfig().bookmarkManager().isPresent());
+    }
+
+    @Test
+    void queriesOutsideOfRequestsWaitForAllWrites() {
+        RequestContextHolder.resetRequestAttributes();
+        queryExecutor.read("MATCH (n) RETURN n", Map.of(), record -> "mapped");
+
+        SessionConfig config = sessionConfig();
+        assertTrue(config.bookmarkManager().isPresent());
+        assertEquals(List.of(), bookmarkValues(config));
+    }
+
+    @Test
+    void bookmarksAreReadFromAllHeaderValues() {
+        Set<Bookmark> bookmarks = QueryExecutor.parseBookmarks(Collections.enumeration(List.of("FB:a, FB:b", "FB:c", " ")));
+        assertEquals(List.of("FB:a", "FB:b", "FB:c"), bookmarks.stream().map(Bookmark::value).toList());
+
+        assertEquals(Set.of(), QueryExecutor.parseBookmarks(null));
+    }
+
+    private SessionConfig sessionConfig() {
+        ArgumentCaptor<SessionConfig> config = ArgumentCaptor.forClass(SessionConfig.class);
+        verify(driver).session(config.capture());
+        return config.getValue();
+    }
+
+    private SessionConfig asyncSessionConfig() {
+        ArgumentCaptor<SessionConfig> config = ArgumentCaptor.forClass(SessionConfig.class);
+        verify(driver, atLeastOnce()).session(eq(AsyncSession.class), config.capture());
+        return config.getValue();
+    }
+
+    private static List<String> bookmarkValues(SessionConfig config) {
+        List<String> values = new ArrayList<>();
+        config.bookmarks().forEach(bookmark -> values.add(bookmark.value()));
+        return values;
+    }
+}
@@ -0,0 +1,44 @@
+package backend.service;
+
+import backend.entity.QueryStatsObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class QueryMetricsTests {
+
+    @Test
+    void bucketsAreInclusiveUpperBounds() {
+        assertEquals(0, QueryMetrics.bucketOf(0));
+        assertEquals(0, QueryMetrics.bucketOf(1));
+        assertEquals(2, QueryMetrics.bucketOf(3));
+        assertEquals(9, QueryMetrics.bucketOf(1000));
+        assertEquals(QueryMetrics.BUCKETS_MS.length, QueryMetrics.bucketOf(10001));
+    }
+
+    @Test
+    void groupsByEndpointAndQuery() {
+        QueryMetrics metrics = new QueryMetrics();
+        metrics.recordQuery("GET /node/all", "MATCH (n) RETURN n", TimeUnit.MILLISECONDS.toNanos(3), 10, null);
+        metrics.recordQuery("GET /node/all", "MATCH (n) RETURN n", TimeUnit.MILLISECONDS.toNanos(30), 20, null);
+        metrics.recordQuery("GET /node/{identity}", "MATCH (n) RETURN n", TimeUnit.MILLISECONDS.toNanos(1), 1, null);
+
+        List<QueryStatsObject> queries = metrics.queries();
+        assertEquals(2, queries.size());
+        QueryStatsObject all = queries.get(0);
+        assertEquals("GET /node/all", all.getEndpoint());
+        assertEquals(2, all.getCount());
+        assertEquals(2, all.getErrors());
+        assertEquals(30, all.getRows());
+        assertEquals(33, all.getTotalMillis());
+        assertEquals(30, all.getMaxMillis());
+        assertEquals(1, all.getHistogram().get("le5ms"));
+        assertEquals(1, all.getHistogram().get("le50ms"));
+
+        metrics.clear();
+        assertEquals(0, metrics.queries().size());
+    }
+}
@@ -0,0 +1,57 @@
+package backend.service;
+
+import backend.entity.NodeObject;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResponseEncoderTests {
+
+    private final ResponseEncoder encoder = new ResponseEncoder(new ObjectMapper());
+
+    @Test
+    void smileIsOnlyUsedWhenPreferred() {
+        assertEquals(MediaType.APPLICATION_JSON, encoder.negotiate(null));
+        assertEquals(MediaType.APPLICATION_JSON, encoder.negotiate("*/*"));
+        assertEquals(MediaType.APPLICATION_JSON, encoder.negotiate("application/json, application/x-jackson-smile"));
+        assertEquals(MediaType.APPLICATION_JSON, encoder.negotiate("application/x-jackson-smile;q=0.5, application/json"));
+        assertEquals(MediaType.APPLICATION_JSON, encoder.negotiate("not a media type"));
+        assertEquals(ResponseEncoder.SMILE, encoder.negotiate("application/x-jackson-smile"));
+        assertEquals(ResponseEncoder.SMILE, encoder.negotiate("application/x-jackson-smile, */*;q=0.1"));
+    }
+
+    @Test
+    void smileRoundTripsAndSharesRepeatedStrings() throws Exception {
+        List<NodeObject> nodes = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            nodes.add(new NodeObject(String.valueOf(i), List.of("process", "origin"), Map.of("name", "node " + i, "institution", "institution 1")));
+        }
+
+        byte[] json = encoder.encode(nodes, MediaType.APPLICATION_JSON);
+        byte[] smile = encoder.encode(nodes, ResponseEncoder.SMILE);
+        assertTrue(smile.length * 2 < json.length, smile.length + " bytes of Smile, " + json.length + " bytes of json");
+
+        ObjectMapper smileReader = new ObjectMapper(ResponseEncoder.smileFactory());
+        assertEquals(new ObjectMapper().readTree(json), smileReader.readTree(smile));
+    }
+
+    @Test
+    void gzipIsOnlyUsedWhenAccepted() {
+        assertTrue(ResponseEncoder.acceptsGzip("gzip, deflate, br"));
+        assertTrue(ResponseEncoder.acceptsGzip("deflate;q=1, GZIP;q=0.5"));
+        assertTrue(ResponseEncoder.acceptsGzip("*"));
+        assertFalse(ResponseEncoder.acceptsGzip(null));
+        assertFalse(ResponseEncoder.acceptsGzip("gzip;q=0"));
+        assertFalse(ResponseEncoder.acceptsGzip("x-gzip"));
+        assertFalse(ResponseEncoder.acceptsGzip("*, gzip;q=0"));
+        assertFalse(ResponseEncoder.acceptsGzip("identity"));
+    }
+}
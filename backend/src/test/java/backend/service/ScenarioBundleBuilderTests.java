@@ -0,0 +1,35 @@
+package backend.service;
+
+import backend.entity.GraphObject;
+import backend.entity.NodeObject;
+import backend.entity.ScenarioBundleObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ScenarioBundleBuilderTests {
+
+    // 1 -> 2 -> 4, 1 -> 3, 10 -> 11
+    private final HierarchyIndex.Snapshot hierarchy = HierarchyIndex.Snapshot.build(
+            new long[]{1, 2, 1, 10}, new long[]{2, 4, 3, 11}, 4);
+
+    @Test
+    void hierarchyMapsCoverNodesOfGraph() {
+        GraphObject graph = new GraphObject(List.of(
+                new NodeObject("4", List.of("process"), Map.of("name", "a")),
+                new NodeObject("3", List.of("process"), Map.of("name", "b")),
+                new NodeObject("5", List.of("database"), Map.of("name", "c"))
+        ), List.of());
+
+        ScenarioBundleObject bundle = new ScenarioBundleBuilder().build(graph, hierarchy);
+
+        assertEquals(graph, bundle.getGraph());
+        assertEquals(Map.of("1", List.of("4", "3"), "2", List.of("4")), bundle.getByParent());
+        assertEquals(Map.of("4", "2", "3", "1"), bundle.getByChildren());
+        // 2 is no node of the scenario, so it is a root as well, but below root 1
+        assertEquals(Map.of("2", "1", "3", "1", "4", "1"), bundle.getRootOf());
+    }
+}
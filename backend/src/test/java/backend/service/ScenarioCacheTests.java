@@ -0,0 +1,78 @@
+package backend.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScenarioCacheTests {
+
+    private final GraphVersion graphVersion = new GraphVersion();
+    private final ScenarioCache cache = new ScenarioCache(graphVersion,
+            new MockEnvironment().withProperty("scenario.cache.max-bytes", "10"));
+
+    @Test
+    void entryIsReusedUntilGraphChanges() {
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<CompletableFuture<byte[]>> loader = () -> CompletableFuture.completedFuture(new byte[]{(byte) loads.incrementAndGet()});
+
+        ScenarioCache.Entry first = cache.getAsync("a", loader::get).join();
+        ScenarioCache.Entry second = cache.getAsync("a", loader::get).join();
+        assertEquals(1, loads.get());
+        assertEquals(first.etag(), second.etag());
+
+        graphVersion.increment();
+        ScenarioCache.Entry third = cache.getAsync("a", loader::get).join();
+        assertEquals(2, loads.get());
+        assertNotEquals(first.etag(), third.etag());
+    }
+
+    @Test
+    void entryIsTaggedWithVersionAtRequestTime() {
+        CompletableFuture<byte[]> pending = new CompletableFuture<>();
+        CompletableFuture<ScenarioCache.Entry> entry = cache.getAsync("a", () -> pending);
+        assertFalse(entry.isDone());
+
+        // the graph changed while the body was read, it may not contain the change
+        graphVersion.increment();
+        pending.complete(new byte[1]);
+        assertEquals(0, entry.join().version());
+
+        AtomicInteger loads = new AtomicInteger();
+        cache.getAsync("a", () -> CompletableFuture.completedFuture(new byte[loads.incrementAndGet()])).join();
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void leastRecentlyUsedEntriesAreEvictedBySize() {
+        load("a", 4);
+        load("b", 4);
+        load("a", 4);
+        load("c", 4);
+
+        assertEquals(8, cache.size());
+        AtomicInteger loads = new AtomicInteger();
+        cache.getAsync("a", () -> CompletableFuture.completedFuture(new byte[loads.incrementAndGet()])).join();
+        assertEquals(0, loads.get());
+        cache.getAsync("b", () -> CompletableFuture.completedFuture(new byte[loads.incrementAndGet()])).join();
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void failedLoadIsNotCached() {
+        CompletableFuture<ScenarioCache.Entry> failed = cache.getAsync("a", () -> CompletableFuture.failedFuture(new IllegalStateException()));
+        assertTrue(failed.isCompletedExceptionally());
+        assertEquals(0, cache.size());
+    }
+
+    private void load(String key, int size) {
+        cache.getAsync(key, () -> CompletableFuture.completedFuture(new byte[size])).join();
+    }
+}
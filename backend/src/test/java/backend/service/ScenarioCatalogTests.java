@@ -0,0 +1,59 @@
+package backend.service;
+
+import org.junit.jupiter.api.Test;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
+import org.neo4j.driver.internal.InternalRecord;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class ScenarioCatalogTests {
+
+    @Test
+    void countsRelationshipsAndDistinctNodes() {
+        Map<String, ScenarioCatalog.Entry> scenarios = new TreeMap<>();
+        ScenarioCatalog.add(scenarios, List.of("a", "b"), 1, 2, 0);
+        ScenarioCatalog.add(scenarios, List.of("a", "a"), 2, 3, 4);
+        ScenarioCatalog.add(scenarios, "b", 1, 2, 2);
+        ScenarioCatalog.add(scenarios, null, 5, 6, 5);
+
+        assertEquals(List.of("a", "b"), List.copyOf(scenarios.keySet()));
+        assertEquals(2, scenarios.get("a").relationships);
+        assertEquals(3, scenarios.get("a").nodes.size());
+        assertEquals(4, scenarios.get("a").lastModified);
+        assertEquals(2, scenarios.get("b").relationships);
+        assertEquals(2, scenarios.get("b").nodes.size());
+        assertFalse(scenarios.get("b").nodes.contains(3L));
+    }
+
+    @Test
+    void relationshipsAddedWhileLoadingAreKept() {
+        ScenarioCatalog[] catalog = new ScenarioCatalog[1];
+        QueryExecutor queryExecutor = new QueryExecutor(null, new QueryMetrics(), new MockEnvironment()) {
+            @Override
+            public long forEach(String query, Map<String, Object> parameters, Consumer<Record> consumer) {
+                consumer.accept(new InternalRecord(List.of("identity", "scenario", "source", "target"),
+                        new Value[]{Values.value(11), Values.value(List.of("a")), Values.value(1), Values.value(2)}));
+                // 11 was read by the query as well, 12 was committed after the query started reading
+                catalog[0].addRelationship(11, List.of("a"), 1, 2);
+                catalog[0].addRelationship(12, "b", 2, 3);
+                return 1;
+            }
+        };
+        catalog[0] = new ScenarioCatalog(queryExecutor, new GraphVersion());
+        catalog[0].reload();
+
+        assertEquals(List.of("a", "b"), catalog[0].names());
+        assertEquals(1, catalog[0].stats().get(0).getRelationships());
+        assertArrayEquals(new long[]{2, 3}, catalog[0].nodesOf("b"));
+    }
+}
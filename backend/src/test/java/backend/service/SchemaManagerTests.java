@@ -0,0 +1,68 @@
+package backend.service;
+
+import org.junit.jupiter.api.Test;
+import org.neo4j.driver.exceptions.ClientException;
+import org.neo4j.driver.exceptions.ServiceUnavailableException;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SchemaManagerTests {
+
+    private final SchemaManager schemaManager = new SchemaManager(null);
+
+    @Test
+    void lookupPrefersTypeLabel() {
+        assertEquals("process", SchemaManager.lookupLabel(List.of("origin", "process")));
+        assertEquals("origin", SchemaManager.lookupLabel(List.of("unknown", "origin")));
+        assertNull(SchemaManager.lookupLabel(List.of("unknown")));
+        assertNull(SchemaManager.lookupLabel(null));
+    }
+
+    @Test
+    void matchUsesLabelOrUnion() {
+        assertEquals("MATCH (s:database) WHERE s.name = $source ",
+                schemaManager.matchByName("s", "$source", List.of("database"), null));
+
+        String union = schemaManager.matchByName("t", "row.target", null, "row");
+        assertTrue(union.startsWith("CALL { WITH row MATCH (t:database) WHERE t.name = row.target RETURN t UNION "));
+        assertTrue(union.contains("UNION WITH row MATCH (t:origin) WHERE t.name = row.target RETURN t"));
+        assertTrue(union.endsWith(" } "));
+    }
+
+    @Test
+    void indexesAreCreatedOnceEach() {
+        List<String> tried = new ArrayList<>();
+        boolean[] reachable = {true};
+        QueryExecutor queryExecutor = new QueryExecutor(null, new QueryMetrics(), new MockEnvironment()) {
+            @Override
+            public void writeOnce(String query, Map<String, Object> parameters) {
+                tried.add(query);
+                if (!reachable[0]) {
+                    throw new ServiceUnavailableException("database not reachable");
+                }
+                if (tried.size() == 1) {
+                    throw new ClientException("equivalent index exists");
+                }
+            }
+        };
+        SchemaManager schemaManager = new SchemaManager(queryExecutor);
+
+        // a failing index does not stop the others
+        schemaManager.createIndexes();
+        assertTrue(tried.size() > 1);
+
+        // an unreachable database stops after the first statement
+        tried.clear();
+        reachable[0] = false;
+        assertThrows(ServiceUnavailableException.class, schemaManager::createIndexes);
+        assertEquals(1, tried.size());
+    }
+}
@@ -0,0 +1,213 @@
+package backend.service;
+
+import backend.entity.EdgeObject;
+import backend.entity.NodeObject;
+import backend.entity.SearchHitObject;
+import backend.entity.SnapshotRecordObject;
+import backend.entity.SnapshotObject;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
+import org.neo4j.driver.exceptions.ServiceUnavailableException;
+import org.neo4j.driver.internal.InternalRecord;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnapshotStoreTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final GraphVersion graphVersion = new GraphVersion();
+    private final ChangeFeed changeFeed = new ChangeFeed(graphVersion, new MockEnvironment());
+    private final List<String> queries = new ArrayList<>();
+    private final List<Map<String, Object>> written = new ArrayList<>();
+    private final QueryExecutor queryExecutor = new QueryExecutor(null, new QueryMetrics(), new MockEnvironment()) {
+        @Override
+        public long forEach(String query, Map<String, Object> parameters, Consumer<Record> consumer) {
+            throw new ServiceUnavailableException("database not reachable");
+        }
+
+        @Override
+        public <T> List<T> read(String query, Map<String, Object> parameters, Function<Record, T> mapper) {
+            // empty database
+            return List.of();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> write(String query, Map<String, Object> parameters, Function<Record, T> mapper) {
+            queries.add(query);
+            List<T> records = new ArrayList<>();
+            for (Map<String, Object> row : (List<Map<String, Object>>) parameters.get("rows")) {
+                written.add(row);
+                records.add(mapper.apply(new InternalRecord(List.of("index", "identity"),
+                        new Value[]{Values.value(row.get("index")), Values.value(100 + written.size())})));
+            }
+            return records;
+        }
+    };
+    private final HierarchyIndex hierarchyIndex = new HierarchyIndex(queryExecutor);
+    private final LineageIndex lineageIndex = new LineageIndex(queryExecutor);
+    private final ScenarioCatalog scenarioCatalog = new ScenarioCatalog(queryExecutor, graphVersion);
+    private final NodeSearchIndex nodeSearchIndex = new NodeSearchIndex(queryExecutor, new GraphRecordMapper(), scenarioCatalog, new MockEnvironment());
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void fileNamesSortByTime() {
+        String earlier = SnapshotStore.fileName(Instant.parse("2024-03-01T09:59:59.999Z"));
+        String later = SnapshotStore.fileName(Instant.parse("2024-03-01T10:00:00Z"));
+        assertEquals("graph-20240301-095959999.ndjson.gz", earlier);
+        assertTrue(earlier.compareTo(later) < 0);
+    }
+
+    @Test
+    void warmsIndexesFromLatestSnapshot() throws IOException {
+        write(SnapshotStore.fileName(Instant.parse("2024-03-01T10:00:00Z")), List.of(
+                new SnapshotRecordObject(new NodeObject("1", List.of("process"), Map.of("name", "billing run")), null),
+                new SnapshotRecordObject(new NodeObject("2", List.of("database"), Map.of("name", "customer database")), null),
+                new SnapshotRecordObject(new NodeObject("3", List.of("database"), Map.of("name", "invoices")), null),
+                new SnapshotRecordObject(null, new EdgeObject("11", "includes", Map.of(), "1", "2")),
+                new SnapshotRecordObject(null, new EdgeObject("12", "transfers", Map.of("scenario", List.of("billing")), "2", "3")),
+                new SnapshotRecordObject(null, new EdgeObject("13", "unknown", Map.of(), "3", "1"))
+        ));
+        write(SnapshotStore.fileName(Instant.parse("2024-02-01T10:00:00Z")), List.of());
+
+        SnapshotStore store = store();
+        assertEquals(2, store.snapshots().size());
+        store.warmOnStartup();
+
+        assertEquals(1L, hierarchyIndex.snapshot().parentOf(2));
+        assertArrayEquals(new long[]{12}, lineageIndex.snapshot().shortestPath(2, 3, 10, LineageIndex.typeMask(null), "billing"));
+        assertEquals(List.of("billing"), scenarioCatalog.names());
+        assertArrayEquals(new long[]{2, 3}, scenarioCatalog.nodesOf("billing"));
+        assertEquals(List.of("2"), nodeSearchIndex.search("customer", null, null, null).stream().map(SearchHitObject::getIdentity).toList());
+    }
+
+    @Test
+    void snapshotsSavedBeforeImportAreNotUsed() throws IOException {
+        write(SnapshotStore.fileName(Instant.parse("2024-03-01T10:00:00Z")), List.of(
+                new SnapshotRecordObject(new NodeObject("1", List.of("process"), Map.of("name", "billing run")), null)));
+
+        SnapshotStore store = store();
+        store.importSnapshot(new ByteArrayInputStream(new byte[0]), false);
+        store.warmOnStartup();
+
+        // not warmed and the database can't be reached
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> nodeSearchIndex.search("billing", null, null, null));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatusCode());
+    }
+
+    @Test
+    void importWritesSnapshotAsListed() throws IOException {
+        byte[] snapshot = lines(List.of(
+                new SnapshotRecordObject(new NodeObject("1", List.of("custom`label"), Map.of("size", 3)), null),
+                new SnapshotRecordObject(new NodeObject("2", List.of("database"), Map.of("name", "invoices")), null),
+                new SnapshotRecordObject(null, new EdgeObject("11", "refers to", Map.of("weight", 2), "1", "2")),
+                new SnapshotRecordObject(null, new EdgeObject("12", "transfers", Map.of(), "1", "9"))
+        ));
+
+        SnapshotObject imported = store().importSnapshot(new ByteArrayInputStream(snapshot), false);
+
+        assertEquals(2, imported.getNodes());
+        assertEquals(1, imported.getRelationships());
+        // the target of 12 is not part of the snapshot
+        assertEquals(1, imported.getFailed());
+        assertTrue(queries.stream().anyMatch(query -> query.contains("CREATE (n:`custom``label`)")));
+        assertTrue(queries.stream().anyMatch(query -> query.contains("CREATE (s)-[r:`refers to`]->(t)")));
+        Map<String, Object> relationship = written.get(2);
+        assertEquals(Map.of("weight", 2), relationship.get("props"));
+        assertEquals(List.of(101L, 102L), Arrays.asList(relationship.get("source"), relationship.get("target")));
+    }
+
+    @Test
+    void unstorableValuesAreLeftOut() throws IOException {
+        byte[] snapshot = lines(List.of(
+                new SnapshotRecordObject(new NodeObject("1", List.of("database"), Map.of("name", "a", "location", Map.of("x", 1.0, "y", 2.0))), null),
+                new SnapshotRecordObject(new NodeObject("2", List.of("database"), Map.of("name", "b")), null),
+                new SnapshotRecordObject(null, new EdgeObject("11", "transfers", Map.of(), "1", "2"))
+        ));
+
+        SnapshotObject imported = store().importSnapshot(new ByteArrayInputStream(snapshot), false);
+
+        assertEquals(2, imported.getNodes());
+        assertEquals(1, imported.getRelationships());
+        assertEquals(1, imported.getFailed());
+        assertEquals(Map.of("name", "a"), written.get(0).get("props"));
+    }
+
+    @Test
+    void truncatedSnapshotIsRejected() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(lines(List.of(
+                    new SnapshotRecordObject(new NodeObject("1", List.of("process"), Map.of("name", "billing run")), null),
+                    new SnapshotRecordObject(new NodeObject("2", List.of("database"), Map.of("name", "invoices")), null))));
+        }
+        byte[] truncated = Arrays.copyOf(compressed.toByteArray(), compressed.size() - 12);
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> store().importSnapshot(new ByteArrayInputStream(truncated), true));
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, e.getStatusCode());
+        // the node read before the stream ended is kept
+        assertEquals(1, written.size());
+        assertTrue(e.getReason().contains("after 1 nodes"));
+    }
+
+    @AfterEach
+    void shutdown() {
+        changeFeed.shutdown();
+    }
+
+    private SnapshotStore store() {
+        MockEnvironment env = new MockEnvironment()
+                .withProperty("snapshot.directory", directory.toString())
+                .withProperty("snapshot.warm-start", "true")
+                .withProperty("batch.chunk-size", "1");
+        return new SnapshotStore(queryExecutor, new GraphRecordMapper(), new NdjsonWriter(objectMapper), objectMapper, changeFeed, hierarchyIndex,
+                lineageIndex, scenarioCatalog, nodeSearchIndex, graphVersion, env);
+    }
+
+    private byte[] lines(List<SnapshotRecordObject> records) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (SnapshotRecordObject record : records) {
+            out.write(objectMapper.writeValueAsBytes(record));
+            out.write('\n');
+        }
+        return out.toByteArray();
+    }
+
+    private void write(String name, List<SnapshotRecordObject> records) throws IOException {
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(directory.resolve(name)))) {
+            for (SnapshotRecordObject record : records) {
+                out.write(objectMapper.writeValueAsBytes(record));
+                out.write('\n');
+            }
+        }
+    }
+}
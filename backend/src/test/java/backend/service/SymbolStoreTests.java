@@ -0,0 +1,44 @@
+package backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SymbolStoreTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void symbolsAreServedFromMemory() throws IOException {
+        String svg = "<svg xmlns=\"http://www.w3.org/2000/svg\">" + "<rect width=\"10\" height=\"10\"/>".repeat(20) + "</svg>";
+        Files.writeString(directory.resolve("process.svg"), svg);
+        Files.writeString(directory.resolve("notes.txt"), "not a symbol");
+        SymbolStore store = new SymbolStore(new MockEnvironment().withProperty("symbol.directory", directory.toString()), new ObjectMapper());
+        Files.delete(directory.resolve("process.svg"));
+
+        SymbolStore.Asset process = store.symbol("process").orElseThrow();
+        assertEquals(svg, new String(process.body(), StandardCharsets.UTF_8));
+        assertArrayEquals(process.body(), new GZIPInputStream(new ByteArrayInputStream(process.gzipped())).readAllBytes());
+        assertNotEquals(process.etag(), process.gzippedEtag());
+        assertTrue(store.symbol("notes").isEmpty());
+        assertTrue(store.symbol("../process").isEmpty());
+
+        Map<?, ?> bundle = new ObjectMapper().readValue(store.bundle().body(), Map.class);
+        assertEquals(Map.of("process", svg), bundle);
+    }
+}
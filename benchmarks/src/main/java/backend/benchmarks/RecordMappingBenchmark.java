@@ -0,0 +1,104 @@
+package backend.benchmarks;
+
+import backend.entity.GraphObject;
+import backend.entity.RelationshipObject;
+import backend.service.GraphRecordMapper;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.types.Node;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Cost of mapping scenario query results to the entities returned by the endpoints
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RecordMappingBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int edges;
+
+    private final GraphRecordMapper mapper = new GraphRecordMapper();
+    private List<Record> records;
+    private List<Node> nodes;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        records = SyntheticGraph.records(edges, 42);
+        nodes = new ArrayList<>(records.size());
+        for (Record record : records) {
+            nodes.add(record.get("p").asNode());
+        }
+    }
+
+    /**
+     * records to relationship list, as returned by /scenario/, every node is mapped once
+     */
+    @Benchmark
+    public List<RelationshipObject> relationshipObjects() {
+        Function<Record, RelationshipObject> relationshipMapper = mapper.relationshipMapper();
+        List<RelationshipObject> relationships = new ArrayList<>(records.size());
+        for (Record record : records) {
+            relationships.add(relationshipMapper.apply(record));
+        }
+        return relationships;
+    }
+
+    /**
+     * records to relationships one by one, as streamed by /scenario/ as newline delimited json
+     */
+    @Benchmark
+    public void streamedRelationshipObjects(Blackhole blackhole) {
+        for (Record record : records) {
+            blackhole.consume(mapper.toRelationshipObject(record));
+        }
+    }
+
+    /**
+     * records to normalized graph, as returned by /scenario/graph
+     */
+    @Benchmark
+    public GraphObject graphObject() {
+        return mapper.toGraphObject(records);
+    }
+
+    /**
+     * label ordering alone, done twice per relationship
+     */
+    @Benchmark
+    public void orderLabels(Blackhole blackhole) {
+        for (Node node : nodes) {
+            blackhole.consume(mapper.orderLabels(node.labels()));
+        }
+    }
+
+    /**
+     * identity extraction from element ids alone, done three times per relationship
+     */
+    @Benchmark
+    public void identities(Blackhole blackhole) {
+        for (Node node : nodes) {
+            blackhole.consume(mapper.identityOf(node));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package backend.benchmarks;
+
+import backend.entity.GraphObject;
+import backend.entity.RelationshipObject;
+import backend.service.GraphRecordMapper;
+import backend.service.ResponseEncoder;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.neo4j.driver.Record;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of serializing scenario responses to json and Smile, the work done on every scenario cache miss. The size of
+ * every payload is printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SerializationBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int edges;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ObjectMapper smileMapper = new ObjectMapper(ResponseEncoder.smileFactory());
+    private List<RelationshipObject> relationships;
+    private GraphObject graph;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        GraphRecordMapper mapper = new GraphRecordMapper();
+        List<Record> records = SyntheticGraph.records(edges, 42);
+
+        relationships = new ArrayList<>(records.size());
+        for (Record record : records) {
+            relationships.add(mapper.toRelationshipObject(record));
+        }
+        graph = mapper.toGraphObject(records);
+    }
+
+    @TearDown(Level.Trial)
+    public void printPayloadSizes() throws JsonProcessingException {
+        System.out.printf("%n%d edges, payload bytes: relationship list json %d smile %d, graph json %d smile %d%n", edges,
+                relationshipList().length, relationshipListSmile().length, graph().length, graphSmile().length);
+    }
+
+    /**
+     * relationship list, every node is serialized once per relationship it takes part in
+     */
+    @Benchmark
+    public byte[] relationshipList() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(relationships);
+    }
+
+    /**
+     * normalized graph, every node is serialized once
+     */
+    @Benchmark
+    public byte[] graph() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(graph);
+    }
+
+    /**
+     * relationship list as Smile, repeated property names and labels are written once and referenced after that
+     */
+    @Benchmark
+    public byte[] relationshipListSmile() throws JsonProcessingException {
+        return smileMapper.writeValueAsBytes(relationships);
+    }
+
+    /**
+     * normalized graph as Smile
+     */
+    @Benchmark
+    public byte[] graphSmile() throws JsonProcessingException {
+        return smileMapper.writeValueAsBytes(graph);
+    }
+}
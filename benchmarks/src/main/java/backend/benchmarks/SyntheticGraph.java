@@ -0,0 +1,87 @@
+package backend.benchmarks;
+
+import backend.entity.NodeObject;
+import backend.entity.RelationshipObject;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
+import org.neo4j.driver.internal.InternalNode;
+import org.neo4j.driver.internal.InternalRecord;
+import org.neo4j.driver.internal.InternalRelationship;
+import org.neo4j.driver.internal.value.NodeValue;
+import org.neo4j.driver.internal.value.RelationshipValue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates driver records shaped like the result of the scenario query (source p, relationship r, target q)
+ * without a database. Every node has one type label, some also have a functional label, and properties like the
+ * nodes in the dumps.
+ */
+public final class SyntheticGraph {
+
+    private static final String DATABASE_ID = "6c9d5c0f-3b2e-4c4f-9a51-0d7e1f2b3c4d";
+
+    private SyntheticGraph() {
+    }
+
+    /**
+     * @param edges number of relationships, nodes are a quarter of that
+     * @param seed  random seed, the same seed always creates the same graph
+     * @return one record per relationship
+     */
+    public static List<Record> records(int edges, long seed) {
+        Random random = new Random(seed);
+        NodeObject.TypeLabels[] types = NodeObject.TypeLabels.values();
+        NodeObject.FunctionalLabel[] functional = NodeObject.FunctionalLabel.values();
+        RelationshipObject.RelationshipLabels[] relationshipTypes = RelationshipObject.RelationshipLabels.values();
+
+        int nodeCount = Math.max(2, edges / 4);
+        NodeValue[] nodes = new NodeValue[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            List<String> labels = new ArrayList<>();
+            if (random.nextInt(4) == 0) {
+                labels.add(functional[random.nextInt(functional.length)].name());
+            }
+            labels.add(types[random.nextInt(types.length)].name());
+
+            Map<String, Value> props = new HashMap<>();
+            props.put("name", Values.value("node " + i + " with a longer descriptive name"));
+            props.put("nameShort", Values.value("node " + i));
+            props.put("institution", Values.value("institution " + (i % 20)));
+            nodes[i] = new NodeValue(new InternalNode(i, elementId(i), labels, props));
+        }
+
+        List<String> keys = List.of("p", "r", "q");
+        List<Record> records = new ArrayList<>(edges);
+        for (int i = 0; i < edges; i++) {
+            int source = random.nextInt(nodeCount);
+            int target = random.nextInt(nodeCount);
+
+            List<String> scenarios = new ArrayList<>();
+            int scenarioCount = 1 + random.nextInt(3);
+            for (int s = 0; s < scenarioCount; s++) {
+                scenarios.add("scenario " + random.nextInt(50));
+            }
+            Map<String, Value> props = new HashMap<>();
+            props.put("name", Values.value("relationship " + i));
+            props.put("scenario", Values.value(scenarios));
+            props.put("content", Values.value(List.of("name", "address", "date of birth")));
+
+            String type = relationshipTypes[random.nextInt(relationshipTypes.length)].name();
+            InternalRelationship relationship = new InternalRelationship(i, elementId(i), source, elementId(source),
+                    target, elementId(target), type, props);
+
+            records.add(new InternalRecord(keys, new Value[]{nodes[source], new RelationshipValue(relationship), nodes[target]}));
+        }
+        return records;
+    }
+
+    private static String elementId(long id) {
+        return "4:" + DATABASE_ID + ":" + id;
+    }
+}
@@ -2,66 +2,67 @@
 // address of spring backend as stored in settings.js
 const springUri = settings.database.springURI;
 
-//Function: getAllByScenario
-// fetches all data based on specified scenario
+//Function: getScenarioBundle
+// fetches scenario graph and hierarchy maps of its nodes in one request
 //
 //Parameters:
 //scenario - scenario by which database is queried
 //
 //Returns:
-//graph data as edges and node
-function getAllByScenario(scenario) {
-    return fetch(springUri + '/scenario/?name=' + scenario).then(async response => {
-        return scenarioToD3(await response.json());
+//graph data as edges and nodes, parents with all direct/indirect children (byParent), children with their direct
+//parent (byChildren) and children with their root node (rootOf)
+function getScenarioBundle(scenario) {
+    return fetch(springUri + '/scenario/bundle?name=' + encodeURIComponent(scenario)).then(async response => {
+        const bundle = await response.json();
+        return {
+            "graph": graphToD3(bundle.graph),
+            "byParent": bundle.byParent,
+            "byChildren": bundle.byChildren,
+            "rootOf": bundle.rootOf
+        };
     });
 }
 
-//Function: scenarioToD3
-// transforms data for scenario from backend into arrays of nodes and edges
+//Function: getCollapsedScenario
+// fetches scenario collapsed to a depth of the includes hierarchy, hidden nodes are represented by their ancestor
+// at that depth
 //
 //Parameters:
-//data - array of relationship data from backend
+//scenario - scenario by which database is queried
+//depth - hierarchy depth of the deepest visible nodes, 0 to only show root nodes
 //
 //Returns:
-// arrays of nodes and edges
-function scenarioToD3(data) {
-    const nodes = [];
-    const nodeIds = [];
-    const edges = [];
-
-    data.forEach(rel => {
-        edges.push({
-            "id": (rel.identity),
-            "labels": rel.labels,
-            "properties": rel.props,
-            "source": (rel.source.identity),
-            "target": (rel.target.identity)
-        })
-
-        if (!nodeIds.includes((rel.source.identity))) {
-            nodes.push({
-                "id": (rel.source.identity),
-                "labels": rel.source.labels,
-                "properties": rel.source.props
-            });
-            nodeIds.push((rel.source.identity));
-        }
-
-        if (!nodeIds.includes((rel.target.identity))) {
-            nodes.push({
-                "id": (rel.target.identity),
-                "labels": rel.target.labels,
-                "properties": rel.target.props
-            });
-            nodeIds.push((rel.target.identity));
-        }
+//visible nodes, edges aggregated per label with their count and number of hidden nodes per collapsed node
+function getCollapsedScenario(scenario, depth) {
+    return fetch(springUri + '/scenario/collapsed?name=' + encodeURIComponent(scenario) + '&depth=' + depth).then(response => {
+        return response.json();
+    });
+}
 
-    })
+//Function: graphToD3
+// transforms normalized scenario graph from backend into arrays of nodes and edges
+//
+//Parameters:
+//data - object with node array and edge array referencing nodes by id
+//
+//Returns:
+// arrays of nodes and edges
+function graphToD3(data) {
+    const nodes = data.nodes.map(node => ({
+        "id": node.identity,
+        "labels": node.labels,
+        "properties": node.props
+    }));
 
+    const edges = data.edges.map(edge => ({
+        "id": edge.identity,
+        "labels": edge.labels,
+        "properties": edge.props,
+        "source": edge.source,
+        "target": edge.target
+    }));
 
     return {"nodes": nodes, "edges": edges};
-
-
 }
 
 //Function: getScenariosSpring
@@ -118,8 +119,123 @@ function getHierarchyByParents(scenario){
     })
 }
 
+//Function: getNeighborhood
+// fetches nodes and edges around a node, used to expand the graph on demand
+//
+//Parameters:
+//identity - identity of the root node
+//depth - number of hops to expand
+//scenario - only follow relationships of this scenario, all relationships if undefined
+//
+//Returns:
+//object with nodes, edges, expanded depth and whether the result was truncated
+function getNeighborhood(identity, depth, scenario) {
+    let uri = springUri + '/node/' + identity + '/neighborhood?depth=' + depth;
+    if (scenario !== undefined) {
+        uri += '&scenario=' + encodeURIComponent(scenario);
+    }
+    return fetch(uri).then(response => {
+        return response.json();
+    })
+}
+
+//Function: getLineage
+// fetches the nodes a node passes data to or receives data from over transfers, produces and conditional relationships
+//
+//Parameters:
+//identity - identity of the root node
+//direction - 'downstream' or 'upstream'
+//depth - number of hops, all hops up to the backend limit if undefined
+//scenario - only follow relationships of this scenario, all relationships if undefined
+//
+//Returns:
+//object with nodes, edges, distance of every node to the root and whether the result was truncated
+function getLineage(identity, direction, depth, scenario) {
+    const params = new URLSearchParams();
+    if (depth !== undefined) {
+        params.set('depth', depth);
+    }
+    if (scenario !== undefined) {
+        params.set('scenario', scenario);
+    }
+    return fetch(springUri + '/lineage/' + identity + '/' + direction + '?' + params).then(response => {
+        return response.json();
+    })
+}
+
+//Function: searchNodes
+// searches nodes by name for typeahead, case, accents and punctuation are ignored
+//
+//Parameters:
+//query - text typed so far
+//type - only nodes with this type label, all nodes if undefined
+//scenario - only nodes of this scenario, all nodes if undefined
+//
+//Returns:
+//best matching nodes first with identity, labels, name and the matching property and value
+function searchNodes(query, type, scenario) {
+    const params = new URLSearchParams({q: query});
+    if (type !== undefined) {
+        params.set('type', type);
+    }
+    if (scenario !== undefined) {
+        params.set('scenario', scenario);
+    }
+    return fetch(springUri + '/node/search?' + params).then(response => {
+        return response.json();
+    })
+}
+
+//Function: subscribeChanges
+// subscribes to nodes and relationships added through the backend. The browser reconnects on its own and is sent
+// the changes it missed, if they are no longer available onReset is called and the graph has to be reloaded.
+//
+//Parameters:
+//scenario - only receive relationships of this scenario, all relationships if undefined
+//since - graph version the client has loaded, only new changes if undefined
+//onChange - called with the added nodes and edges in the format of graphToD3
+//onReset - called when the graph has to be reloaded
+//
+//Returns:
+//EventSource, closed to unsubscribe
+function subscribeChanges(scenario, since, onChange, onReset) {
+    const params = new URLSearchParams();
+    if (scenario !== undefined) {
+        params.set('scenario', scenario);
+    }
+    if (since !== undefined) {
+        params.set('since', since);
+    }
+    const source = new EventSource(springUri + '/changes?' + params);
+    const apply = event => onChange(graphToD3(JSON.parse(event.data)));
+    source.addEventListener('nodesAdded', apply);
+    source.addEventListener('relationshipsAdded', apply);
+    source.addEventListener('reset', () => onReset());
+    return source;
+}
+
+//all symbols, fetched once with the first symbol requested
+let symbolBundle = null;
+
+//Function: getSymbolBundle
+// fetches all SVGs in one request, the response is kept for later calls
+//
+//Returns:
+//object with SVG by symbol name, empty if the bundle could not be fetched
+function getSymbolBundle() {
+    if (symbolBundle === null) {
+        symbolBundle = fetch(springUri + '/symbol/bundle')
+            .then(response => response.ok ? response.json() : {})
+            .catch(error => {
+                console.error("error occurred fetching symbols", error);
+                return {};
+            });
+    }
+    return symbolBundle;
+}
+
 //Function: getSVG
-// fetched SVG by name
+// gets SVG by name from the symbol bundle, symbols missing in the bundle are fetched separately
 //
 //Parameters:
 //name - name of desired SVG
@@ -127,6 +243,18 @@ function getHierarchyByParents(scenario){
 //Returns:
 //SVG
 function getSVG(name) {
+    return getSymbolBundle().then(symbols => name in symbols ? symbols[name] : fetchSVG(name));
+}
+
+//Function: fetchSVG
+// fetches single SVG by name
+//
+//Parameters:
+//name - name of desired SVG
+//
+//Returns:
+//SVG
+function fetchSVG(name) {
     return fetch(springUri + '/symbol/' + name + '.svg')
         .then(response => {
             if (response.ok) {
@@ -30,6 +30,10 @@ let childParentMap = new Map();
 //map parent nodes to direct children
 let parentDirectChildMap = new Map();
 
+// Variable: scenarioHierarchy
+//hierarchy maps of the current scenario as sent with the scenario bundle
+let scenarioHierarchy;
+
 // Variable: handler
 //instance of DotHandler
 let handler;
@@ -92,46 +96,21 @@ function setDotSettings() {
 }
 
 //Function: setScenarioData
-//fetched all data for specified scenario, sets variables above and passes graph data to DotHandler
-//
-//Parameters:
-//scenario - scenario name that is to be added to DotHandler
-async function setScenarioData(scenario) {
+//sets hierarchy variables above from the scenario bundle and passes graph data to DotHandler
+async function setScenarioData() {
     handler.resetClusters();
     handler.resetEdges();
 
-
-    let rootNodes = [];
-
-
-    let childNodes = [];
     if (parentChildMap.size === 0) {
-        const parentChildObject = await getHierarchyByParents(scenario);
-        for (let elem in parentChildObject) {
-            parentChildMap.set(elem, parentChildObject[elem]);
-            rootNodes.push(elem);
-            childNodes = [...new Set(childNodes.concat(parentChildObject[elem]))];
-        }
-        rootNodes.forEach(node => {
-            if (childNodes.includes(node)) {
-                rootNodes.splice(rootNodes.indexOf(node), 1);
-            }
-        })
+        parentChildMap = new Map(Object.entries(scenarioHierarchy.byParent));
     }
 
-
     if (childRootMap.size === 0) {
-        for (const node of rootNodes) {
-            let arr = await getAllChildrenSpring(node);
-            arr.forEach(child => {
-                childRootMap.set(child, node);
-            })
-
-        }
+        childRootMap = new Map(Object.entries(scenarioHierarchy.rootOf));
     }
 
     if (childParentMap.size === 0) {
-        const allParents = await getHierarchyByChildren(scenario);
+        const allParents = scenarioHierarchy.byChildren;
         childParentMap = new Map(Object.entries(allParents));
         for (let key in allParents) {
             if (parentDirectChildMap.has(allParents[key])) {
@@ -259,6 +238,7 @@ function resetViewer() {
     childRootMap = new Map();
     parentChildMap = new Map();
     childParentMap = new Map();
+    scenarioHierarchy = undefined;
     if (!settings.graph.colorConsistency) {
         currentGroupColors = structuredClone(settings.groupColors);
         currentColorSet = settings.graph.colorSet.slice();
@@ -57,7 +57,9 @@ function scenarioViewer(scenario) {
 
     setUI([showAll, backToOverview, legend, filterEdgesByContent]);
 
-    getAllByScenario(scenario).then(data => {
+    getScenarioBundle(scenario).then(bundle => {
+        const data = bundle.graph;
+        scenarioHierarchy = bundle;
         edgeData = data.edges.map(d => (d));
 
         nodeData = data.nodes.map(d => (d));
@@ -71,7 +73,7 @@ function scenarioViewer(scenario) {
 
         handler = new DotHandler("#graph", interactionHandler);
         setDotSettings();
-        setScenarioData(scenario).then(() => handler.render());
+        setScenarioData().then(() => handler.render());
 
     })
 